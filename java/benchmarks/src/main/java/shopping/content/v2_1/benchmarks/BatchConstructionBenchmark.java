@@ -0,0 +1,36 @@
+package shopping.content.v2_1.benchmarks;
+
+import com.google.api.services.content.model.ProductsCustomBatchRequest;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import shopping.content.v2_1.samples.ContentConfig;
+import shopping.content.v2_1.samples.products.ExampleProductFactory;
+
+/** Measures building custombatch requests of example products. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchConstructionBenchmark {
+  @Param({"10", "250", "1000"})
+  public int entries;
+
+  private final ContentConfig config = BenchmarkData.config(BigInteger.ONE);
+
+  @Benchmark
+  public ProductsCustomBatchRequest createBatch() {
+    return ExampleProductFactory.createBatch(config, BenchmarkData.OFFER_PREFIX, entries);
+  }
+}
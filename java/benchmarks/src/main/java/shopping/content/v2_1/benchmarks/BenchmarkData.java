@@ -0,0 +1,40 @@
+package shopping.content.v2_1.benchmarks;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.content.model.Product;
+import com.google.api.services.content.model.ProductsListResponse;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import shopping.content.v2_1.samples.ContentConfig;
+import shopping.content.v2_1.samples.products.ExampleProductFactory;
+
+/** Test data shared by the benchmarks. */
+class BenchmarkData {
+  static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  static final String OFFER_PREFIX = "benchmark-";
+
+  static ContentConfig config(BigInteger merchantId) {
+    ContentConfig config = new ContentConfig();
+    config.setMerchantId(merchantId);
+    config.setWebsiteUrl("https://www.example.com");
+    return config;
+  }
+
+  /** Returns a products list page like the API returns, with the given number of products. */
+  static ProductsListResponse listPage(int size) {
+    ContentConfig config = config(BigInteger.ONE);
+    List<Product> products = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      Product product = ExampleProductFactory.create(config, OFFER_PREFIX + i);
+      product.setKind("content#product");
+      product.setId(ExampleProductFactory.sampleProductId(OFFER_PREFIX + i));
+      products.add(product);
+    }
+    return new ProductsListResponse()
+        .setKind("content#productsListResponse")
+        .setResources(products)
+        .setNextPageToken("next-page");
+  }
+}
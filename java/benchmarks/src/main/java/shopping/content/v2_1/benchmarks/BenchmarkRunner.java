@@ -0,0 +1,29 @@
+package shopping.content.v2_1.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, accepting the usual JMH command line options. Unless another result format
+ * is requested, results are written as JSON to {@code jmh-results.json} (or the file named by the
+ * {@code benchmarks.resultFile} system property), so that runs can be compared for regressions.
+ */
+public class BenchmarkRunner {
+  private static final String DEFAULT_RESULT_FILE = "jmh-results.json";
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+    if (!commandLine.getResultFormat().hasValue()) {
+      options
+          .resultFormat(ResultFormatType.JSON)
+          .result(System.getProperty("benchmarks.resultFile", DEFAULT_RESULT_FILE));
+    }
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,60 @@
+package shopping.content.v2_1.benchmarks;
+
+import com.google.api.services.content.model.Product;
+import com.google.api.services.content.model.ProductsListResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import shopping.common.StreamingResponseParser;
+
+/**
+ * Measures parsing products list pages, by default of the maximum page size of 250, either into a
+ * whole response or item by item with {@link StreamingResponseParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListPageParsingBenchmark {
+  @Param({"250"})
+  public int pageSize;
+
+  private byte[] page;
+
+  @Setup
+  public void setUp() throws IOException {
+    page = BenchmarkData.JSON_FACTORY.toByteArray(BenchmarkData.listPage(pageSize));
+  }
+
+  @Benchmark
+  public ProductsListResponse parse() throws IOException {
+    return BenchmarkData.JSON_FACTORY.fromInputStream(
+        new ByteArrayInputStream(page), ProductsListResponse.class);
+  }
+
+  @Benchmark
+  public Object parseStreaming(Blackhole blackhole) throws IOException {
+    return StreamingResponseParser.parse(
+        BenchmarkData.JSON_FACTORY,
+        new ByteArrayInputStream(page),
+        StandardCharsets.UTF_8,
+        "resources",
+        Product.class,
+        blackhole::consume);
+  }
+}
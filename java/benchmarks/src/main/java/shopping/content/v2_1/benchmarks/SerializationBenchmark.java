@@ -0,0 +1,82 @@
+package shopping.content.v2_1.benchmarks;
+
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.services.content.model.ProductsCustomBatchRequest;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import shopping.common.StreamingBatchContent;
+import shopping.content.v2_1.samples.ContentConfig;
+import shopping.content.v2_1.samples.products.ExampleProductFactory;
+
+/**
+ * Measures Jackson serialization and deserialization of products custombatch requests, and
+ * streaming serialization of lazily created entries. Run with {@code -prof gc} to compare the
+ * allocation rates of the two serialization approaches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+  @Param({"10", "250", "1000"})
+  public int entries;
+
+  private final ContentConfig config = BenchmarkData.config(BigInteger.ONE);
+  private ProductsCustomBatchRequest request;
+  private byte[] serialized;
+
+  @Setup
+  public void setUp() throws IOException {
+    request = ExampleProductFactory.createBatch(config, BenchmarkData.OFFER_PREFIX, entries);
+    serialized = BenchmarkData.JSON_FACTORY.toByteArray(request);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    return BenchmarkData.JSON_FACTORY.toByteArray(request);
+  }
+
+  // Builds and sends the batch like ProductsStreamingBatchInsertSample, with the socket replaced
+  // by a sink.
+  @Benchmark
+  public void buildAndSerializeStreaming() throws IOException {
+    new StreamingBatchContent(
+            BenchmarkData.JSON_FACTORY,
+            ExampleProductFactory.createBatchEntries(config, BenchmarkData.OFFER_PREFIX, entries))
+        .writeTo(ByteStreams.nullOutputStream());
+  }
+
+  // The materialized equivalent of buildAndSerializeStreaming.
+  @Benchmark
+  public void buildAndSerialize() throws IOException {
+    JsonGenerator generator =
+        BenchmarkData.JSON_FACTORY.createJsonGenerator(
+            ByteStreams.nullOutputStream(), StandardCharsets.UTF_8);
+    generator.serialize(
+        ExampleProductFactory.createBatch(config, BenchmarkData.OFFER_PREFIX, entries));
+    generator.flush();
+  }
+
+  @Benchmark
+  public ProductsCustomBatchRequest deserialize() throws IOException {
+    return BenchmarkData.JSON_FACTORY.fromInputStream(
+        new ByteArrayInputStream(serialized), ProductsCustomBatchRequest.class);
+  }
+}
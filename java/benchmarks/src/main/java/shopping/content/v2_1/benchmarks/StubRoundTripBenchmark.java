@@ -0,0 +1,90 @@
+package shopping.content.v2_1.benchmarks;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.ProductsCustomBatchRequest;
+import com.google.api.services.content.model.ProductsCustomBatchResponse;
+import com.google.api.services.content.model.ProductsListResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import shopping.common.HttpTransportFactory;
+import shopping.content.v2_1.samples.products.ExampleProductFactory;
+import shopping.content.v2_1.samples.stub.ContentApiStubServer;
+
+/**
+ * Measures full client round trips (building, serializing, sending, and parsing the response)
+ * against the in-process Content API stub, with no simulated latency, so that the results reflect
+ * client-side and HTTP overhead only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StubRoundTripBenchmark {
+  private static final long LIST_PAGE_SIZE = 250;
+
+  @Param({"10", "250", "1000"})
+  public int entries;
+
+  private ContentApiStubServer stub;
+  private ShoppingContent content;
+  private ProductsCustomBatchRequest batch;
+
+  @Setup
+  public void setUp() throws IOException {
+    stub = new ContentApiStubServer(0).start();
+    URI endpoint = URI.create(stub.getEndpoint());
+    content =
+        new ShoppingContent.Builder(
+                HttpTransportFactory.getSharedTransport(), BenchmarkData.JSON_FACTORY, null)
+            .setRootUrl(endpoint.resolve("/").toString())
+            .setServicePath(endpoint.getPath())
+            .setApplicationName("Content API for Shopping Samples Benchmarks")
+            .build();
+    batch =
+        ExampleProductFactory.createBatch(
+            BenchmarkData.config(stub.getMerchantId()), BenchmarkData.OFFER_PREFIX, entries);
+    // Make sure there is a full page of products to list.
+    content
+        .products()
+        .custombatch(
+            ExampleProductFactory.createBatch(
+                BenchmarkData.config(stub.getMerchantId()),
+                BenchmarkData.OFFER_PREFIX,
+                (int) LIST_PAGE_SIZE))
+        .execute();
+  }
+
+  @TearDown
+  public void tearDown() {
+    stub.close();
+  }
+
+  @Benchmark
+  public ProductsCustomBatchResponse custombatchInsert() throws IOException {
+    return content.products().custombatch(batch).execute();
+  }
+
+  @Benchmark
+  public ProductsListResponse listPage() throws IOException {
+    return content
+        .products()
+        .list(stub.getMerchantId())
+        .setMaxResults(LIST_PAGE_SIZE)
+        .execute();
+  }
+}
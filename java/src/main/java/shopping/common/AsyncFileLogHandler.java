@@ -0,0 +1,231 @@
+package shopping.common;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Log handler that writes records to a set of rolling files from a background thread.
+ *
+ * <p>Unlike {@link java.util.logging.FileHandler}, publishing a record never blocks the calling
+ * thread on disk I/O: records are put in a bounded, lock-free ring buffer that a single writer
+ * thread drains, applying the formatter and writing the files. If the writer falls behind and the
+ * buffer is full, new records are dropped and a note with the number of dropped records is written
+ * once the writer catches up.
+ *
+ * <p>Only the work done by the handler moves to the writer thread. Whatever the logging code does
+ * to build a record still happens on the calling thread; for HTTP call logging, google-http-client
+ * builds the text of the request or response body there.
+ *
+ * <p>The current file is named as given; once it reaches the size limit it is renamed to {@code
+ * <name>.1}, older files shift up by one, and the oldest file is deleted.
+ */
+public class AsyncFileLogHandler extends Handler {
+  public static final int DEFAULT_CAPACITY = 8192;
+  public static final long DEFAULT_FILE_LIMIT = 64L * 1024 * 1024;
+  public static final int DEFAULT_FILE_COUNT = 5;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+  private final File file;
+  private final long fileLimit;
+  private final int fileCount;
+  private final RingBuffer buffer;
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread writer;
+  private volatile boolean closed;
+
+  public AsyncFileLogHandler(File file) {
+    this(file, DEFAULT_CAPACITY, DEFAULT_FILE_LIMIT, DEFAULT_FILE_COUNT);
+  }
+
+  public AsyncFileLogHandler(File file, int capacity, long fileLimit, int fileCount) {
+    if (Integer.bitCount(capacity) != 1 || fileLimit <= 0 || fileCount < 1) {
+      throw new IllegalArgumentException("Invalid log handler limits");
+    }
+    this.file = file;
+    this.fileLimit = fileLimit;
+    this.fileCount = fileCount;
+    this.buffer = new RingBuffer(capacity);
+    setFormatter(new SimpleFormatter());
+    this.writer = new Thread(this::drain, "AsyncFileLogHandler");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void publish(LogRecord record) {
+    if (closed || !isLoggable(record)) {
+      return;
+    }
+    // The formatter runs on the writer thread, so this is just a few atomic operations.
+    if (!buffer.offer(record)) {
+      dropped.incrementAndGet();
+    }
+  }
+
+  /** Returns the number of records dropped so far because the buffer was full. */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  @Override
+  public void flush() {
+    // The writer flushes whenever the buffer runs empty.
+  }
+
+  /** Stops accepting records and waits for the records already accepted to be written. */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void drain() {
+    OutputStream out = null;
+    long written = 0;
+    long droppedReported = 0;
+    try {
+      out = open();
+      written = file.length();
+      while (true) {
+        // Only stop once the buffer has been seen empty after the handler was closed.
+        boolean done = closed;
+        LogRecord record = buffer.poll();
+        if (record == null) {
+          out.flush();
+          if (done) {
+            break;
+          }
+          LockSupport.parkNanos(IDLE_PARK_NANOS);
+          continue;
+        }
+        StringBuilder text = new StringBuilder();
+        long droppedNow = dropped.get();
+        if (droppedNow > droppedReported) {
+          text.append(String.format("[%d log records dropped]%n", droppedNow - droppedReported));
+          droppedReported = droppedNow;
+        }
+        try {
+          text.append(getFormatter().format(record));
+        } catch (RuntimeException e) {
+          reportError(null, e, ErrorManager.FORMAT_FAILURE);
+          continue;
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        if (written > 0 && written + bytes.length > fileLimit) {
+          out.close();
+          rotate();
+          out = open();
+          written = 0;
+        }
+        out.write(bytes);
+        written += bytes.length;
+      }
+    } catch (IOException e) {
+      reportError(null, e, ErrorManager.WRITE_FAILURE);
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+      }
+    }
+  }
+
+  private OutputStream open() throws IOException {
+    return new BufferedOutputStream(new FileOutputStream(file, true), 64 * 1024);
+  }
+
+  private void rotate() throws IOException {
+    for (int i = fileCount - 1; i >= 1; i--) {
+      File from = i == 1 ? file : new File(file.getPath() + "." + (i - 1));
+      if (from.exists()) {
+        Files.move(
+            from.toPath(),
+            new File(file.getPath() + "." + i).toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    if (fileCount == 1) {
+      Files.delete(file.toPath());
+    }
+  }
+
+  /**
+   * Bounded multi-producer, single-consumer queue. Each slot carries a sequence number that tells
+   * producers whether it is free for the current lap, so producers only contend on a single
+   * compare-and-set of the tail and never wait for the consumer.
+   */
+  private static class RingBuffer {
+    private final AtomicReferenceArray<LogRecord> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Only accessed by the consumer.
+    private long head;
+
+    RingBuffer(int capacity) {
+      slots = new AtomicReferenceArray<>(capacity);
+      sequences = new AtomicLongArray(capacity);
+      mask = capacity - 1;
+      for (int i = 0; i < capacity; i++) {
+        sequences.set(i, i);
+      }
+    }
+
+    boolean offer(LogRecord record) {
+      long position = tail.get();
+      while (true) {
+        int index = (int) (position & mask);
+        long difference = sequences.get(index) - position;
+        if (difference == 0) {
+          if (tail.compareAndSet(position, position + 1)) {
+            slots.set(index, record);
+            sequences.set(index, position + 1);
+            return true;
+          }
+          position = tail.get();
+        } else if (difference < 0) {
+          // The slot still holds a record from the previous lap: the buffer is full.
+          return false;
+        } else {
+          position = tail.get();
+        }
+      }
+    }
+
+    LogRecord poll() {
+      int index = (int) (head & mask);
+      if (sequences.get(index) != head + 1) {
+        return null;
+      }
+      LogRecord record = slots.get(index);
+      slots.set(index, null);
+      sequences.set(index, head + mask + 1);
+      head++;
+      return record;
+    }
+  }
+}
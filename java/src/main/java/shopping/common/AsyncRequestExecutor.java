@@ -0,0 +1,130 @@
+package shopping.common;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous facade for API client requests.
+ *
+ * <p>Any request built from a {@code ShoppingContent} or {@code ManufacturerCenter} resource
+ * method, for example {@code content.products().insert(merchantId, product)}, can be passed to
+ * {@link #submit} instead of calling {@code execute()} on it, which returns a {@link
+ * CompletableFuture} for the response instead of blocking the calling thread.
+ *
+ * <p>Requests run on virtual threads when the JVM supports them (Java 21 or later) and on a pool of
+ * platform threads otherwise. Either way, at most {@code maxConcurrency} requests are executing at
+ * any one time; further requests wait for a free slot without tying up a platform thread when
+ * virtual threads are in use.
+ */
+public class AsyncRequestExecutor implements Closeable {
+  public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+  private final ExecutorService executor;
+  private final Semaphore limiter;
+  private final boolean virtualThreads;
+
+  public AsyncRequestExecutor() {
+    this(DEFAULT_MAX_CONCURRENCY);
+  }
+
+  public AsyncRequestExecutor(int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("Maximum concurrency must be positive");
+    }
+    this.limiter = new Semaphore(maxConcurrency);
+    ExecutorService virtual = newVirtualThreadExecutor();
+    this.virtualThreads = virtual != null;
+    this.executor =
+        virtual != null ? virtual : Executors.newFixedThreadPool(maxConcurrency, daemonThreads());
+  }
+
+  private static ExecutorService newVirtualThreadExecutor() {
+    // Looked up reflectively, since the samples are compiled for Java 8.
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static ThreadFactory daemonThreads() {
+    final AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "AsyncRequestExecutor-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /** Executes the given request asynchronously. */
+  public <T> CompletableFuture<T> submit(AbstractGoogleClientRequest<T> request) {
+    return call(request::execute);
+  }
+
+  /**
+   * Runs the given task asynchronously, counting it against the concurrency limit. This is useful
+   * for operations that make several dependent API calls in turn.
+   */
+  public <T> CompletableFuture<T> call(final Callable<T> task) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    executor.execute(
+        () -> {
+          try {
+            limiter.acquire();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return;
+          }
+          try {
+            future.complete(task.call());
+          } catch (Throwable t) {
+            future.completeExceptionally(t);
+          } finally {
+            limiter.release();
+          }
+        });
+    return future;
+  }
+
+  /**
+   * Waits for the given future, rethrowing an {@link IOException} that caused it to fail as-is so
+   * that callers can handle API errors the same way as for synchronous calls.
+   */
+  public static <T> T await(CompletableFuture<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for an API response");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  public boolean isUsingVirtualThreads() {
+    return virtualThreads;
+  }
+
+  public void close() {
+    executor.shutdown();
+  }
+}
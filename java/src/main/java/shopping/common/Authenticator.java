@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Class that contains all the authentication logic, including choosing between service account
@@ -38,7 +39,17 @@ public class Authenticator {
     this.dataStoreFactory = new ConfigDataStoreFactory(config);
   }
 
+  /**
+   * Returns the credential for this configuration and scopes. The credential is shared by all
+   * callers in the JVM, and its access token is refreshed in the background before it expires.
+   */
   public Credential authenticate() throws IOException {
+    String path = config.getPath() != null ? config.getPath().getPath() : "";
+    String key = path + " " + new TreeSet<>(scopes);
+    return CredentialManager.getCredential(key, this::loadCredential);
+  }
+
+  private Credential loadCredential() throws IOException {
     try {
       Credential credential = GoogleCredential.getApplicationDefault().createScoped(scopes);
       System.out.println("Loaded the Application Default Credentials.");
@@ -4,7 +4,7 @@ import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
 import java.io.File;
 import java.io.IOException;
-import java.util.logging.FileHandler;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -27,9 +27,34 @@ public enum BaseOption {
       "Configuration directory for Shopping samples",
       new File(System.getProperty("user.home"), "shopping-samples").getAbsolutePath()),
   CALL_LOG_FILE("l", "log_file", "FILE", "File for logging API requests and responses"),
+  LOG_SAMPLE_RATE("r", "log_sample_rate", "Fraction of API calls to log", "RATE", "1.0"),
+  LOG_CONTENT_LIMIT(
+      "t",
+      "log_content_limit",
+      "Maximum bytes of each request or response body to log",
+      "BYTES",
+      String.valueOf(Integer.MAX_VALUE)),
+  GZIP_THRESHOLD(
+      "z",
+      "gzip_threshold",
+      "Minimum size of request bodies to send gzipped",
+      "BYTES",
+      String.valueOf(CompressionHttpRequestInitializer.DEFAULT_THRESHOLD_BYTES)),
+  METRICS_FILE("m", "metrics_file", "FILE", "File for request metrics in Prometheus text format"),
   NO_CONFIG("n", "noconfig", "Run samples without a configuration directory"),
+  ASYNC("a", "async", "Run independent API calls concurrently in workflow samples"),
+  NODE_ID(
+      "i",
+      "node_id",
+      "Node ID for order operation IDs, from 0 to 1023; must differ between concurrent runs",
+      "ID",
+      "0"),
   HELP("h", "help", "print this message");
 
+  private static final long METRICS_EXPORT_SECONDS = 10;
+  private static RequestMetrics requestMetrics;
+  private static final CompressionStats compressionStats = new CompressionStats();
+
   private final String option;
   private final String longOpt;
   private final String description;
@@ -133,7 +158,13 @@ public enum BaseOption {
     }
     Logger logger = Logger.getLogger(HttpTransport.class.getName());
     logger.setLevel(Level.CONFIG);
-    Handler handler = new FileHandler(filename);
+    double sampleRate = Double.parseDouble(LOG_SAMPLE_RATE.getOptionValue(parsedArgs));
+    int contentLimit = Integer.parseInt(LOG_CONTENT_LIMIT.getOptionValue(parsedArgs));
+    // Requests only hand log records to the handler, which writes them on its own thread, so
+    // logging doesn't add disk I/O to request latency. google-http-client still builds each
+    // record, including the body text, on the request thread; sampling and the content limit
+    // bound that cost.
+    Handler handler = new AsyncFileLogHandler(new File(filename));
     // Only output log messages so that the log files are simply just the requests and responses
     // in text form. (SimpleFormatter would output timestamps/logger names for each log call.)
     handler.setFormatter(
@@ -145,7 +176,59 @@ public enum BaseOption {
         });
     handler.setLevel(Level.CONFIG);
     logger.addHandler(handler);
-    return new LoggingHttpRequestInitializer(initializer);
+    return new LoggingHttpRequestInitializer(initializer, sampleRate, contentLimit);
+  }
+
+  /**
+   * Records request metrics if a metrics file was requested. Metrics are written to the file and
+   * published over JMX every few seconds, and summarized on the console when the JVM exits.
+   */
+  public static HttpRequestInitializer installMetrics(
+      HttpRequestInitializer initializer, CommandLine parsedArgs) {
+    String filename = METRICS_FILE.getOptionValue(parsedArgs);
+    if (filename == null) {
+      return initializer;
+    }
+    return new MetricsHttpRequestInitializer(initializer, getRequestMetrics(new File(filename)));
+  }
+
+  // Samples may create several clients, but they all share one registry and set of exporters.
+  private static synchronized RequestMetrics getRequestMetrics(File file) {
+    if (requestMetrics == null) {
+      final RequestMetrics metrics = new RequestMetrics();
+      final MetricsExporter fileExporter = new PrometheusMetricsExporter(file);
+      final MetricsExporter jmxExporter = new JmxMetricsExporter();
+      metrics.exportPeriodically(fileExporter, METRICS_EXPORT_SECONDS, TimeUnit.SECONDS);
+      metrics.exportPeriodically(jmxExporter, METRICS_EXPORT_SECONDS, TimeUnit.SECONDS);
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread(
+                  () -> {
+                    try {
+                      fileExporter.export(metrics);
+                    } catch (IOException e) {
+                      System.err.printf("Could not export request metrics: %s%n", e);
+                    }
+                    new TextMetricsExporter(System.out).export(metrics);
+                    System.out.printf("Compression: %s%n", compressionStats);
+                  }));
+      requestMetrics = metrics;
+    }
+    return requestMetrics;
+  }
+
+  /**
+   * Gzips request bodies from the configured size on, and accepts gzipped responses. The bytes
+   * saved are summarized along with the request metrics, if those are recorded.
+   */
+  public static HttpRequestInitializer compressContent(
+      HttpRequestInitializer initializer, CommandLine parsedArgs) {
+    long thresholdBytes = Long.parseLong(GZIP_THRESHOLD.getOptionValue(parsedArgs));
+    return new CompressionHttpRequestInitializer(initializer, thresholdBytes, compressionStats);
+  }
+
+  public static HttpRequestInitializer limitRate(HttpRequestInitializer initializer) {
+    return new RateLimitingHttpRequestInitializer(initializer);
   }
 
   public static HttpRequestInitializer increaseTimeout(
@@ -3,7 +3,6 @@ package shopping.common;
 import static shopping.common.BaseOption.NO_CONFIG;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.googleapis.services.AbstractGoogleClient;
 import com.google.api.client.http.HttpRequestInitializer;
@@ -12,7 +11,6 @@ import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import java.io.File;
 import java.io.IOException;
-import java.security.GeneralSecurityException;
 import org.apache.commons.cli.CommandLine;
 
 /** Base class for both sets of API samples. */
@@ -34,19 +32,18 @@ public abstract class BaseSample {
     }
     httpTransport = createHttpTransport();
     authenticator = loadAuthentication();
-    // Chaining HttpRequestInitializers together to increase timeout duration and implement logging
+    // Chaining HttpRequestInitializers together to increase timeout duration, limit the request
+    // rate, compress request bodies, record metrics and implement logging
     initializer = BaseOption.increaseTimeout(
-        BaseOption.installLogging(createCredential(), parsedArgs));
+        BaseOption.limitRate(
+            BaseOption.compressContent(
+                BaseOption.installMetrics(
+                    BaseOption.installLogging(createCredential(), parsedArgs), parsedArgs),
+                parsedArgs)));
   }
 
   protected HttpTransport createHttpTransport() throws IOException {
-    try {
-      return GoogleNetHttpTransport.newTrustedTransport();
-    } catch (GeneralSecurityException e) {
-      e.printStackTrace();
-      System.exit(1);
-    }
-    return null;
+    return HttpTransportFactory.getSharedTransport();
   }
 
   protected Credential createCredential() throws IOException {
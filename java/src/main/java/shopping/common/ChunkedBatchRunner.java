@@ -0,0 +1,244 @@
+package shopping.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sends a stream of items of any length as concurrent chunked requests, such as custombatch calls.
+ *
+ * <p>Items are grouped into chunks capped by number of items and, if a size function is given, by
+ * their estimated total size. Up to a fixed number of chunks are in flight at once, and reading
+ * from the source iterator blocks while all of them are busy, so only those chunks are ever held
+ * in memory. Each response is passed to a receiver as soon as its chunk completes; receivers are
+ * never called concurrently.
+ *
+ * <p>The first chunk that fails stops the run: no further chunks are sent, the ones in flight are
+ * cancelled, and the failure is thrown to the caller. The same happens when the caller is
+ * interrupted or the source iterator throws.
+ *
+ * @param <T> the type of the items
+ * @param <R> the type of the response for each chunk
+ */
+public class ChunkedBatchRunner<T, R> implements Closeable {
+  /** Sends one chunk of items, and returns the response. */
+  public interface Sender<T, R> {
+    R send(List<T> chunk) throws IOException;
+  }
+
+  /** Receives the response for a chunk of items. */
+  public interface Receiver<T, R> {
+    void receive(List<T> chunk, R response) throws IOException;
+  }
+
+  private final int maxItems;
+  private final long maxSize;
+  private final int maxInFlight;
+  private final ToLongFunction<? super T> sizeOf;
+  private final Sender<T, R> sender;
+  private final ExecutorService executor;
+  // Serializes the receiver calls, so receivers don't need to be thread-safe.
+  private final Object receiverLock = new Object();
+
+  private final AtomicLong itemsSent = new AtomicLong();
+  private final AtomicLong chunksSent = new AtomicLong();
+
+  /** Creates a runner that caps chunks by number of items only. */
+  public ChunkedBatchRunner(int maxItems, int maxInFlight, Sender<T, R> sender) {
+    this(maxItems, Long.MAX_VALUE, maxInFlight, null, sender);
+  }
+
+  /**
+   * Creates a runner that caps chunks both by number of items and by total size, as given by the
+   * size function. An item larger than {@code maxSize} is sent in a chunk of its own.
+   */
+  public ChunkedBatchRunner(
+      int maxItems,
+      long maxSize,
+      int maxInFlight,
+      ToLongFunction<? super T> sizeOf,
+      Sender<T, R> sender) {
+    if (maxItems < 1 || maxSize < 1 || maxInFlight < 1) {
+      throw new IllegalArgumentException("Chunk limits and in-flight depth must be positive");
+    }
+    this.maxItems = maxItems;
+    this.maxSize = maxSize;
+    this.maxInFlight = maxInFlight;
+    this.sizeOf = sizeOf;
+    this.sender = sender;
+    this.executor = Executors.newFixedThreadPool(maxInFlight);
+  }
+
+  /**
+   * Estimates the size of the JSON form of an API model object, such as a batch entry, without
+   * serializing it. The estimate counts characters rather than UTF-8 bytes, so size limits should
+   * leave some headroom.
+   */
+  public static long estimateJsonSize(Object value) {
+    if (value == null) {
+      return 4;
+    }
+    if (value instanceof CharSequence) {
+      return ((CharSequence) value).length() + 2;
+    }
+    if (value instanceof Map) {
+      long size = 2;
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+        if (e.getValue() != null) {
+          size += String.valueOf(e.getKey()).length() + 4 + estimateJsonSize(e.getValue());
+        }
+      }
+      return size;
+    }
+    if (value instanceof Collection) {
+      long size = 2;
+      for (Object item : (Collection<?>) value) {
+        size += estimateJsonSize(item) + 1;
+      }
+      return size;
+    }
+    // Numbers, booleans and dates; 64-bit numbers are quoted.
+    return String.valueOf(value).length() + 2;
+  }
+
+  /** Sends all the given items, passing the response for each chunk to the receiver. */
+  public void run(Iterator<? extends T> items, Receiver<T, R> receiver) throws IOException {
+    new Run(receiver).run(items);
+  }
+
+  /** Returns the number of items sent in chunks that completed. */
+  public long getItemsSent() {
+    return itemsSent.get();
+  }
+
+  /** Returns the number of chunks that completed. */
+  public long getChunksSent() {
+    return chunksSent.get();
+  }
+
+  public void close() {
+    executor.shutdown();
+  }
+
+  // The state of one call to run(). The monitor guards running and failure.
+  private class Run {
+    private final Receiver<T, R> receiver;
+    private final List<Future<?>> pending = new ArrayList<>();
+    private int running;
+    private Throwable failure;
+
+    Run(Receiver<T, R> receiver) {
+      this.receiver = receiver;
+    }
+
+    void run(Iterator<? extends T> items) throws IOException {
+      boolean completed = false;
+      try {
+        List<T> chunk = new ArrayList<>();
+        long chunkSize = 0;
+        while (items.hasNext()) {
+          T item = items.next();
+          long itemSize = sizeOf != null ? sizeOf.applyAsLong(item) : 0;
+          if (!chunk.isEmpty() && (chunk.size() >= maxItems || chunkSize + itemSize > maxSize)) {
+            submit(chunk);
+            chunk = new ArrayList<>();
+            chunkSize = 0;
+          }
+          chunk.add(item);
+          chunkSize += itemSize;
+        }
+        if (!chunk.isEmpty()) {
+          submit(chunk);
+        }
+        awaitRunning(0);
+        completed = true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while sending batches");
+      } finally {
+        if (!completed) {
+          for (Future<?> future : pending) {
+            future.cancel(true);
+          }
+        }
+      }
+    }
+
+    // Waits until at most the given number of chunks are running, and throws the first failure.
+    private synchronized void awaitRunning(int limit) throws IOException, InterruptedException {
+      while (running > limit && failure == null) {
+        wait();
+      }
+      if (failure != null) {
+        throwFailure();
+      }
+    }
+
+    private void submit(final List<T> chunk) throws IOException, InterruptedException {
+      awaitRunning(maxInFlight - 1);
+      synchronized (this) {
+        running++;
+        pending.removeIf(Future::isDone);
+      }
+      try {
+        pending.add(executor.submit(() -> sendChunk(chunk)));
+      } catch (RuntimeException e) {
+        finished(null);
+        throw e;
+      }
+    }
+
+    private void sendChunk(List<T> chunk) {
+      Throwable error = null;
+      try {
+        R response = sender.send(chunk);
+        synchronized (receiverLock) {
+          if (!hasFailed()) {
+            receiver.receive(chunk, response);
+          }
+        }
+        itemsSent.addAndGet(chunk.size());
+        chunksSent.incrementAndGet();
+      } catch (Throwable t) {
+        error = t;
+      } finally {
+        finished(error);
+      }
+    }
+
+    private synchronized boolean hasFailed() {
+      return failure != null;
+    }
+
+    private synchronized void finished(Throwable error) {
+      running--;
+      if (error != null && failure == null) {
+        failure = error;
+      }
+      notifyAll();
+    }
+
+    private void throwFailure() throws IOException {
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      throw new IOException(failure);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package shopping.common;
+
+import com.google.api.client.http.AbstractInputStreamContent;
+import com.google.api.client.http.GZipEncoding;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpEncoding;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.util.StreamingContent;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Class that controls the content encoding of requests and responses when used as an
+ * HttpRequestInitializer.
+ *
+ * <p>Request bodies of at least the threshold size, and bodies of unknown size such as {@link
+ * StreamingBatchContent}, are gzipped; smaller ones are sent as-is, since compressing them costs
+ * more CPU time than the few bytes saved are worth. The size of JSON bodies is estimated from the
+ * object to serialize, since computing their exact length would mean serializing them an extra
+ * time. Gzipped responses are always accepted, and are decompressed transparently by the HTTP
+ * library. The bytes before and after compression are counted in a {@link CompressionStats}.
+ *
+ * <p>When constructing an instance, you can optionally provide an existing HttpRequestInitializer
+ * that this instance should wrap, so that both request initializers run on all requests and
+ * intercept responses as appropriate.
+ */
+public class CompressionHttpRequestInitializer implements HttpRequestInitializer {
+  public static final long DEFAULT_THRESHOLD_BYTES = 1024;
+
+  private final HttpRequestInitializer wrapped;
+  private final long thresholdBytes;
+  private final CompressionStats stats;
+
+  public CompressionHttpRequestInitializer() {
+    this(null);
+  }
+
+  public CompressionHttpRequestInitializer(HttpRequestInitializer toWrap) {
+    this(toWrap, DEFAULT_THRESHOLD_BYTES, new CompressionStats());
+  }
+
+  /**
+   * @param thresholdBytes the size from which request bodies are gzipped
+   * @param stats the counters to update, which may be shared between initializers
+   */
+  public CompressionHttpRequestInitializer(
+      HttpRequestInitializer toWrap, long thresholdBytes, CompressionStats stats) {
+    if (thresholdBytes < 0) {
+      throw new IllegalArgumentException("Invalid compression threshold");
+    }
+    this.wrapped = toWrap;
+    this.thresholdBytes = thresholdBytes;
+    this.stats = stats;
+  }
+
+  public CompressionStats getStats() {
+    return stats;
+  }
+
+  public void initialize(HttpRequest request) throws IOException {
+    if (wrapped != null) {
+      wrapped.initialize(request);
+    }
+    // The API client sets its own encoding after all initializers have run, so the encoding is
+    // chosen just before each attempt is sent instead.
+    final HttpExecuteInterceptor executeInterceptor = request.getInterceptor();
+    request.setInterceptor(
+        r -> {
+          if (executeInterceptor != null) {
+            executeInterceptor.intercept(r);
+          }
+          r.getHeaders().setAcceptEncoding("gzip");
+          HttpContent content = r.getContent();
+          if (content == null) {
+            r.setEncoding(null);
+            return;
+          }
+          long size = estimateSize(content);
+          if (size >= 0 && size < thresholdBytes) {
+            r.setEncoding(null);
+            // The HTTP library needs the exact length of a body it doesn't encode anyway, and
+            // content lengths are computed once and cached.
+            stats.recordUncompressedRequest(content.getLength());
+          } else {
+            r.setEncoding(new CountingGZipEncoding());
+          }
+        });
+    final HttpResponseInterceptor responseInterceptor = request.getResponseInterceptor();
+    request.setResponseInterceptor(
+        response -> {
+          stats.recordResponse(
+              "gzip".equalsIgnoreCase(response.getContentEncoding()),
+              response.getHeaders().getContentLength());
+          if (responseInterceptor != null) {
+            responseInterceptor.interceptResponse(response);
+          }
+        });
+  }
+
+  /** Returns the approximate size of a request body, or -1 if it can't be known in advance. */
+  private static long estimateSize(HttpContent content) throws IOException {
+    if (content instanceof JsonHttpContent) {
+      return ChunkedBatchRunner.estimateJsonSize(((JsonHttpContent) content).getData());
+    }
+    if (content instanceof AbstractInputStreamContent || content instanceof StreamingBatchContent) {
+      // Their lengths are known, or reported as unknown, without reading the content.
+      return content.getLength();
+    }
+    return -1;
+  }
+
+  /** Gzip encoding that counts the bytes going into and coming out of the compressor. */
+  private class CountingGZipEncoding implements HttpEncoding {
+    private final GZipEncoding gzip = new GZipEncoding();
+
+    public String getName() {
+      return gzip.getName();
+    }
+
+    public void encode(final StreamingContent content, OutputStream out) throws IOException {
+      final long[] rawBytes = {0};
+      CountingOutputStream wire = new CountingOutputStream(out);
+      gzip.encode(
+          zipper -> {
+            CountingOutputStream raw = new CountingOutputStream(zipper);
+            content.writeTo(raw);
+            rawBytes[0] = raw.count;
+          },
+          wire);
+      // The gzip encoding flushes everything it has written before returning.
+      stats.recordCompressedRequest(rawBytes[0], wire.count);
+    }
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    // FilterOutputStream writes arrays a byte at a time, so pass them through directly.
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
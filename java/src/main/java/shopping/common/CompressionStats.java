@@ -0,0 +1,97 @@
+package shopping.common;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the request and response bytes compressed by {@link
+ * CompressionHttpRequestInitializer}.
+ */
+public class CompressionStats {
+  private final LongAdder compressedRequests = new LongAdder();
+  private final LongAdder compressedRequestRawBytes = new LongAdder();
+  private final LongAdder compressedRequestWireBytes = new LongAdder();
+  private final LongAdder uncompressedRequests = new LongAdder();
+  private final LongAdder uncompressedRequestBytes = new LongAdder();
+  private final LongAdder compressedResponses = new LongAdder();
+  private final LongAdder compressedResponseWireBytes = new LongAdder();
+  private final LongAdder uncompressedResponses = new LongAdder();
+
+  void recordCompressedRequest(long rawBytes, long wireBytes) {
+    compressedRequests.increment();
+    compressedRequestRawBytes.add(rawBytes);
+    compressedRequestWireBytes.add(wireBytes);
+  }
+
+  void recordUncompressedRequest(long bytes) {
+    uncompressedRequests.increment();
+    uncompressedRequestBytes.add(bytes);
+  }
+
+  void recordResponse(boolean compressed, Long contentLength) {
+    if (!compressed) {
+      uncompressedResponses.increment();
+      return;
+    }
+    compressedResponses.increment();
+    // Compressed responses are often sent chunked, without a length.
+    if (contentLength != null && contentLength > 0) {
+      compressedResponseWireBytes.add(contentLength);
+    }
+  }
+
+  /** Returns the number of request bodies that were sent gzipped. */
+  public long getCompressedRequests() {
+    return compressedRequests.sum();
+  }
+
+  /** Returns the size of the gzipped request bodies before compression. */
+  public long getCompressedRequestRawBytes() {
+    return compressedRequestRawBytes.sum();
+  }
+
+  /** Returns the size of the gzipped request bodies as sent. */
+  public long getCompressedRequestWireBytes() {
+    return compressedRequestWireBytes.sum();
+  }
+
+  /** Returns the number of request bodies that were sent as-is, for being below the threshold. */
+  public long getUncompressedRequests() {
+    return uncompressedRequests.sum();
+  }
+
+  public long getUncompressedRequestBytes() {
+    return uncompressedRequestBytes.sum();
+  }
+
+  /** Returns the number of responses that the server sent gzipped. */
+  public long getCompressedResponses() {
+    return compressedResponses.sum();
+  }
+
+  /** Returns the size of the gzipped responses as received, where the server reported it. */
+  public long getCompressedResponseWireBytes() {
+    return compressedResponseWireBytes.sum();
+  }
+
+  public long getUncompressedResponses() {
+    return uncompressedResponses.sum();
+  }
+
+  @Override
+  public String toString() {
+    long raw = getCompressedRequestRawBytes();
+    long wire = getCompressedRequestWireBytes();
+    return String.format(
+        "gzipped %d requests (%d bytes to %d bytes, %.1fx), sent %d requests (%d bytes) as-is, "
+            + "received %d gzipped responses (%d bytes) and %d other responses",
+        getCompressedRequests(),
+        raw,
+        wire,
+        wire > 0 ? (double) raw / wire : 1.0,
+        getUncompressedRequests(),
+        getUncompressedRequestBytes(),
+        getCompressedResponses(),
+        getCompressedResponseWireBytes(),
+        getUncompressedResponses());
+  }
+}
@@ -1,6 +1,7 @@
 package shopping.common;
 
 import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.JsonGenerator;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.client.util.store.AbstractDataStore;
@@ -8,15 +9,27 @@ import com.google.api.client.util.store.DataStore;
 import com.google.api.client.util.store.DataStoreFactory;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Implementation of DataStoreFactory backed by a file in the samples configuration directory. We
@@ -28,9 +41,19 @@ import java.util.Set;
  * Authenticator} class, we make the inner class that extends {@link DataStore} specific to the
  * {@link StoredCredential} class, and cast it to the expected generic type in the {@link
  * #getDataStore} method.
+ *
+ * <p>Token writes happen on a background thread and are coalesced, so a burst of refreshes only
+ * writes the latest token. Deletes go through the same thread, so they can't race with a write.
+ * Each write goes to a temporary file that is then renamed over the token file, so other sample
+ * processes never read a half-written token.
  */
 public class ConfigDataStoreFactory implements DataStoreFactory {
   public static final String UNUSED_ID = "unused";
+  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  // The writer thread isn't a daemon, so that pending writes finish before the JVM exits, but it
+  // goes away once idle so that it doesn't keep the JVM alive.
+  private static final ExecutorService TOKEN_WRITER =
+      new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 
   private Config config;
 
@@ -49,7 +72,8 @@ public class ConfigDataStoreFactory implements DataStoreFactory {
     private static final String OAUTH_TOKEN_FILENAME = "stored-token.json";
 
     private final File tokenFile;
-    private Token token;
+    private final AtomicBoolean writePending = new AtomicBoolean();
+    private volatile Token token;
 
     public ConfigDataStore(String id, Config config) {
       super(ConfigDataStoreFactory.this, id);
@@ -63,17 +87,51 @@ public class ConfigDataStoreFactory implements DataStoreFactory {
 
     private Token loadToken() throws IOException {
       try (InputStream inputStream = new FileInputStream(tokenFile)) {
-        return new JacksonFactory().fromInputStream(inputStream, Token.class);
+        return JSON_FACTORY.fromInputStream(inputStream, Token.class);
       }
     }
 
-    private void writeToken() throws IOException {
-      try (OutputStream outputStream = new FileOutputStream(tokenFile);
-          OutputStreamWriter outputWriter = new OutputStreamWriter(outputStream)) {
-        JsonGenerator generator = new JacksonFactory().createJsonGenerator(outputWriter);
-        generator.enablePrettyPrint();
-        generator.serialize(token);
-        generator.flush();
+    private void scheduleWrite() {
+      // If a write is already pending, it will pick up the latest token when it runs.
+      if (!writePending.compareAndSet(false, true)) {
+        return;
+      }
+      TOKEN_WRITER.execute(
+          () -> {
+            writePending.set(false);
+            Token current = token;
+            if (current == null) {
+              return;
+            }
+            try {
+              writeToken(current);
+            } catch (IOException e) {
+              System.err.printf("Could not save the OAuth2 token: %s%n", e);
+            }
+          });
+    }
+
+    private void writeToken(Token current) throws IOException {
+      Path target = tokenFile.toPath();
+      Path tmp =
+          Files.createTempFile(target.toAbsolutePath().getParent(), OAUTH_TOKEN_FILENAME, ".tmp");
+      try {
+        try (OutputStream outputStream = Files.newOutputStream(tmp);
+            OutputStreamWriter outputWriter =
+                new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+          JsonGenerator generator = JSON_FACTORY.createJsonGenerator(outputWriter);
+          generator.enablePrettyPrint();
+          generator.serialize(current);
+          generator.flush();
+        }
+        try {
+          Files.move(
+              tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(tmp);
       }
     }
 
@@ -81,10 +139,23 @@ public class ConfigDataStoreFactory implements DataStoreFactory {
       if (token == null) {
         return;
       }
-      if (!tokenFile.delete()) {
-        throw new IOException("Couldn't delete the token file");
-      }
       token = null;
+      // Deleting on the writer thread orders the delete after any write still queued or running,
+      // which would otherwise create the file again (or not have created it yet).
+      Future<?> deleted =
+          TOKEN_WRITER.submit(
+              () -> {
+                Files.deleteIfExists(tokenFile.toPath());
+                return null;
+              });
+      try {
+        deleted.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while deleting the token file");
+      } catch (ExecutionException e) {
+        throw new IOException("Couldn't delete the token file", e.getCause());
+      }
     }
 
     public int size() throws IOException {
@@ -119,7 +190,7 @@ public class ConfigDataStoreFactory implements DataStoreFactory {
         throw new IOException("Unexpected real user ID");
       }
       token = Token.fromStoredCredential(value);
-      writeToken();
+      scheduleWrite();
       return this;
     }
 
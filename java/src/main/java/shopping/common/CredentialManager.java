@@ -0,0 +1,101 @@
+package shopping.common;
+
+import com.google.api.client.auth.oauth2.Credential;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a single credential per configuration in memory and refreshes its access token in the
+ * background shortly before it expires.
+ *
+ * <p>{@link Credential} already refreshes an expired token when it intercepts a request, but then
+ * that request (and every other request waiting on the credential's lock) pays for the refresh.
+ * Refreshing ahead of time means requests normally find a valid token, and sharing the credential
+ * means all clients and threads in the JVM use one token instead of each refreshing their own.
+ */
+public class CredentialManager {
+  /** Loads a credential, for example by running the authentication flow. */
+  public interface Loader {
+    Credential load() throws IOException;
+  }
+
+  // How long before expiry a token is refreshed.
+  public static final long DEFAULT_REFRESH_MARGIN_SECONDS = 300;
+  private static final long RETRY_DELAY_SECONDS = 30;
+
+  private static final Map<String, CredentialManager> managers = new HashMap<>();
+  private static ScheduledExecutorService scheduler;
+
+  private final String key;
+  private final Credential credential;
+  private final long refreshMarginSeconds;
+
+  private CredentialManager(String key, Credential credential, long refreshMarginSeconds) {
+    this.key = key;
+    this.credential = credential;
+    this.refreshMarginSeconds = refreshMarginSeconds;
+  }
+
+  /**
+   * Returns the credential kept for the given key, loading it and starting its background refresh
+   * if this is the first request for it.
+   */
+  public static synchronized Credential getCredential(String key, Loader loader)
+      throws IOException {
+    CredentialManager manager = managers.get(key);
+    if (manager == null) {
+      manager = new CredentialManager(key, loader.load(), DEFAULT_REFRESH_MARGIN_SECONDS);
+      managers.put(key, manager);
+      manager.schedule(manager.nextRefreshDelaySeconds());
+    }
+    return manager.credential;
+  }
+
+  private static synchronized ScheduledExecutorService getScheduler() {
+    if (scheduler == null) {
+      scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "CredentialManager");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return scheduler;
+  }
+
+  private long nextRefreshDelaySeconds() {
+    Long expiresIn = credential.getExpiresInSeconds();
+    if (credential.getAccessToken() == null || expiresIn == null) {
+      // Fetch the first token now rather than on the first request.
+      return 0;
+    }
+    if (expiresIn > 2 * refreshMarginSeconds) {
+      return expiresIn - refreshMarginSeconds;
+    }
+    return Math.max(0, expiresIn / 2);
+  }
+
+  private void schedule(long delaySeconds) {
+    getScheduler().schedule(this::refresh, delaySeconds, TimeUnit.SECONDS);
+  }
+
+  private void refresh() {
+    try {
+      if (credential.refreshToken()) {
+        schedule(nextRefreshDelaySeconds());
+        return;
+      }
+      // The token can't be refreshed (for example, there is no refresh token); leave it to the
+      // credential to report the problem on the next request.
+      System.err.printf("Could not refresh the access token for %s.%n", key);
+    } catch (IOException | RuntimeException e) {
+      System.err.printf("Could not refresh the access token for %s, will retry: %s%n", key, e);
+      schedule(RETRY_DELAY_SECONDS);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package shopping.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Gets many resources by ID through a custombatch method, such as {@code
+ * productstatuses.custombatch} or {@code accountstatuses.custombatch}.
+ *
+ * <p>IDs are grouped into custombatch requests of up to a fixed number of entries, which are sent
+ * by a {@link ChunkedBatchRunner} with up to a fixed number of requests in flight at once. Reading
+ * from the source iterator blocks while all of them are busy, so the IDs can come from a stream of
+ * any length. The batch ID of each request entry is its position in the request, which is how the
+ * response entries are matched back to their IDs.
+ *
+ * <p>The first request that fails as a whole stops the run, and its failure is thrown as an
+ * IOException.
+ *
+ * @param <I> the type of the IDs
+ * @param <Q> the type of the request entries
+ * @param <E> the type of the response entries
+ * @param <R> the type of the custombatch responses
+ */
+public class CustomBatchGetter<I, Q, E, R> implements Closeable {
+  /** Creates the request entry that gets a single ID. */
+  public interface EntryBuilder<I, Q> {
+    Q build(I id, long batchId);
+  }
+
+  /** Receives the result for each ID. */
+  public interface EntryHandler<I, E> {
+    /** Handles the response entry for an ID, which is null if the response had no entry for it. */
+    void handle(I id, E entry) throws IOException;
+  }
+
+  private final EntryBuilder<I, Q> entryBuilder;
+  private final ChunkedBatchRunner.Sender<Q, R> sender;
+  private final Function<R, List<E>> entriesOf;
+  private final Function<E, Long> batchIdOf;
+  private final ChunkedBatchRunner<I, R> runner;
+
+  /**
+   * @param entryBuilder creates the request entry for each ID
+   * @param sender sends a custombatch request with the given entries
+   * @param entriesOf returns the entries of a response, which may be null
+   * @param batchIdOf returns the batch ID of a response entry
+   */
+  public CustomBatchGetter(
+      int maxEntries,
+      int maxInFlight,
+      EntryBuilder<I, Q> entryBuilder,
+      ChunkedBatchRunner.Sender<Q, R> sender,
+      Function<R, List<E>> entriesOf,
+      Function<E, Long> batchIdOf) {
+    this.entryBuilder = entryBuilder;
+    this.sender = sender;
+    this.entriesOf = entriesOf;
+    this.batchIdOf = batchIdOf;
+    this.runner = new ChunkedBatchRunner<>(maxEntries, maxInFlight, this::send);
+  }
+
+  /**
+   * Gets all the given IDs, returning the response entries by ID. IDs that the responses had no
+   * entry for are mapped to null.
+   */
+  public Map<I, E> getAll(Iterator<I> ids) throws IOException {
+    final Map<I, E> results = Collections.synchronizedMap(new HashMap<>());
+    forEach(ids, results::put);
+    return results;
+  }
+
+  /**
+   * Gets all the given IDs, passing each result to the handler as soon as its request completes.
+   * The handler is never called concurrently, but may be called from other threads than the
+   * caller's.
+   */
+  public void forEach(Iterator<I> ids, final EntryHandler<? super I, ? super E> handler)
+      throws IOException {
+    runner.run(
+        ids,
+        (chunk, response) -> {
+          Map<Long, E> byBatchId = new HashMap<>();
+          List<E> entries = entriesOf.apply(response);
+          if (entries != null) {
+            for (E entry : entries) {
+              byBatchId.put(batchIdOf.apply(entry), entry);
+            }
+          }
+          // Entries with a batch ID that wasn't sent are ignored.
+          for (int i = 0; i < chunk.size(); i++) {
+            handler.handle(chunk.get(i), byBatchId.get((long) i));
+          }
+        });
+  }
+
+  private R send(List<I> chunk) throws IOException {
+    List<Q> entries = new ArrayList<>(chunk.size());
+    for (int i = 0; i < chunk.size(); i++) {
+      entries.add(entryBuilder.build(chunk.get(i), i));
+    }
+    return sender.send(entries);
+  }
+
+  public long getEntriesSent() {
+    return runner.getItemsSent();
+  }
+
+  public long getBatchesSent() {
+    return runner.getChunksSent();
+  }
+
+  public void close() {
+    runner.close();
+  }
+}
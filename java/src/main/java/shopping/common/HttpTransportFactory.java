@@ -0,0 +1,218 @@
+package shopping.common;
+
+import com.google.api.client.googleapis.GoogleUtils;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.util.SslUtils;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import javax.net.ssl.SSLContext;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Creates the single {@link HttpTransport} shared by all API clients in the JVM.
+ *
+ * <p>The transport is backed by a pool of persistent connections, so concurrent requests from
+ * different samples, workflows or batch engines reuse connections instead of each paying for a new
+ * TLS handshake. The pool can be sized with the {@code shopping.http.maxConnections} and {@code
+ * shopping.http.maxConnectionsPerRoute} system properties, and {@code
+ * shopping.http.keepAliveMillis} controls how long idle connections are kept when the server
+ * doesn't say otherwise.
+ */
+public class HttpTransportFactory {
+  public static final int DEFAULT_MAX_CONNECTIONS = 200;
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 64;
+  public static final long DEFAULT_KEEP_ALIVE_MILLIS = 60000;
+  // Connections idle for longer than this are checked before being handed out again.
+  private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+  private static final String METRICS_ATTRIBUTE = "shopping.metrics";
+
+  private static HttpTransport sharedTransport;
+  private static PoolingHttpClientConnectionManager connectionPool;
+
+  /** Returns the shared transport, creating it on first use. */
+  public static synchronized HttpTransport getSharedTransport() throws IOException {
+    if (sharedTransport == null) {
+      try {
+        sharedTransport =
+            createPooledTransport(
+                Integer.getInteger("shopping.http.maxConnections", DEFAULT_MAX_CONNECTIONS),
+                Integer.getInteger(
+                    "shopping.http.maxConnectionsPerRoute", DEFAULT_MAX_CONNECTIONS_PER_ROUTE),
+                Long.getLong("shopping.http.keepAliveMillis", DEFAULT_KEEP_ALIVE_MILLIS));
+      } catch (GeneralSecurityException e) {
+        throw new IOException("Could not set up trusted HTTPS connections", e);
+      }
+    }
+    return sharedTransport;
+  }
+
+  private static HttpTransport createPooledTransport(
+      int maxConnections, int maxConnectionsPerRoute, final long keepAliveMillis)
+      throws IOException, GeneralSecurityException {
+    // Trust the same certificates as GoogleNetHttpTransport.newTrustedTransport().
+    SSLContext sslContext = SslUtils.getTlsSslContext();
+    SslUtils.initSslContext(
+        sslContext, GoogleUtils.getCertificateTrustStore(), SslUtils.getPkixTrustManagerFactory());
+    Registry<ConnectionSocketFactory> socketFactories =
+        RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", new SSLConnectionSocketFactory(sslContext))
+            .build();
+
+    connectionPool = new PoolingHttpClientConnectionManager(socketFactories);
+    connectionPool.setMaxTotal(maxConnections);
+    connectionPool.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+    connectionPool.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+    ConnectionKeepAliveStrategy keepAlive =
+        (response, context) -> {
+          long serverKeepAlive =
+              DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+          return serverKeepAlive > 0 ? serverKeepAlive : keepAliveMillis;
+        };
+
+    // Request bodies are often gzipped and responses sent chunked, so count the bytes of both as
+    // they are written and read, for the attempt that MetricsHttpRequestInitializer is sending on
+    // this thread.
+    HttpRequestInterceptor countRequestBytes =
+        (request, context) -> {
+          RequestMetrics.MethodMetrics metrics = MetricsHttpRequestInitializer.takeCurrentAttempt();
+          if (metrics == null) {
+            return;
+          }
+          context.setAttribute(METRICS_ATTRIBUTE, metrics);
+          if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntityEnclosingRequest withBody = (HttpEntityEnclosingRequest) request;
+            if (withBody.getEntity() != null) {
+              withBody.setEntity(
+                  new CountingEntity(withBody.getEntity(), metrics::recordRequestBytes));
+            }
+          }
+        };
+    HttpResponseInterceptor countResponseBytes =
+        (response, context) -> {
+          RequestMetrics.MethodMetrics metrics =
+              (RequestMetrics.MethodMetrics) context.getAttribute(METRICS_ATTRIBUTE);
+          if (metrics != null && response.getEntity() != null) {
+            response.setEntity(
+                new CountingEntity(response.getEntity(), metrics::recordResponseBytes));
+          }
+        };
+
+    return new ApacheHttpTransport(
+        HttpClientBuilder.create()
+            .useSystemProperties()
+            .setConnectionManager(connectionPool)
+            .setKeepAliveStrategy(keepAlive)
+            .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+            // Redirects and retries are handled by the Google HTTP client itself.
+            .disableRedirectHandling()
+            .disableAutomaticRetries()
+            // The Google HTTP client decodes gzip itself, and the request metrics need to see the
+            // Content-Encoding and Content-Length headers of the response as sent.
+            .disableContentCompression()
+            .addInterceptorLast(countRequestBytes)
+            .addInterceptorLast(countResponseBytes)
+            .build());
+  }
+
+  /**
+   * Returns a snapshot of the shared connection pool: leased and available (idle) connections,
+   * and the number of requests waiting for a connection. Returns null if the shared transport has
+   * not been created yet.
+   */
+  public static synchronized PoolStats getPoolStats() {
+    return connectionPool != null ? connectionPool.getTotalStats() : null;
+  }
+
+  public static void printPoolStats() {
+    PoolStats stats = getPoolStats();
+    if (stats == null) {
+      System.out.println("The shared HTTP transport has not been used.");
+      return;
+    }
+    System.out.printf(
+        "HTTP connection pool: %d leased, %d idle, %d waiting, %d max.%n",
+        stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
+  }
+
+  /** Request or response body that passes the number of bytes written or read to a counter. */
+  private static class CountingEntity extends HttpEntityWrapper {
+    private final LongConsumer counter;
+
+    CountingEntity(HttpEntity entity, LongConsumer counter) {
+      super(entity);
+      this.counter = counter;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      super.writeTo(
+          new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+              out.write(b);
+              counter.accept(1);
+            }
+
+            // FilterOutputStream writes arrays a byte at a time, so pass them through directly.
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+              out.write(b, off, len);
+              counter.accept(len);
+            }
+          });
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      return new FilterInputStream(super.getContent()) {
+        @Override
+        public int read() throws IOException {
+          int b = in.read();
+          if (b >= 0) {
+            counter.accept(1);
+          }
+          return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          int n = in.read(b, off, len);
+          if (n > 0) {
+            counter.accept(n);
+          }
+          return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+          long skipped = in.skip(n);
+          counter.accept(skipped);
+          return skipped;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package shopping.common;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the metrics of each API method as an MXBean named {@code
+ * shopping.common:type=RequestMetrics,method="..."} on the platform MBean server.
+ *
+ * <p>The MXBeans read the live counters, so exporting only needs to register methods that have
+ * been seen since the last export.
+ */
+public class JmxMetricsExporter implements MetricsExporter {
+  private final MBeanServer server;
+
+  public JmxMetricsExporter() {
+    this(ManagementFactory.getPlatformMBeanServer());
+  }
+
+  public JmxMetricsExporter(MBeanServer server) {
+    this.server = server;
+  }
+
+  public void export(RequestMetrics metrics) throws IOException {
+    for (Map.Entry<String, RequestMetrics.MethodMetrics> e : metrics.getMethods().entrySet()) {
+      try {
+        ObjectName name =
+            new ObjectName(
+                "shopping.common:type=RequestMetrics,method=" + ObjectName.quote(e.getKey()));
+        if (!server.isRegistered(name)) {
+          server.registerMBean(e.getValue(), name);
+        }
+      } catch (InstanceAlreadyExistsException ex) {
+        // Registered by a concurrent export.
+      } catch (JMException ex) {
+        throw new IOException("Could not register metrics for " + e.getKey(), ex);
+      }
+    }
+  }
+}
@@ -5,32 +5,55 @@ import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseInterceptor;
 import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class that enables logging for requests and responses when used as an HttpRequestInitializer.
  *
+ * <p>Logging can be limited to a random sample of calls, and request and response bodies can be
+ * truncated, so that call logging stays cheap enough to leave on for production traffic. A call is
+ * either logged in full (request and response) or not at all.
+ *
  * <p>When constructing an instance, you can optionally provide an existing HttpRequestInitializer
  * that this instance should wrap, so that both request initializers run on all requests and
  * intercept responses as appropriate.
  */
 public class LoggingHttpRequestInitializer implements HttpRequestInitializer {
   private final HttpRequestInitializer wrapped;
+  private final double sampleRate;
+  private final int contentLimit;
 
   public LoggingHttpRequestInitializer() {
     this(null);
   }
 
   public LoggingHttpRequestInitializer(HttpRequestInitializer toWrap) {
+    this(toWrap, 1.0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param sampleRate fraction of calls to log, between 0 and 1
+   * @param contentLimit maximum number of bytes of each request and response body to log
+   */
+  public LoggingHttpRequestInitializer(
+      HttpRequestInitializer toWrap, double sampleRate, int contentLimit) {
+    if (sampleRate < 0 || sampleRate > 1 || contentLimit < 0) {
+      throw new IllegalArgumentException("Invalid logging sample rate or content limit");
+    }
     this.wrapped = toWrap;
+    this.sampleRate = sampleRate;
+    this.contentLimit = contentLimit;
   }
 
   public void initialize(HttpRequest request) throws IOException {
     if (wrapped != null) {
       wrapped.initialize(request);
     }
-    request.setLoggingEnabled(true);
+    final boolean sampled =
+        sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    request.setLoggingEnabled(sampled);
     request.setCurlLoggingEnabled(false);
-    request.setContentLoggingLimit(Integer.MAX_VALUE);
+    request.setContentLoggingLimit(contentLimit);
     request.setResponseInterceptor(
         new HttpResponseInterceptor() {
           private HttpResponseInterceptor wrapped = null;
@@ -39,8 +62,8 @@ public class LoggingHttpRequestInitializer implements HttpRequestInitializer {
             if (wrapped != null) {
               wrapped.interceptResponse(response);
             }
-            response.setLoggingEnabled(true);
-            response.setContentLoggingLimit(Integer.MAX_VALUE);
+            response.setLoggingEnabled(sampled);
+            response.setContentLoggingLimit(contentLimit);
           }
 
           public HttpResponseInterceptor setWrapped(HttpResponseInterceptor toWrap) {
@@ -0,0 +1,26 @@
+package shopping.common;
+
+import java.util.Map;
+
+/** JMX view of the request metrics collected for a single API method. */
+public interface MethodMetricsMXBean {
+  long getRequestCount();
+
+  long getRetryCount();
+
+  long getRequestBytes();
+
+  long getResponseBytes();
+
+  long getTransportErrorCount();
+
+  double getLatencyMillisP50();
+
+  double getLatencyMillisP90();
+
+  double getLatencyMillisP99();
+
+  double getLatencyMillisMax();
+
+  Map<String, Long> getStatusCounts();
+}
@@ -0,0 +1,8 @@
+package shopping.common;
+
+import java.io.IOException;
+
+/** Publishes the current state of a {@link RequestMetrics} registry somewhere. */
+public interface MetricsExporter {
+  void export(RequestMetrics metrics) throws IOException;
+}
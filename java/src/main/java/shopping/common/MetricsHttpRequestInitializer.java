@@ -0,0 +1,146 @@
+package shopping.common;
+
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpIOExceptionHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponseInterceptor;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Class that records request metrics when used as an HttpRequestInitializer.
+ *
+ * <p>Unlike {@link LoggingHttpRequestInitializer}, this never reads or formats request or response
+ * bodies: it only records latencies, status codes, retries, and byte counts, so it is cheap enough
+ * to leave on for all traffic. Attempts that fail without a response, such as timeouts and reset
+ * connections, are recorded as transport errors.
+ *
+ * <p>Request bodies are often gzipped and responses sent chunked, so the shared transport from
+ * {@link HttpTransportFactory} counts the bytes of both as they are written and read. With other
+ * transports, only bodies of a known length are counted: requests that weren't gzipped, and
+ * responses that report a Content-Length.
+ *
+ * <p>When constructing an instance, you can optionally provide an existing HttpRequestInitializer
+ * that this instance should wrap, so that both request initializers run on all requests and
+ * intercept responses as appropriate.
+ */
+public class MetricsHttpRequestInitializer implements HttpRequestInitializer {
+  // The metrics of the attempt that the current thread is about to send, until the transport takes
+  // them to count the bytes of the request and response.
+  private static final ThreadLocal<RequestMetrics.MethodMetrics> currentAttempt =
+      new ThreadLocal<>();
+
+  private final HttpRequestInitializer wrapped;
+  private final RequestMetrics metrics;
+
+  public MetricsHttpRequestInitializer(RequestMetrics metrics) {
+    this(null, metrics);
+  }
+
+  public MetricsHttpRequestInitializer(HttpRequestInitializer toWrap, RequestMetrics metrics) {
+    this.wrapped = toWrap;
+    this.metrics = metrics;
+  }
+
+  public void initialize(HttpRequest request) throws IOException {
+    if (wrapped != null) {
+      wrapped.initialize(request);
+    }
+    // The request method is only set after the initializers have run, so the method metrics are
+    // looked up when the first attempt is sent.
+    final RequestMetrics.MethodMetrics[] methodMetrics = {null};
+    // The interceptors and the exception handler run once per attempt, so these track the attempt
+    // currently in flight.
+    final long[] attempts = {0};
+    final long[] startNanos = {0};
+
+    final HttpExecuteInterceptor executeInterceptor = request.getInterceptor();
+    request.setInterceptor(
+        r -> {
+          if (executeInterceptor != null) {
+            executeInterceptor.intercept(r);
+          }
+          if (methodMetrics[0] == null) {
+            methodMetrics[0] = metrics.forMethod(methodOf(r));
+          }
+          methodMetrics[0].recordAttempt(attempts[0]++ > 0);
+          currentAttempt.set(methodMetrics[0]);
+          startNanos[0] = System.nanoTime();
+        });
+    final HttpResponseInterceptor responseInterceptor = request.getResponseInterceptor();
+    request.setResponseInterceptor(
+        response -> {
+          methodMetrics[0].recordResponse(
+              response.getStatusCode(), (System.nanoTime() - startNanos[0]) / 1000);
+          if (takeCurrentAttempt() != null) {
+            // The transport didn't count the bodies, so fall back to their lengths where known. The
+            // transport already computed the length of a request body that wasn't encoded.
+            HttpContent content = response.getRequest().getContent();
+            if (content != null && response.getRequest().getEncoding() == null) {
+              methodMetrics[0].recordRequestBytes(Math.max(content.getLength(), 0));
+            }
+            Long contentLength = response.getHeaders().getContentLength();
+            if (contentLength != null && contentLength > 0) {
+              methodMetrics[0].recordResponseBytes(contentLength);
+            }
+          }
+          if (responseInterceptor != null) {
+            responseInterceptor.interceptResponse(response);
+          }
+        });
+    final HttpIOExceptionHandler ioExceptionHandler = request.getIOExceptionHandler();
+    request.setIOExceptionHandler(
+        (r, supportsRetry) -> {
+          currentAttempt.remove();
+          if (methodMetrics[0] != null) {
+            methodMetrics[0].recordTransportError((System.nanoTime() - startNanos[0]) / 1000);
+          }
+          return ioExceptionHandler != null
+              && ioExceptionHandler.handleIOException(r, supportsRetry);
+        });
+  }
+
+  /**
+   * Returns the metrics of the attempt that the current thread is sending, if any, so that its
+   * request and response bytes can be counted. Each attempt is returned at most once.
+   */
+  static RequestMetrics.MethodMetrics takeCurrentAttempt() {
+    RequestMetrics.MethodMetrics methodMetrics = currentAttempt.get();
+    currentAttempt.remove();
+    return methodMetrics;
+  }
+
+  /**
+   * Names the API method a request belongs to, such as {@code GET products/{id}} or {@code POST
+   * orders/{id}/acknowledge}: the HTTP method and the path after the API version, with merchant,
+   * product and order IDs replaced by a placeholder.
+   */
+  static String methodOf(HttpRequest request) {
+    StringBuilder method = new StringBuilder(request.getRequestMethod());
+    List<String> pathParts = request.getUrl().getPathParts();
+    if (pathParts == null) {
+      return method.toString();
+    }
+    boolean afterVersion = false;
+    boolean first = true;
+    for (String part : pathParts) {
+      if (part == null || part.isEmpty()) {
+        continue;
+      }
+      if (!afterVersion) {
+        afterVersion = part.matches("v\\d+(\\.\\d+)?(sandbox)?");
+        continue;
+      }
+      if (first && part.matches("\\d+")) {
+        // The merchant ID that most methods start with.
+        continue;
+      }
+      // Method names like "shipLineItems" are purely alphabetic; IDs have digits or separators.
+      method.append(first ? ' ' : '/').append(part.matches("[A-Za-z]+") ? part : "{id}");
+      first = false;
+    }
+    return method.toString();
+  }
+}
@@ -0,0 +1,276 @@
+package shopping.common;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.json.GenericJson;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the results of a paged list call, fetching pages ahead of the consumer.
+ *
+ * <p>A background thread executes the list request and, as soon as a page arrives, re-issues it
+ * with that page's token. Fetched pages are held in a queue of fixed depth; once it is full, the
+ * fetcher waits for the consumer to catch up, so a slow consumer never causes unbounded buffering.
+ *
+ * <p>Streams created with {@link #streaming} parse each page with {@link StreamingResponseParser}
+ * and hand items over in small chunks while the page is still being read, instead of waiting for
+ * the whole page to be parsed; the queue then holds chunks rather than whole pages.
+ *
+ * <p>Errors from the list request are rethrown to the consumer as {@link UncheckedIOException}
+ * when iterating or streaming, or as the original {@link IOException} from {@link #forEachItem}.
+ */
+public class PagedStream<T> implements Iterator<T>, Closeable {
+  public static final int DEFAULT_PREFETCH_DEPTH = 2;
+  // Number of items handed over at a time by streaming fetchers.
+  static final int STREAMING_CHUNK_SIZE = 25;
+
+  private static final Object END = new Object();
+
+  private final BlockingQueue<Object> pages;
+  private final Thread fetcher;
+  private Iterator<T> current;
+  private boolean done = false;
+
+  private PagedStream(final Fetcher source, int prefetchDepth) {
+    if (prefetchDepth < 1) {
+      throw new IllegalArgumentException("Prefetch depth must be positive");
+    }
+    this.pages = new ArrayBlockingQueue<>(prefetchDepth + 1);
+    this.fetcher = new Thread(() -> source.fetchAll(pages), "PagedStream");
+    this.fetcher.setDaemon(true);
+    this.fetcher.start();
+  }
+
+  /**
+   * Creates a stream over all results of the given list request, using the given functions to
+   * extract the items and the next page token from each response.
+   */
+  public static <R, T> PagedStream<T> of(
+      AbstractGoogleClientRequest<R> request,
+      Function<R, List<T>> items,
+      Function<R, String> nextPageToken) {
+    return of(request, items, nextPageToken, DEFAULT_PREFETCH_DEPTH);
+  }
+
+  public static <R, T> PagedStream<T> of(
+      AbstractGoogleClientRequest<R> request,
+      Function<R, List<T>> items,
+      Function<R, String> nextPageToken,
+      int prefetchDepth) {
+    return new PagedStream<T>(
+        new ResponseFetcher<R, T>(request, items, nextPageToken), prefetchDepth);
+  }
+
+  /**
+   * Creates a stream over all results of the given list request, parsing the items of the named
+   * array field in each response one at a time, as they arrive.
+   *
+   * @param arrayField the response field holding the page's items, like {@code resources}
+   * @param itemType the class of the items
+   */
+  public static <T> PagedStream<T> streaming(
+      AbstractGoogleClientRequest<?> request, String arrayField, Class<T> itemType) {
+    return streaming(request, arrayField, itemType, DEFAULT_PREFETCH_DEPTH);
+  }
+
+  /** @param prefetchDepth the number of chunks of items to buffer ahead of the consumer */
+  public static <T> PagedStream<T> streaming(
+      AbstractGoogleClientRequest<?> request,
+      String arrayField,
+      Class<T> itemType,
+      int prefetchDepth) {
+    return new PagedStream<T>(
+        new StreamingFetcher<T>(request, arrayField, itemType), prefetchDepth);
+  }
+
+  public boolean hasNext() {
+    while (current == null || !current.hasNext()) {
+      if (done) {
+        return false;
+      }
+      Object page;
+      try {
+        page = pages.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for the next page", e);
+      }
+      if (page == END) {
+        done = true;
+      } else if (page instanceof IOException) {
+        done = true;
+        throw new UncheckedIOException((IOException) page);
+      } else if (page instanceof RuntimeException) {
+        done = true;
+        throw (RuntimeException) page;
+      } else if (page instanceof Error) {
+        done = true;
+        throw (Error) page;
+      } else if (page instanceof Throwable) {
+        done = true;
+        throw new IllegalStateException("Failed to fetch the next page", (Throwable) page);
+      } else {
+        @SuppressWarnings("unchecked")
+        List<T> items = (List<T>) page;
+        current = items.iterator();
+      }
+    }
+    return true;
+  }
+
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  /**
+   * Passes each remaining item to the given action, rethrowing any error from the list request.
+   *
+   * @return the number of items processed
+   */
+  public long forEachItem(Consumer<? super T> action) throws IOException {
+    long count = 0;
+    try {
+      while (hasNext()) {
+        action.accept(next());
+        count++;
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return count;
+  }
+
+  /** Returns the remaining items as a lazily evaluated, sequential stream. */
+  public Stream<T> stream() {
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+        .onClose(this::close);
+  }
+
+  /** Stops fetching further pages. */
+  public void close() {
+    done = true;
+    fetcher.interrupt();
+  }
+
+  /** Issues the list request page after page on the fetcher thread. */
+  private abstract static class Fetcher {
+    final AbstractGoogleClientRequest<?> request;
+
+    Fetcher(AbstractGoogleClientRequest<?> request) {
+      this.request = request;
+    }
+
+    /** Fetches the page the request currently asks for, and returns the next page token. */
+    abstract String fetchPage(BlockingQueue<Object> pages)
+        throws IOException, InterruptedException;
+
+    void fetchAll(BlockingQueue<Object> pages) {
+      try {
+        try {
+          String pageToken = null;
+          do {
+            if (pageToken != null) {
+              request.set("pageToken", pageToken);
+            }
+            pageToken = fetchPage(pages);
+          } while (pageToken != null && !Thread.currentThread().isInterrupted());
+          pages.put(END);
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Throwable t) {
+          // Anything else, including Errors, is handed to the consumer, which would otherwise
+          // wait for the next page forever.
+          pages.put(t);
+        }
+      } catch (InterruptedException e) {
+        // The consumer closed the stream, so no one is waiting for further pages.
+      }
+    }
+  }
+
+  /** Fetches pages as parsed responses. */
+  private static class ResponseFetcher<R, T> extends Fetcher {
+    private final AbstractGoogleClientRequest<R> typedRequest;
+    private final Function<R, List<T>> items;
+    private final Function<R, String> nextPageToken;
+
+    ResponseFetcher(
+        AbstractGoogleClientRequest<R> request,
+        Function<R, List<T>> items,
+        Function<R, String> nextPageToken) {
+      super(request);
+      this.typedRequest = request;
+      this.items = items;
+      this.nextPageToken = nextPageToken;
+    }
+
+    String fetchPage(BlockingQueue<Object> pages) throws IOException, InterruptedException {
+      R response = typedRequest.execute();
+      List<T> page = items.apply(response);
+      if (page != null && !page.isEmpty()) {
+        pages.put(page);
+      }
+      return nextPageToken.apply(response);
+    }
+  }
+
+  /** Fetches pages with a {@link StreamingResponseParser}, handing items over in chunks. */
+  private static class StreamingFetcher<T> extends Fetcher {
+    private final String arrayField;
+    private final Class<T> itemType;
+
+    StreamingFetcher(AbstractGoogleClientRequest<?> request, String arrayField, Class<T> itemType) {
+      super(request);
+      this.arrayField = arrayField;
+      this.itemType = itemType;
+    }
+
+    String fetchPage(final BlockingQueue<Object> pages) throws IOException, InterruptedException {
+      final List<T> chunk = new ArrayList<>(STREAMING_CHUNK_SIZE);
+      GenericJson rest =
+          StreamingResponseParser.execute(
+              request,
+              arrayField,
+              itemType,
+              item -> {
+                chunk.add(item);
+                if (chunk.size() == STREAMING_CHUNK_SIZE) {
+                  putChunk(pages, new ArrayList<>(chunk));
+                  chunk.clear();
+                }
+              });
+      if (!chunk.isEmpty()) {
+        pages.put(chunk);
+      }
+      return (String) rest.get("nextPageToken");
+    }
+
+    // The parser's handler can only throw IOExceptions, so report interruption as one.
+    private static void putChunk(BlockingQueue<Object> pages, Object chunk) throws IOException {
+      try {
+        pages.put(chunk);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while handing over items");
+      }
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package shopping.common;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.util.ClassInfo;
+import com.google.api.client.util.FieldInfo;
+import java.io.Serializable;
+import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Typed builder for the {@code fields} mask of a get or list request, so that the API only returns
+ * (and the client only parses) the parts of each resource that the caller uses.
+ *
+ * <p>Fields are selected with the getters of the API model class, for example {@code
+ * Projection.of(Product.class).with(Product::getId).with(Product::getPrice, priceFields)}, and are
+ * checked against the model class when selected, so a typo fails fast instead of silently
+ * returning empty resources. Projections are immutable; each {@code with} returns a new one.
+ */
+public final class Projection<T extends GenericJson> {
+  /** A method reference to a getter of an API model class, like {@code Product::getId}. */
+  public interface Getter<T> extends Serializable {
+    Object get(T resource);
+  }
+
+  private final Class<T> type;
+  // Selected fields by JSON name, with the projection of their subfields, or null for all of them.
+  private final Map<String, Projection<?>> fields;
+
+  private Projection(Class<T> type, Map<String, Projection<?>> fields) {
+    this.type = type;
+    this.fields = fields;
+  }
+
+  /** Creates an empty projection of the given model class. */
+  public static <T extends GenericJson> Projection<T> of(Class<T> type) {
+    return new Projection<T>(type, new LinkedHashMap<String, Projection<?>>());
+  }
+
+  /** Returns a projection that also selects the whole field read by the given getter. */
+  public Projection<T> with(Getter<T> getter) {
+    return with(fieldOf(getter), null);
+  }
+
+  /** Returns a projection that also selects the given subfields of the field read by a getter. */
+  public Projection<T> with(Getter<T> getter, Projection<?> subfields) {
+    return with(fieldOf(getter), subfields);
+  }
+
+  /** Returns a projection that also selects the field with the given JSON name. */
+  public Projection<T> with(String field) {
+    return with(field, null);
+  }
+
+  /**
+   * Returns a projection that also selects the given subfields of the field with the given JSON
+   * name. If {@code subfields} is null, the whole field is selected.
+   */
+  public Projection<T> with(String field, Projection<?> subfields) {
+    FieldInfo fieldInfo = ClassInfo.of(type).getFieldInfo(field);
+    if (fieldInfo == null) {
+      throw new IllegalArgumentException(
+          String.format("%s has no field \"%s\"", type.getSimpleName(), field));
+    }
+    if (subfields != null && subfields.type != elementTypeOf(fieldInfo)) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Field \"%s\" of %s doesn't hold %s",
+              field, type.getSimpleName(), subfields.type.getSimpleName()));
+    }
+    Map<String, Projection<?>> newFields = new LinkedHashMap<>(fields);
+    newFields.put(field, subfields);
+    return new Projection<T>(type, newFields);
+  }
+
+  public Class<T> getType() {
+    return type;
+  }
+
+  /** Returns the mask for a single resource, like {@code id,price(value,currency)}. */
+  @Override
+  public String toString() {
+    StringBuilder mask = new StringBuilder();
+    for (Map.Entry<String, Projection<?>> e : fields.entrySet()) {
+      if (mask.length() > 0) {
+        mask.append(',');
+      }
+      mask.append(e.getKey());
+      if (e.getValue() != null) {
+        mask.append('(').append(e.getValue()).append(')');
+      }
+    }
+    return mask.toString();
+  }
+
+  /**
+   * Returns the mask for a list response whose items are in the {@code resources} field. The
+   * next page token is always included, so that paging keeps working.
+   */
+  public String forList() {
+    return forList("resources");
+  }
+
+  /** Returns the mask for a list or custombatch response whose items are in the given field. */
+  public String forList(String arrayField) {
+    return String.format("kind,nextPageToken,%s(%s)", arrayField, checkedMask());
+  }
+
+  /**
+   * Returns the mask for a custombatch response whose entries hold the resource in the given field,
+   * like {@code productStatus}. The batch ID and errors of each entry are always included.
+   */
+  public String forBatch(String resourceField) {
+    return String.format(
+        "kind,entries(kind,batchId,errors,%s(%s))", resourceField, checkedMask());
+  }
+
+  /** Restricts the response of the given get request to the selected fields. */
+  public <R extends AbstractGoogleClientRequest<?>> R applyTo(R request) {
+    request.set("fields", checkedMask());
+    return request;
+  }
+
+  /** Restricts the items in the responses of the given list request to the selected fields. */
+  public <R extends AbstractGoogleClientRequest<?>> R applyToList(R request) {
+    request.set("fields", forList());
+    return request;
+  }
+
+  private String checkedMask() {
+    if (fields.isEmpty()) {
+      throw new IllegalStateException("No fields selected from " + type.getSimpleName());
+    }
+    return toString();
+  }
+
+  // Finds the JSON name of the field a getter like getOfferId reads, from its method name.
+  private String fieldOf(Getter<T> getter) {
+    String methodName;
+    try {
+      // Serializable lambdas can describe themselves, including the method they refer to.
+      Method writeReplace = getter.getClass().getDeclaredMethod("writeReplace");
+      writeReplace.setAccessible(true);
+      methodName = ((SerializedLambda) writeReplace.invoke(getter)).getImplMethodName();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      throw new IllegalArgumentException("Fields must be selected with getter references", e);
+    }
+    if (!methodName.startsWith("get") || methodName.length() == 3) {
+      throw new IllegalArgumentException(
+          String.format("%s is not a getter reference like Product::getId", methodName));
+    }
+    String javaName = Character.toLowerCase(methodName.charAt(3)) + methodName.substring(4);
+    ClassInfo classInfo = ClassInfo.of(type);
+    for (String name : classInfo.getNames()) {
+      if (classInfo.getFieldInfo(name).getField().getName().equals(javaName)) {
+        return name;
+      }
+    }
+    throw new IllegalArgumentException(
+        String.format("%s has no field for %s", type.getSimpleName(), methodName));
+  }
+
+  // Returns the class of a field's value, or of its elements if it holds a list.
+  private static Class<?> elementTypeOf(FieldInfo fieldInfo) {
+    if (!Collection.class.isAssignableFrom(fieldInfo.getType())) {
+      return fieldInfo.getType();
+    }
+    Type generic = fieldInfo.getField().getGenericType();
+    if (generic instanceof ParameterizedType) {
+      Type element = ((ParameterizedType) generic).getActualTypeArguments()[0];
+      if (element instanceof Class) {
+        return (Class<?>) element;
+      }
+    }
+    return Object.class;
+  }
+}
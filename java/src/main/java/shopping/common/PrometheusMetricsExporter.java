@@ -0,0 +1,110 @@
+package shopping.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Writes the request metrics to a file in the Prometheus text exposition format, for example for
+ * the node exporter's textfile collector.
+ *
+ * <p>The file is replaced atomically, so a scraper never sees a partially written file.
+ */
+public class PrometheusMetricsExporter implements MetricsExporter {
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+  private final File file;
+
+  public PrometheusMetricsExporter(File file) {
+    this.file = file;
+  }
+
+  public void export(RequestMetrics metrics) throws IOException {
+    Map<String, RequestMetrics.MethodMetrics> methods = metrics.getMethods();
+    File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+    try (PrintWriter out =
+        new PrintWriter(
+            new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8))) {
+      out.print("# HELP shopping_api_request_latency_seconds Latency of API requests.\n");
+      out.print("# TYPE shopping_api_request_latency_seconds summary\n");
+      for (Map.Entry<String, RequestMetrics.MethodMetrics> e : methods.entrySet()) {
+        String method = escape(e.getKey());
+        LatencyHistogram latency = e.getValue().getLatency();
+        for (double quantile : QUANTILES) {
+          out.printf(
+              "shopping_api_request_latency_seconds{method=\"%s\",quantile=\"%s\"} %s\n",
+              method, quantile, latency.getPercentile(quantile * 100) / 1e6);
+        }
+        out.printf(
+            "shopping_api_request_latency_seconds_sum{method=\"%s\"} %s\n",
+            method, latency.getSum() / 1e6);
+        out.printf(
+            "shopping_api_request_latency_seconds_count{method=\"%s\"} %d\n",
+            method, latency.getCount());
+      }
+
+      out.print("# HELP shopping_api_responses_total API responses received, by status code.\n");
+      out.print("# TYPE shopping_api_responses_total counter\n");
+      for (Map.Entry<String, RequestMetrics.MethodMetrics> e : methods.entrySet()) {
+        for (Map.Entry<String, Long> status : e.getValue().getStatusCounts().entrySet()) {
+          out.printf(
+              "shopping_api_responses_total{method=\"%s\",code=\"%s\"} %d\n",
+              escape(e.getKey()), status.getKey(), status.getValue());
+        }
+      }
+
+      out.print(
+          "# HELP shopping_api_transport_errors_total API requests that failed without a"
+              + " response.\n");
+      out.print("# TYPE shopping_api_transport_errors_total counter\n");
+      for (Map.Entry<String, RequestMetrics.MethodMetrics> e : methods.entrySet()) {
+        out.printf(
+            "shopping_api_transport_errors_total{method=\"%s\"} %d\n",
+            escape(e.getKey()), e.getValue().getTransportErrorCount());
+      }
+
+      out.print("# HELP shopping_api_retries_total API requests that were retries.\n");
+      out.print("# TYPE shopping_api_retries_total counter\n");
+      for (Map.Entry<String, RequestMetrics.MethodMetrics> e : methods.entrySet()) {
+        out.printf(
+            "shopping_api_retries_total{method=\"%s\"} %d\n",
+            escape(e.getKey()), e.getValue().getRetryCount());
+      }
+
+      out.print("# HELP shopping_api_request_bytes_total Bytes of request content sent.\n");
+      out.print("# TYPE shopping_api_request_bytes_total counter\n");
+      for (Map.Entry<String, RequestMetrics.MethodMetrics> e : methods.entrySet()) {
+        out.printf(
+            "shopping_api_request_bytes_total{method=\"%s\"} %d\n",
+            escape(e.getKey()), e.getValue().getRequestBytes());
+      }
+
+      out.print("# HELP shopping_api_response_bytes_total Bytes of response content received.\n");
+      out.print("# TYPE shopping_api_response_bytes_total counter\n");
+      for (Map.Entry<String, RequestMetrics.MethodMetrics> e : methods.entrySet()) {
+        out.printf(
+            "shopping_api_response_bytes_total{method=\"%s\"} %d\n",
+            escape(e.getKey()), e.getValue().getResponseBytes());
+      }
+    }
+    try {
+      Files.move(
+          tmp.toPath(),
+          file.toPath(),
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static String escape(String labelValue) {
+    return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
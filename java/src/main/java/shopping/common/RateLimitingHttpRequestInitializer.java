@@ -0,0 +1,202 @@
+package shopping.common;
+
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponseInterceptor;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that limits the rate of requests sent when used as an HttpRequestInitializer.
+ *
+ * <p>Each API resource (products, productstatuses, orders, accounts, ...) gets its own token
+ * bucket, whose rate adapts to the responses received: it is halved whenever the API signals that
+ * a quota has been hit (HTTP 429, or 503 when the backend is overloaded), and grows back additively
+ * while responses stay healthy. This keeps throughput close to the highest rate the quota allows
+ * instead of repeatedly tripping it and relying on retries.
+ *
+ * <p>Quotas apply to the merchant rather than to a client, so the buckets are shared by all
+ * instances in the JVM; a bucket takes its rates from the instance that first sends a request for
+ * its resource. Custombatch requests usually succeed as a whole even when some of their entries
+ * hit a quota, so callers that inspect batch entries should pass those back with {@link
+ * #reportThrottled}.
+ *
+ * <p>When constructing an instance, you can optionally provide an existing HttpRequestInitializer
+ * that this instance should wrap, so that both request initializers run on all requests and
+ * intercept responses as appropriate.
+ */
+public class RateLimitingHttpRequestInitializer implements HttpRequestInitializer {
+  public static final double DEFAULT_INITIAL_RATE = 20;
+  public static final double DEFAULT_MIN_RATE = 0.5;
+  public static final double DEFAULT_MAX_RATE = 500;
+  // Requests per second added to the rate for each second of healthy responses.
+  private static final double ADDITIVE_INCREASE = 2;
+  private static final double MULTIPLICATIVE_DECREASE = 0.5;
+  // Many in-flight requests may be throttled at once, so only back off once per interval.
+  private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+  private final HttpRequestInitializer wrapped;
+  private final double initialRate;
+  private final double maxRate;
+
+  public RateLimitingHttpRequestInitializer() {
+    this(null);
+  }
+
+  public RateLimitingHttpRequestInitializer(HttpRequestInitializer toWrap) {
+    this(toWrap, DEFAULT_INITIAL_RATE, DEFAULT_MAX_RATE);
+  }
+
+  public RateLimitingHttpRequestInitializer(
+      HttpRequestInitializer toWrap, double initialRate, double maxRate) {
+    if (initialRate < DEFAULT_MIN_RATE || maxRate < initialRate) {
+      throw new IllegalArgumentException("Invalid rate limits");
+    }
+    this.wrapped = toWrap;
+    this.initialRate = initialRate;
+    this.maxRate = maxRate;
+  }
+
+  public void initialize(HttpRequest request) throws IOException {
+    if (wrapped != null) {
+      wrapped.initialize(request);
+    }
+    final Bucket bucket =
+        buckets.computeIfAbsent(
+            resourceOf(request.getUrl().getPathParts()), k -> new Bucket(initialRate, maxRate));
+    final HttpExecuteInterceptor executeInterceptor = request.getInterceptor();
+    // The execute interceptor runs before each attempt, including retries.
+    request.setInterceptor(
+        r -> {
+          bucket.acquire();
+          if (executeInterceptor != null) {
+            executeInterceptor.intercept(r);
+          }
+        });
+    final HttpResponseInterceptor responseInterceptor = request.getResponseInterceptor();
+    request.setResponseInterceptor(
+        response -> {
+          if (responseInterceptor != null) {
+            responseInterceptor.interceptResponse(response);
+          }
+          int status = response.getStatusCode();
+          if (status == 429 || status == 503) {
+            bucket.onThrottled();
+          } else if (status < 500) {
+            bucket.onSuccess();
+          }
+        });
+  }
+
+  /**
+   * Slows down requests for the given resource, as if a request for it had been throttled. Has no
+   * effect if no rate-limited request has been sent for the resource yet.
+   */
+  public static void reportThrottled(String resource) {
+    Bucket bucket = buckets.get(resource);
+    if (bucket != null) {
+      bucket.onThrottled();
+    }
+  }
+
+  /** Returns the current rate, in requests per second, for each resource seen so far. */
+  public static Map<String, Double> getCurrentRates() {
+    Map<String, Double> rates = new TreeMap<>();
+    for (Map.Entry<String, Bucket> e : buckets.entrySet()) {
+      rates.put(e.getKey(), e.getValue().getRate());
+    }
+    return rates;
+  }
+
+  /**
+   * Determines the resource from a request path like {@code /content/v2.1/123/products/batch}: the
+   * first segment after the API version that isn't an ID.
+   */
+  static String resourceOf(List<String> pathParts) {
+    if (pathParts == null) {
+      return "default";
+    }
+    boolean afterVersion = false;
+    for (String part : pathParts) {
+      if (part == null || part.isEmpty()) {
+        continue;
+      }
+      if (!afterVersion) {
+        afterVersion = part.matches("v\\d+(\\.\\d+)?(sandbox)?");
+      } else if (!part.matches("\\d+")) {
+        return part;
+      }
+    }
+    return "default";
+  }
+
+  /** Token bucket whose refill rate follows additive-increase, multiplicative-decrease. */
+  private static class Bucket {
+    private final double maxRate;
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastDecreaseNanos;
+
+    Bucket(double initialRate, double maxRate) {
+      this.maxRate = maxRate;
+      this.rate = initialRate;
+      this.tokens = initialRate;
+      this.lastRefillNanos = System.nanoTime();
+      this.lastDecreaseNanos = lastRefillNanos - DECREASE_INTERVAL_NANOS;
+    }
+
+    void acquire() throws IOException {
+      long waitNanos;
+      synchronized (this) {
+        refill();
+        // Reserve a token even if it isn't available yet, and wait outside the lock until it is.
+        tokens -= 1;
+        waitNanos = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+      }
+      if (waitNanos > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for rate limit");
+        }
+      }
+    }
+
+    synchronized void onSuccess() {
+      rate = Math.min(maxRate, rate + ADDITIVE_INCREASE / rate);
+    }
+
+    synchronized void onThrottled() {
+      long now = System.nanoTime();
+      if (now - lastDecreaseNanos < DECREASE_INTERVAL_NANOS) {
+        return;
+      }
+      lastDecreaseNanos = now;
+      refill();
+      rate = Math.max(DEFAULT_MIN_RATE, rate * MULTIPLICATIVE_DECREASE);
+      tokens = Math.min(tokens, 0);
+    }
+
+    synchronized double getRate() {
+      return rate;
+    }
+
+    private void refill() {
+      long now = System.nanoTime();
+      // Allow bursts of up to one second's worth of requests.
+      tokens = Math.min(rate, tokens + (now - lastRefillNanos) / 1e9 * rate);
+      lastRefillNanos = now;
+    }
+  }
+}
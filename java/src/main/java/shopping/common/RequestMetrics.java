@@ -0,0 +1,146 @@
+package shopping.common;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of request metrics, keyed by API method.
+ *
+ * <p>All counters are lock-free, so recording is cheap enough to leave on for production traffic.
+ * Metrics are published by {@link MetricsExporter}s, either on demand or periodically.
+ */
+public class RequestMetrics {
+  private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+  private ScheduledExecutorService scheduler;
+
+  /** Returns the metrics for the given method, creating them if needed. */
+  public MethodMetrics forMethod(String method) {
+    return methods.computeIfAbsent(method, k -> new MethodMetrics());
+  }
+
+  /** Returns the metrics of all methods seen so far, sorted by method. */
+  public Map<String, MethodMetrics> getMethods() {
+    return new TreeMap<>(methods);
+  }
+
+  /** Runs the given exporter every {@code period} until the JVM exits or the task is cancelled. */
+  public synchronized ScheduledFuture<?> exportPeriodically(
+      final MetricsExporter exporter, long period, TimeUnit unit) {
+    if (scheduler == null) {
+      scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "RequestMetrics");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return scheduler.scheduleAtFixedRate(
+        () -> {
+          try {
+            exporter.export(this);
+          } catch (IOException | RuntimeException e) {
+            // Keep exporting on later runs; a failed export must not stop the schedule.
+            System.err.printf("Could not export request metrics: %s%n", e);
+          }
+        },
+        period,
+        period,
+        unit);
+  }
+
+  /** Metrics collected for a single API method. */
+  public static class MethodMetrics implements MethodMetricsMXBean {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder transportErrors = new LongAdder();
+    private final ConcurrentMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+    void recordAttempt(boolean retry) {
+      requests.increment();
+      if (retry) {
+        retries.increment();
+      }
+    }
+
+    // Called as request bodies are written, possibly more than once per request.
+    void recordRequestBytes(long bytes) {
+      requestBytes.add(bytes);
+    }
+
+    void recordResponse(int statusCode, long latencyMicros) {
+      latency.record(latencyMicros);
+      statusCounts.computeIfAbsent(statusCode, k -> new LongAdder()).increment();
+    }
+
+    // Called as response bodies are read, possibly more than once per response.
+    void recordResponseBytes(long bytes) {
+      responseBytes.add(bytes);
+    }
+
+    // An attempt that failed without a response, such as a timeout or a reset connection.
+    void recordTransportError(long latencyMicros) {
+      latency.record(latencyMicros);
+      transportErrors.increment();
+    }
+
+    public LatencyHistogram getLatency() {
+      return latency;
+    }
+
+    public long getRequestCount() {
+      return requests.sum();
+    }
+
+    public long getRetryCount() {
+      return retries.sum();
+    }
+
+    public long getRequestBytes() {
+      return requestBytes.sum();
+    }
+
+    public long getResponseBytes() {
+      return responseBytes.sum();
+    }
+
+    public long getTransportErrorCount() {
+      return transportErrors.sum();
+    }
+
+    public double getLatencyMillisP50() {
+      return latency.getPercentile(50) / 1000.0;
+    }
+
+    public double getLatencyMillisP90() {
+      return latency.getPercentile(90) / 1000.0;
+    }
+
+    public double getLatencyMillisP99() {
+      return latency.getPercentile(99) / 1000.0;
+    }
+
+    public double getLatencyMillisMax() {
+      return latency.getMax() / 1000.0;
+    }
+
+    public Map<String, Long> getStatusCounts() {
+      Map<String, Long> counts = new TreeMap<>();
+      for (Map.Entry<Integer, LongAdder> e : statusCounts.entrySet()) {
+        counts.put(String.valueOf(e.getKey()), e.getValue().sum());
+      }
+      return counts;
+    }
+  }
+}
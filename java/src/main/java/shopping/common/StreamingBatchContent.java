@@ -0,0 +1,150 @@
+package shopping.common;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClient;
+import com.google.api.client.http.AbstractHttpContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Request body of a custombatch call that is serialized entry by entry while it is sent.
+ *
+ * <p>The generated clients serialize a custombatch request from a fully built list of entries, so
+ * the whole batch (for products, up to 1000 rich product resources) is on the heap at once. This
+ * content instead writes {@code {"entries": [...]}} straight to the connection, pulling each entry
+ * from an iterator only when it is about to be written, so that memory use is proportional to a
+ * single entry. Use one of the {@code execute} methods to send it; they can also parse the response
+ * entry by entry.
+ *
+ * <p>Content created from an iterator can only be written once, so the request can't be retried
+ * by the HTTP library; content created from a supplier asks it for a fresh iterator each time.
+ */
+public class StreamingBatchContent extends AbstractHttpContent {
+  private final JsonFactory jsonFactory;
+  private final Supplier<? extends Iterator<?>> entries;
+  private Iterator<?> once;
+
+  public StreamingBatchContent(JsonFactory jsonFactory, Iterator<?> entries) {
+    super(Json.MEDIA_TYPE);
+    this.jsonFactory = jsonFactory;
+    this.entries = null;
+    this.once = entries;
+  }
+
+  public StreamingBatchContent(JsonFactory jsonFactory, Supplier<? extends Iterator<?>> entries) {
+    super(Json.MEDIA_TYPE);
+    this.jsonFactory = jsonFactory;
+    this.entries = entries;
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    Iterator<?> iterator;
+    if (entries != null) {
+      iterator = entries.get();
+    } else if (once != null) {
+      iterator = once;
+      once = null;
+    } else {
+      throw new IllegalStateException("Batch entries from an iterator can only be written once");
+    }
+    JsonGenerator generator = jsonFactory.createJsonGenerator(out, getCharset());
+    generator.writeStartObject();
+    generator.writeFieldName("entries");
+    generator.writeStartArray();
+    while (iterator.hasNext()) {
+      generator.serialize(iterator.next());
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+    // Flush rather than close, since the HTTP library owns the stream.
+    generator.flush();
+  }
+
+  @Override
+  public boolean retrySupported() {
+    return entries != null;
+  }
+
+  // Computing the length would mean serializing everything twice, so send the body chunked.
+  @Override
+  protected long computeLength() {
+    return -1;
+  }
+
+  /**
+   * Sends a custombatch request with the given content, and parses the response.
+   *
+   * @param client the API client, whose request initializers and base URL are used
+   * @param path the custombatch method's path relative to the base URL, like {@code products/batch}
+   * @param content the request body
+   * @param responseType the class of the custombatch response
+   */
+  public static <T> T execute(
+      AbstractGoogleJsonClient client,
+      String path,
+      StreamingBatchContent content,
+      Class<T> responseType)
+      throws IOException {
+    return send(client, path, content).parseAs(responseType);
+  }
+
+  /**
+   * Sends a custombatch request with the given content, and passes each entry of the response to
+   * the handler as soon as it has been parsed, so the response isn't held in memory either.
+   *
+   * @param entryType the class of the custombatch response entries
+   * @return the number of response entries
+   */
+  public static <T> long execute(
+      AbstractGoogleJsonClient client,
+      String path,
+      StreamingBatchContent content,
+      Class<T> entryType,
+      final StreamingResponseParser.ItemHandler<? super T> handler)
+      throws IOException {
+    HttpResponse response = send(client, path, content);
+    final long[] count = {0};
+    try {
+      StreamingResponseParser.parse(
+          client.getJsonFactory(),
+          response.getContent(),
+          response.getContentCharset(),
+          "entries",
+          entryType,
+          entry -> {
+            handler.handle(entry);
+            count[0]++;
+          });
+    } finally {
+      response.disconnect();
+    }
+    return count[0];
+  }
+
+  private static HttpResponse send(
+      AbstractGoogleJsonClient client, String path, StreamingBatchContent content)
+      throws IOException {
+    HttpRequest request =
+        client
+            .getRequestFactory()
+            .buildPostRequest(new GenericUrl(client.getBaseUrl() + path), content);
+    request.setParser(client.getObjectParser());
+    // Like the generated clients, report API errors with details. Compression is left to the
+    // client's request initializers.
+    request.getHeaders().setUserAgent(client.getApplicationName());
+    request.setThrowExceptionOnExecuteError(false);
+    HttpResponse response = request.execute();
+    if (!response.isSuccessStatusCode()) {
+      throw GoogleJsonResponseException.from(client.getJsonFactory(), response);
+    }
+    return response;
+  }
+}
@@ -0,0 +1,102 @@
+package shopping.common;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClient;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClient;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Parses the array of a large API response (such as the resources of a list page, or the entries
+ * of a custombatch response) one element at a time, as the response arrives.
+ *
+ * <p>Parsing a response with the generated clients builds the whole object graph before any of it
+ * can be used. Here, each element is passed to a handler as soon as it has been read from the
+ * connection, and then dropped, so memory use is bounded by a single element and processing can
+ * start before the rest of the response has been received.
+ */
+public class StreamingResponseParser {
+  /** Receives the elements of the response array. */
+  public interface ItemHandler<T> {
+    void handle(T item) throws IOException;
+  }
+
+  /**
+   * Executes the request and passes each element of the named array in the response to the
+   * handler.
+   *
+   * @return the response's other top-level fields that have simple values, such as {@code
+   *     nextPageToken}; nested objects and arrays are skipped
+   */
+  public static <T> GenericJson execute(
+      AbstractGoogleClientRequest<?> request,
+      String arrayField,
+      Class<T> itemType,
+      ItemHandler<? super T> handler)
+      throws IOException {
+    AbstractGoogleClient client = request.getAbstractGoogleClient();
+    if (!(client instanceof AbstractGoogleJsonClient)) {
+      throw new IllegalArgumentException("Only requests of JSON API clients can be streamed");
+    }
+    JsonFactory jsonFactory = ((AbstractGoogleJsonClient) client).getJsonFactory();
+    // executeUnparsed already throws a GoogleJsonResponseException for error responses.
+    HttpResponse response = request.executeUnparsed();
+    try {
+      return parse(
+          jsonFactory,
+          response.getContent(),
+          response.getContentCharset(),
+          arrayField,
+          itemType,
+          handler);
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  /**
+   * Reads a JSON object from the stream, passing each element of the named array to the handler.
+   *
+   * @return the object's other top-level fields that have simple values
+   */
+  public static <T> GenericJson parse(
+      JsonFactory jsonFactory,
+      InputStream in,
+      Charset charset,
+      String arrayField,
+      Class<T> itemType,
+      ItemHandler<? super T> handler)
+      throws IOException {
+    JsonParser parser = jsonFactory.createJsonParser(in, charset);
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object in the response");
+      }
+      GenericJson rest = new GenericJson();
+      rest.setFactory(jsonFactory);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if (name.equals(arrayField) && value == JsonToken.START_ARRAY) {
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            // Parsing an object leaves the parser on its END_OBJECT token.
+            handler.handle(parser.parse(itemType));
+          }
+        } else if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+          parser.skipChildren();
+        } else if (value != JsonToken.VALUE_NULL) {
+          rest.set(name, parser.getText());
+        }
+      }
+      return rest;
+    } finally {
+      parser.close();
+    }
+  }
+}
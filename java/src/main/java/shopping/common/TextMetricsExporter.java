@@ -0,0 +1,44 @@
+package shopping.common;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+/** Prints a human-readable summary of the request metrics, one line per API method. */
+public class TextMetricsExporter implements MetricsExporter {
+  private final PrintStream out;
+
+  public TextMetricsExporter(PrintStream out) {
+    this.out = out;
+  }
+
+  public void export(RequestMetrics metrics) {
+    Map<String, RequestMetrics.MethodMetrics> methods = metrics.getMethods();
+    if (methods.isEmpty()) {
+      return;
+    }
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("Request metrics:%n"));
+    for (Map.Entry<String, RequestMetrics.MethodMetrics> e : methods.entrySet()) {
+      RequestMetrics.MethodMetrics m = e.getValue();
+      report.append(
+          String.format(
+              "- %s: %d requests (%d retries), p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, "
+                  + "max %.1f ms, sent %d bytes, received %d bytes, statuses %s, "
+                  + "%d transport errors%n",
+              e.getKey(),
+              m.getRequestCount(),
+              m.getRetryCount(),
+              m.getLatencyMillisP50(),
+              m.getLatencyMillisP90(),
+              m.getLatencyMillisP99(),
+              m.getLatencyMillisMax(),
+              m.getRequestBytes(),
+              m.getResponseBytes(),
+              m.getStatusCounts(),
+              m.getTransportErrorCount()));
+    }
+    // Print the whole report at once so it doesn't interleave with other output.
+    out.print(report);
+    out.flush();
+  }
+}
@@ -0,0 +1,198 @@
+package shopping.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a set of workflows on a bounded pool, starting each one as soon as the workflows it
+ * depends on have finished.
+ *
+ * <p>Console output written by a workflow to {@code System.out} or {@code System.err} is buffered
+ * and printed to {@code System.out} in one piece when it finishes, so the output of concurrently
+ * running workflows doesn't interleave. Only output written from the workflow's own thread is
+ * captured. Once all workflows have run, their timings are printed, and the first failure (if
+ * any) is rethrown. Workflows that depend on a failed workflow are skipped.
+ */
+public class WorkflowScheduler {
+  /** A unit of work run by the scheduler. */
+  public interface Task {
+    void run() throws IOException;
+  }
+
+  private static class Entry {
+    final String name;
+    final Task task;
+    final List<String> dependencies;
+    CompletableFuture<Void> future;
+    long elapsedNanos = -1;
+    Throwable failure;
+
+    Entry(String name, Task task, List<String> dependencies) {
+      this.name = name;
+      this.task = task;
+      this.dependencies = dependencies;
+    }
+  }
+
+  private final int parallelism;
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+  public WorkflowScheduler(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Adds a workflow that may only start once the named workflows have completed successfully.
+   * Dependencies must have been added before the workflows that depend on them.
+   */
+  public WorkflowScheduler add(String name, Task task, String... dependencies) {
+    if (entries.containsKey(name)) {
+      throw new IllegalArgumentException("Duplicate workflow " + name);
+    }
+    List<String> deps = new ArrayList<>();
+    for (String dependency : dependencies) {
+      if (!entries.containsKey(dependency)) {
+        throw new IllegalArgumentException(
+            String.format("Workflow %s depends on unknown workflow %s", name, dependency));
+      }
+      deps.add(dependency);
+    }
+    entries.put(name, new Entry(name, task, deps));
+    return this;
+  }
+
+  public void run() throws IOException {
+    PrintStream console = System.out;
+    PrintStream errorConsole = System.err;
+    BufferingOutputStream routing = new BufferingOutputStream(console);
+    BufferingOutputStream errorRouting = new BufferingOutputStream(errorConsole);
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    System.setOut(new PrintStream(routing, true));
+    System.setErr(new PrintStream(errorRouting, true));
+    try {
+      for (final Entry entry : entries.values()) {
+        List<CompletableFuture<Void>> prerequisites = new ArrayList<>();
+        for (String dependency : entry.dependencies) {
+          prerequisites.add(entries.get(dependency).future);
+        }
+        entry.future =
+            CompletableFuture.allOf(prerequisites.toArray(new CompletableFuture<?>[0]))
+                .thenRunAsync(() -> runEntry(entry, routing, errorRouting, console), executor);
+      }
+      for (Entry entry : entries.values()) {
+        try {
+          entry.future.join();
+        } catch (CompletionException e) {
+          // Recorded on the entry itself, or the entry was skipped.
+        }
+      }
+    } finally {
+      System.setOut(console);
+      System.setErr(errorConsole);
+      executor.shutdown();
+    }
+    printTimings();
+
+    for (Entry entry : entries.values()) {
+      if (entry.failure instanceof IOException) {
+        throw (IOException) entry.failure;
+      } else if (entry.failure instanceof RuntimeException) {
+        throw (RuntimeException) entry.failure;
+      } else if (entry.failure != null) {
+        throw new RuntimeException(entry.failure);
+      }
+    }
+  }
+
+  private void runEntry(
+      Entry entry,
+      BufferingOutputStream routing,
+      BufferingOutputStream errorRouting,
+      PrintStream console) {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    routing.capture(buffer);
+    errorRouting.capture(buffer);
+    long start = System.nanoTime();
+    try {
+      entry.task.run();
+    } catch (Throwable t) {
+      entry.failure = t;
+    } finally {
+      entry.elapsedNanos = System.nanoTime() - start;
+      routing.capture(null);
+      errorRouting.capture(null);
+      synchronized (console) {
+        console.print(buffer.toString());
+        console.flush();
+      }
+    }
+    if (entry.failure != null) {
+      throw new CompletionException(entry.failure);
+    }
+  }
+
+  private void printTimings() {
+    System.out.println("---------------------------------");
+    System.out.println("Workflow timings:");
+    for (Entry entry : entries.values()) {
+      if (entry.elapsedNanos < 0) {
+        System.out.printf("- %s: skipped%n", entry.name);
+      } else {
+        System.out.printf(
+            "- %s: %.2f s%s%n",
+            entry.name, entry.elapsedNanos / 1e9, entry.failure != null ? " (failed)" : "");
+      }
+    }
+  }
+
+  /** Sends output to the current thread's capture buffer, or to the console if there is none. */
+  private static class BufferingOutputStream extends OutputStream {
+    private final OutputStream console;
+    private final ThreadLocal<OutputStream> buffer = new ThreadLocal<>();
+
+    BufferingOutputStream(OutputStream console) {
+      this.console = console;
+    }
+
+    void capture(OutputStream target) {
+      if (target == null) {
+        buffer.remove();
+      } else {
+        buffer.set(target);
+      }
+    }
+
+    private OutputStream target() {
+      OutputStream target = buffer.get();
+      return target != null ? target : console;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      target().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      target().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      target().flush();
+    }
+  }
+}
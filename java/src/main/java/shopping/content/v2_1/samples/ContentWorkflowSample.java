@@ -1,7 +1,6 @@
 package shopping.content.v2_1.samples;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
@@ -13,11 +12,11 @@ import com.google.api.services.content.model.AccountsAuthInfoResponse;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.security.GeneralSecurityException;
 import org.apache.commons.cli.CommandLine;
 import shopping.common.Authenticator;
 import shopping.common.BaseOption;
 import shopping.common.BaseWorkflowSample;
+import shopping.common.HttpTransportFactory;
 
 /** Base class for the Content API workflow samples. */
 public abstract class ContentWorkflowSample extends BaseWorkflowSample {
@@ -35,20 +34,18 @@ public abstract class ContentWorkflowSample extends BaseWorkflowSample {
   protected static ShoppingContent.Builder createStandardBuilder(
       CommandLine parsedArgs, ContentConfig config) throws IOException {
     JsonFactory jsonFactory = JacksonFactory.getDefaultInstance();
-    HttpTransport httpTransport = null;
-    try {
-      httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-    } catch (GeneralSecurityException e) {
-      e.printStackTrace();
-      System.exit(1);
-    }
+    HttpTransport httpTransport = HttpTransportFactory.getSharedTransport();
     Authenticator authenticator =
         new Authenticator(httpTransport, jsonFactory, ShoppingContentScopes.all(), config);
     Credential credential = authenticator.authenticate();
 
     return new ShoppingContent.Builder(
             httpTransport, jsonFactory, BaseOption.increaseTimeout(
-                BaseOption.installLogging(credential, parsedArgs)))
+                BaseOption.limitRate(
+                    BaseOption.compressContent(
+                        BaseOption.installMetrics(
+                            BaseOption.installLogging(credential, parsedArgs), parsedArgs),
+                        parsedArgs))))
         .setApplicationName("Content API for Shopping Samples");
   }
 
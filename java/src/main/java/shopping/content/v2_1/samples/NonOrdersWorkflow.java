@@ -4,38 +4,119 @@ import static shopping.common.BaseOption.NO_CONFIG;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.Account;
+import com.google.api.services.content.model.AccountStatus;
+import com.google.api.services.content.model.AccountTax;
+import com.google.api.services.content.model.ShippingSettings;
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.cli.CommandLine;
+import shopping.common.AsyncRequestExecutor;
 import shopping.common.BaseOption;
+import shopping.common.WorkflowScheduler;
+import shopping.content.v2_1.samples.accounts.AccountUtils;
 import shopping.content.v2_1.samples.accounts.AccountWorkflow;
+import shopping.content.v2_1.samples.accountstatuses.AccountstatusUtils;
 import shopping.content.v2_1.samples.accountstatuses.AccountstatusesWorkflow;
+import shopping.content.v2_1.samples.accounttax.AccounttaxUtils;
 import shopping.content.v2_1.samples.accounttax.AccounttaxWorkflow;
 import shopping.content.v2_1.samples.datafeeds.DatafeedsWorkflow;
 import shopping.content.v2_1.samples.products.ProductsWorkflow;
 import shopping.content.v2_1.samples.productstatuses.ProductstatusesWorkflow;
+import shopping.content.v2_1.samples.shippingsettings.ShippingsettingsUtils;
 import shopping.content.v2_1.samples.shippingsettings.ShippingsettingsWorkflow;
 
-/** Runs through all the non-Orders services in a single sample. */
+/**
+ * Runs through all the non-Orders services in a single sample.
+ *
+ * <p>When run with the --async option, a snapshot of the account's own settings is first
+ * retrieved from several services concurrently, and workflows that don't depend on each other are
+ * run concurrently by a {@link WorkflowScheduler}. Otherwise, the workflows run one after another.
+ */
 public class NonOrdersWorkflow extends ContentWorkflowSample {
+  private static final int ASYNC_PARALLELISM = 4;
+
+  private final boolean async;
+
   private NonOrdersWorkflow(
-      ShoppingContent content, ShoppingContent sandbox, ContentConfig config) {
+      ShoppingContent content, ShoppingContent sandbox, ContentConfig config, boolean async) {
     super(content, sandbox, config);
+    this.async = async;
   }
 
   public void execute() throws IOException {
-    AccountWorkflow.run(content, sandbox, config);
-    AccountstatusesWorkflow.run(content, sandbox, config);
-    AccounttaxWorkflow.run(content, sandbox, config);
-    DatafeedsWorkflow.run(content, sandbox, config);
-    ProductsWorkflow.run(content, sandbox, config);
-    ProductstatusesWorkflow.run(content, sandbox, config);
-    ShippingsettingsWorkflow.run(content, sandbox, config);
+    if (async) {
+      printAccountSnapshot();
+      runConcurrently();
+    } else {
+      AccountWorkflow.run(content, sandbox, config);
+      AccountstatusesWorkflow.run(content, sandbox, config);
+      AccounttaxWorkflow.run(content, sandbox, config);
+      DatafeedsWorkflow.run(content, sandbox, config);
+      ProductsWorkflow.run(content, sandbox, config);
+      ProductstatusesWorkflow.run(content, sandbox, config);
+      ShippingsettingsWorkflow.run(content, sandbox, config);
+    }
 
     System.out.println("---------------------------------");
     System.out.println("All workflows complete.");
   }
 
+  private void runConcurrently() throws IOException {
+    new WorkflowScheduler(ASYNC_PARALLELISM)
+        .add("Account", () -> AccountWorkflow.run(content, sandbox, config))
+        // These list sub-accounts, so wait until the Account workflow has removed the one it
+        // created.
+        .add(
+            "Accountstatuses",
+            () -> AccountstatusesWorkflow.run(content, sandbox, config),
+            "Account")
+        .add("Accounttax", () -> AccounttaxWorkflow.run(content, sandbox, config), "Account")
+        .add(
+            "Shippingsettings",
+            () -> ShippingsettingsWorkflow.run(content, sandbox, config),
+            "Account")
+        .add("Datafeeds", () -> DatafeedsWorkflow.run(content, sandbox, config))
+        // Product validation uses the account's tax and shipping settings, so only insert products
+        // once those workflows have restored the original settings.
+        .add(
+            "Products",
+            () -> ProductsWorkflow.run(content, sandbox, config),
+            "Accounttax",
+            "Shippingsettings")
+        .add(
+            "Productstatuses",
+            () -> ProductstatusesWorkflow.run(content, sandbox, config),
+            "Products")
+        .run();
+  }
+
+  private void printAccountSnapshot() throws IOException {
+    System.out.println("---------------------------------");
+    System.out.println("Retrieving account snapshot asynchronously:");
+    System.out.println();
+
+    BigInteger merchantId = config.getMerchantId();
+    try (AsyncRequestExecutor executor = new AsyncRequestExecutor()) {
+      // All four requests are in flight at once; we only block when printing each result.
+      CompletableFuture<Account> account =
+          executor.submit(content.accounts().get(merchantId, merchantId));
+      CompletableFuture<AccountStatus> status =
+          executor.submit(content.accountstatuses().get(merchantId, merchantId));
+      CompletableFuture<AccountTax> tax =
+          executor.submit(content.accounttax().get(merchantId, merchantId));
+      CompletableFuture<ShippingSettings> shipping =
+          executor.submit(content.shippingsettings().get(merchantId, merchantId));
+
+      AccountUtils.printAccount(AsyncRequestExecutor.await(account));
+      AccountstatusUtils.printAccountStatus(AsyncRequestExecutor.await(status));
+      AccounttaxUtils.printAccountTax(AsyncRequestExecutor.await(tax));
+      ShippingsettingsUtils.printShippingSettings(AsyncRequestExecutor.await(shipping));
+    }
+  }
+
   public static void main(String[] args) throws IOException {
     CommandLine parsedArgs = BaseOption.parseOptions(args);
     File configPath = null;
@@ -50,7 +131,8 @@ public class NonOrdersWorkflow extends ContentWorkflowSample {
     retrieveConfiguration(content, config);
 
     try {
-      new NonOrdersWorkflow(content, sandbox, config).execute();
+      new NonOrdersWorkflow(content, sandbox, config, BaseOption.ASYNC.isSet(parsedArgs))
+          .execute();
     } catch (GoogleJsonResponseException e) {
       checkGoogleJsonResponseException(e);
     }
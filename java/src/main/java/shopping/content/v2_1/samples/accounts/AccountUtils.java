@@ -7,11 +7,29 @@ import com.google.api.services.content.model.AccountUser;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import shopping.common.Projection;
 
 /** Utility class for storing actions performed on Accounts. */
 public class AccountUtils {
   public static final String SAMPLE_ACCOUNT_NAME = "sampleAccount123";
 
+  /** The fields of an account that {@link #printAccount} prints. */
+  public static final Projection<Account> PRINTED_FIELDS =
+      Projection.of(Account.class)
+          .with(Account::getId)
+          .with(Account::getName)
+          .with(Account::getWebsiteUrl)
+          .with(
+              Account::getUsers,
+              Projection.of(AccountUser.class)
+                  .with(AccountUser::getAdmin)
+                  .with(AccountUser::getEmailAddress))
+          .with(
+              Account::getAdsLinks,
+              Projection.of(AccountAdsLink.class)
+                  .with(AccountAdsLink::getAdsId)
+                  .with(AccountAdsLink::getStatus));
+
   /**
    * Returns a defaultly constructed {@code Account} object with {@code SAMPLE_ACCOUNT_NAME} as
    * account name
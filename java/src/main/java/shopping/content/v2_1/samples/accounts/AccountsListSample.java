@@ -6,7 +6,8 @@ import com.google.api.services.content.model.Account;
 import com.google.api.services.content.model.AccountsListResponse;
 import java.io.IOException;
 import java.math.BigInteger;
-
+import shopping.common.PagedStream;
+import shopping.common.Projection;
 import shopping.content.v2_1.samples.ContentSample;
 
 /** Sample that lists the Merchant Center subaccounts for the given MCA. */
@@ -17,25 +18,23 @@ public class AccountsListSample extends ContentSample {
 
   public static void listAccountsForMerchant(BigInteger merchantId, ShoppingContent content)
       throws IOException {
-    System.out.printf("Listing sub-accounts for Merchant Center %s:%n", merchantId);
-    ShoppingContent.Accounts.List listAccounts = content.accounts().list(merchantId);
-
-    AccountsListResponse page = null;
+    listAccountsForMerchant(merchantId, content, AccountUtils.PRINTED_FIELDS);
+  }
 
-    do {
-      if (page != null) {
-        listAccounts.setPageToken(page.getNextPageToken());
-      }
-      page = listAccounts.execute();
-      if (page.getResources() == null) {
+  /** Lists the subaccounts, retrieving only the fields selected by the given projection. */
+  public static void listAccountsForMerchant(
+      BigInteger merchantId, ShoppingContent content, Projection<Account> fields)
+      throws IOException {
+    System.out.printf("Listing sub-accounts for Merchant Center %s:%n", merchantId);
+    try (PagedStream<Account> accounts =
+        PagedStream.of(
+            fields.applyToList(content.accounts().list(merchantId)),
+            AccountsListResponse::getResources,
+            AccountsListResponse::getNextPageToken)) {
+      if (accounts.forEachItem(AccountUtils::printAccount) == 0) {
         System.out.println("No accounts found.");
-        return;
-      }
-      for (Account account : page.getResources()) {
-        AccountUtils.printAccount(account);
       }
-    } while (page.getNextPageToken() != null);
-
+    }
   }
 
   @Override
@@ -0,0 +1,309 @@
+package shopping.content.v2_1.samples.accounts;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.Account;
+import com.google.api.services.content.model.AccountsListResponse;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import shopping.common.LatencyHistogram;
+import shopping.common.PagedStream;
+import shopping.common.Projection;
+
+/**
+ * Runs a set of tasks for every sub-account of a multi-client account.
+ *
+ * <p>The sub-account IDs are listed once, and each (account, task) pair then runs on a fixed pool
+ * of workers that share a single first-in, first-out queue. At most a fixed number of tasks run
+ * for the same account at once, which keeps the load on each account's quota even and means a slow
+ * account holds at most that many workers while the others keep making progress; an account's
+ * next task is queued behind the work already waiting when its previous one finishes. A failed
+ * task is recorded and doesn't stop the account's other tasks.
+ *
+ * <p>Progress can be printed periodically while the tasks run, and {@link #run} returns a {@link
+ * Report} with the number of successes and failures and the latency percentiles of each task.
+ */
+public class SubAccountFanOut implements Closeable {
+  public static final int DEFAULT_PARALLELISM = 32;
+  public static final int DEFAULT_MAX_PER_ACCOUNT = 1;
+  /** The largest page size that accounts.list allows. */
+  public static final long MAX_PAGE_SIZE = 250;
+
+  private static final Projection<Account> ID_FIELDS =
+      Projection.of(Account.class).with(Account::getId);
+
+  /** A task to run for each sub-account. */
+  public interface AccountTask {
+    void run(BigInteger accountId) throws IOException;
+  }
+
+  private final ShoppingContent content;
+  private final BigInteger merchantId;
+  private final int maxPerAccount;
+  private final ExecutorService pool;
+  private final Map<String, AccountTask> tasks = new LinkedHashMap<>();
+  private long progressIntervalMillis;
+  private List<BigInteger> subAccountIds;
+
+  public SubAccountFanOut(ShoppingContent content, BigInteger merchantId) {
+    this(content, merchantId, DEFAULT_PARALLELISM, DEFAULT_MAX_PER_ACCOUNT);
+  }
+
+  public SubAccountFanOut(
+      ShoppingContent content, BigInteger merchantId, int parallelism, int maxPerAccount) {
+    if (parallelism < 1 || maxPerAccount < 1) {
+      throw new IllegalArgumentException("Parallelism and per-account limit must be positive");
+    }
+    this.content = content;
+    this.merchantId = merchantId;
+    this.maxPerAccount = maxPerAccount;
+    // A work-stealing pool would run a worker's own requeued task before older queued work, so a
+    // single FIFO queue is what keeps the accounts taking turns.
+    this.pool =
+        new ThreadPoolExecutor(
+            parallelism,
+            parallelism,
+            0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>());
+  }
+
+  /** Adds a task to run for each sub-account. Tasks are started in the order they were added. */
+  public SubAccountFanOut addTask(String name, AccountTask task) {
+    tasks.put(name, task);
+    return this;
+  }
+
+  /** Prints the progress at the given interval while the tasks run; 0 turns this off. */
+  public SubAccountFanOut setProgressInterval(long millis) {
+    this.progressIntervalMillis = millis;
+    return this;
+  }
+
+  /** Returns the IDs of all sub-accounts, listing them on the first call only. */
+  public synchronized List<BigInteger> getSubAccountIds() throws IOException {
+    if (subAccountIds == null) {
+      final List<BigInteger> ids = new ArrayList<>();
+      try (PagedStream<Account> accounts =
+          PagedStream.of(
+              ID_FIELDS.applyToList(
+                  content.accounts().list(merchantId).setMaxResults(MAX_PAGE_SIZE)),
+              AccountsListResponse::getResources,
+              AccountsListResponse::getNextPageToken)) {
+        accounts.forEachItem(account -> ids.add(account.getId()));
+      }
+      subAccountIds = Collections.unmodifiableList(ids);
+    }
+    return subAccountIds;
+  }
+
+  /** Runs all tasks for all sub-accounts, and waits until they are done. */
+  public Report run() throws IOException {
+    return run(getSubAccountIds());
+  }
+
+  /** Runs all tasks for the given accounts, and waits until they are done. */
+  public Report run(List<BigInteger> accountIds) throws IOException {
+    final Report report = new Report(tasks.keySet(), (long) accountIds.size() * tasks.size());
+    CountDownLatch done = new CountDownLatch(accountIds.size());
+    for (BigInteger accountId : accountIds) {
+      new AccountWork(accountId, report, done).start();
+    }
+    try {
+      if (progressIntervalMillis > 0) {
+        while (!done.await(progressIntervalMillis, TimeUnit.MILLISECONDS)) {
+          System.out.printf("- %s%n", report.progress());
+        }
+      } else {
+        done.await();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while running sub-account tasks");
+    }
+    report.finish();
+    return report;
+  }
+
+  public void close() {
+    pool.shutdown();
+  }
+
+  // The tasks left to run for one account. Each running worker takes the next task when it
+  // finishes one, so the number of workers an account holds never grows past maxPerAccount.
+  private class AccountWork {
+    private final BigInteger accountId;
+    private final Report report;
+    private final CountDownLatch done;
+    private final Iterator<Map.Entry<String, AccountTask>> remaining;
+    private int running;
+
+    AccountWork(BigInteger accountId, Report report, CountDownLatch done) {
+      this.accountId = accountId;
+      this.report = report;
+      this.done = done;
+      this.remaining = new ArrayList<>(tasks.entrySet()).iterator();
+    }
+
+    synchronized void start() {
+      running = Math.min(maxPerAccount, tasks.size());
+      if (running == 0) {
+        done.countDown();
+      }
+      for (int i = 0; i < running; i++) {
+        pool.execute(this::runNext);
+      }
+    }
+
+    void runNext() {
+      Map.Entry<String, AccountTask> task;
+      synchronized (this) {
+        if (!remaining.hasNext()) {
+          if (--running == 0) {
+            done.countDown();
+          }
+          return;
+        }
+        task = remaining.next();
+      }
+      long start = System.nanoTime();
+      try {
+        task.getValue().run(accountId);
+        report.succeeded(task.getKey(), start);
+      } catch (Exception e) {
+        report.failed(task.getKey(), accountId, e, start);
+      } finally {
+        // Requeued instead of looping, so that the work queued meanwhile gets its turn first.
+        pool.execute(this::runNext);
+      }
+    }
+  }
+
+  /** Results of running the tasks for all accounts. */
+  public static class Report {
+    private final Map<String, TaskStats> stats = new LinkedHashMap<>();
+    private final Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+    private final long total;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder completed = new LongAdder();
+    private volatile long elapsedNanos = -1;
+
+    Report(Iterable<String> taskNames, long total) {
+      for (String name : taskNames) {
+        stats.put(name, new TaskStats());
+      }
+      this.total = total;
+    }
+
+    void succeeded(String task, long startNanos) {
+      stats.get(task).record(startNanos, true);
+      completed.increment();
+    }
+
+    void failed(String task, BigInteger accountId, Exception e, long startNanos) {
+      stats.get(task).record(startNanos, false);
+      failures.add(new Failure(accountId, task, e));
+      completed.increment();
+    }
+
+    void finish() {
+      elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    /** Returns a one-line summary of how many tasks are done so far. */
+    public String progress() {
+      long done = completed.sum();
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      return String.format(
+          "%d/%d tasks done (%d failed), %.1f tasks/s",
+          done, total, failures.size(), seconds > 0 ? done / seconds : 0.0);
+    }
+
+    /** Returns the failed tasks, in the order they failed. */
+    public List<Failure> getFailures() {
+      return new ArrayList<>(failures);
+    }
+
+    public long getElapsedMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder result =
+          new StringBuilder(
+              String.format(
+                  "%d tasks in %.1f s, %d failed",
+                  completed.sum(), elapsedNanos / 1e9, failures.size()));
+      for (Map.Entry<String, TaskStats> e : stats.entrySet()) {
+        TaskStats task = e.getValue();
+        result.append(
+            String.format(
+                "%n- %s: %d succeeded, %d failed, latency p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                e.getKey(),
+                task.succeeded.sum(),
+                task.failed.sum(),
+                task.latency.getPercentile(50) / 1000.0,
+                task.latency.getPercentile(99) / 1000.0,
+                task.latency.getMax() / 1000.0));
+      }
+      return result.toString();
+    }
+  }
+
+  /** A task that failed for an account. */
+  public static class Failure {
+    private final BigInteger accountId;
+    private final String task;
+    private final Exception exception;
+
+    Failure(BigInteger accountId, String task, Exception exception) {
+      this.accountId = accountId;
+      this.task = task;
+      this.exception = exception;
+    }
+
+    public BigInteger getAccountId() {
+      return accountId;
+    }
+
+    public String getTask() {
+      return task;
+    }
+
+    public Exception getException() {
+      return exception;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s for account %s: %s", task, accountId, exception.getMessage());
+    }
+  }
+
+  private static class TaskStats {
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    void record(long startNanos, boolean success) {
+      latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+      (success ? succeeded : failed).increment();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package shopping.content.v2_1.samples.accounts;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.content.model.AccountStatus;
+import com.google.api.services.content.model.AccountStatusAccountLevelIssue;
+import com.google.api.services.content.model.AccountTax;
+import com.google.api.services.content.model.AccountTaxTaxRule;
+import com.google.api.services.content.model.Service;
+import com.google.api.services.content.model.ShippingSettings;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import shopping.common.Projection;
+import shopping.content.v2_1.samples.ContentSample;
+
+/**
+ * Sample that audits all sub-accounts of the current multi-client account with {@link
+ * SubAccountFanOut}: for every sub-account, it checks for account-level issues, tax rules and
+ * shipping services, and reports how many accounts lack each. Requires a multi-client account.
+ */
+public class SubAccountsAuditSample extends ContentSample {
+  // Number of failures listed individually; the rest are only counted.
+  private static final int MAX_FAILURES_LISTED = 20;
+  private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+  // Each audit only needs to know whether the account has any of the listed items.
+  private static final Projection<AccountStatus> ISSUE_FIELDS =
+      Projection.of(AccountStatus.class)
+          .with(
+              AccountStatus::getAccountLevelIssues,
+              Projection.of(AccountStatusAccountLevelIssue.class)
+                  .with(AccountStatusAccountLevelIssue::getId));
+  private static final Projection<AccountTax> TAX_RULE_FIELDS =
+      Projection.of(AccountTax.class)
+          .with(
+              AccountTax::getRules,
+              Projection.of(AccountTaxTaxRule.class).with(AccountTaxTaxRule::getCountry));
+  private static final Projection<ShippingSettings> SERVICE_FIELDS =
+      Projection.of(ShippingSettings.class)
+          .with(ShippingSettings::getServices, Projection.of(Service.class).with(Service::getName));
+
+  public SubAccountsAuditSample(String[] args) throws IOException {
+    super(args);
+  }
+
+  @Override
+  public void execute() throws IOException {
+    checkMCA();
+
+    final AtomicInteger withIssues = new AtomicInteger();
+    final AtomicInteger withoutTaxRules = new AtomicInteger();
+    final AtomicInteger withoutShipping = new AtomicInteger();
+    try (SubAccountFanOut fanOut = new SubAccountFanOut(content, config.getMerchantId())) {
+      fanOut
+          .setProgressInterval(PROGRESS_INTERVAL_MILLIS)
+          .addTask(
+              "accountstatus",
+              accountId -> {
+                AccountStatus status =
+                    ISSUE_FIELDS
+                        .applyTo(content.accountstatuses().get(config.getMerchantId(), accountId))
+                        .execute();
+                if (status.getAccountLevelIssues() != null
+                    && !status.getAccountLevelIssues().isEmpty()) {
+                  withIssues.incrementAndGet();
+                }
+              })
+          .addTask(
+              "accounttax",
+              accountId -> {
+                AccountTax tax =
+                    TAX_RULE_FIELDS
+                        .applyTo(content.accounttax().get(config.getMerchantId(), accountId))
+                        .execute();
+                if (tax.getRules() == null || tax.getRules().isEmpty()) {
+                  withoutTaxRules.incrementAndGet();
+                }
+              })
+          .addTask(
+              "shippingsettings",
+              accountId -> {
+                ShippingSettings settings =
+                    SERVICE_FIELDS
+                        .applyTo(content.shippingsettings().get(config.getMerchantId(), accountId))
+                        .execute();
+                if (settings.getServices() == null || settings.getServices().isEmpty()) {
+                  withoutShipping.incrementAndGet();
+                }
+              });
+
+      List<BigInteger> accountIds;
+      try {
+        accountIds = fanOut.getSubAccountIds();
+      } catch (GoogleJsonResponseException e) {
+        checkGoogleJsonResponseException(e);
+        return;
+      }
+      System.out.printf("Auditing %d sub-accounts:%n", accountIds.size());
+      SubAccountFanOut.Report report = fanOut.run(accountIds);
+      System.out.println(report);
+
+      System.out.printf("%d sub-accounts have account-level issues.%n", withIssues.get());
+      System.out.printf("%d sub-accounts have no tax rules.%n", withoutTaxRules.get());
+      System.out.printf("%d sub-accounts have no shipping services.%n", withoutShipping.get());
+      List<SubAccountFanOut.Failure> failures = report.getFailures();
+      for (int i = 0; i < failures.size() && i < MAX_FAILURES_LISTED; i++) {
+        System.out.printf("- Failed: %s%n", failures.get(i));
+      }
+      if (failures.size() > MAX_FAILURES_LISTED) {
+        System.out.printf("- ... and %d more.%n", failures.size() - MAX_FAILURES_LISTED);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    new SubAccountsAuditSample(args).execute();
+  }
+}
@@ -3,9 +3,25 @@ package shopping.content.v2_1.samples.accountstatuses;
 import com.google.api.services.content.model.AccountStatus;
 import com.google.api.services.content.model.AccountStatusAccountLevelIssue;
 import java.util.List;
+import shopping.common.Projection;
 
 /** Utility class for methods like printing AccountStatus objects. */
 public class AccountstatusUtils {
+    /** The fields of an account status that {@link #printAccountStatus} prints. */
+    public static final Projection<AccountStatus> PRINTED_FIELDS =
+            Projection.of(AccountStatus.class)
+                    .with(AccountStatus::getAccountId)
+                    .with(
+                            AccountStatus::getAccountLevelIssues,
+                            Projection.of(AccountStatusAccountLevelIssue.class)
+                                    .with(AccountStatusAccountLevelIssue::getSeverity)
+                                    .with(AccountStatusAccountLevelIssue::getId)
+                                    .with(AccountStatusAccountLevelIssue::getTitle)
+                                    .with(AccountStatusAccountLevelIssue::getCountry)
+                                    .with(AccountStatusAccountLevelIssue::getDestination)
+                                    .with(AccountStatusAccountLevelIssue::getDetail)
+                                    .with(AccountStatusAccountLevelIssue::getDocumentation));
+
     public static void printAccountStatus(AccountStatus accountStatus) {
         System.out.printf("- Account ID %s\n", accountStatus.getAccountId());
 
@@ -0,0 +1,72 @@
+package shopping.content.v2_1.samples.accountstatuses;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.content.model.Account;
+import com.google.api.services.content.model.AccountStatusAccountLevelIssue;
+import com.google.api.services.content.model.AccountsListResponse;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.List;
+import shopping.common.PagedStream;
+import shopping.common.Projection;
+import shopping.content.v2_1.samples.ContentSample;
+import shopping.content.v2_1.samples.ContentUtils;
+
+/**
+ * Sample that checks the status of every sub-account of the current multi-client account with
+ * {@link AccountstatusesBulkGetter}. The sub-account IDs are passed to the getter while they are
+ * being listed, and each status is printed as soon as its batch completes. Requires a
+ * multi-client account.
+ */
+public class AccountstatusesBulkGetSample extends ContentSample {
+  private static final Projection<Account> ID_FIELDS =
+      Projection.of(Account.class).with(Account::getId);
+
+  public AccountstatusesBulkGetSample(String[] args) throws IOException {
+    super(args);
+  }
+
+  @Override
+  public void execute() throws IOException {
+    checkMCA();
+
+    final int[] withIssues = {0};
+    try (PagedStream<Account> accounts =
+            PagedStream.of(
+                ID_FIELDS.applyToList(content.accounts().list(config.getMerchantId())),
+                AccountsListResponse::getResources,
+                AccountsListResponse::getNextPageToken);
+        AccountstatusesBulkGetter getter =
+            new AccountstatusesBulkGetter(content, config.getMerchantId())
+                .setFields(AccountstatusUtils.PRINTED_FIELDS)) {
+      Iterator<BigInteger> accountIds = accounts.stream().map(Account::getId).iterator();
+      getter.forEach(
+          accountIds,
+          (accountId, entry) -> {
+            if (entry == null) {
+              System.out.printf("No result for account %s.%n", accountId);
+            } else if (entry.getErrors() != null) {
+              System.out.printf("Errors for account %s:%n", accountId);
+              ContentUtils.printErrors(entry.getErrors().getErrors());
+            } else {
+              List<AccountStatusAccountLevelIssue> issues =
+                  entry.getAccountStatus().getAccountLevelIssues();
+              if (issues != null && !issues.isEmpty()) {
+                withIssues[0]++;
+              }
+              AccountstatusUtils.printAccountStatus(entry.getAccountStatus());
+            }
+          });
+      System.out.printf(
+          "Got %d account statuses in %d requests; %d accounts have issues.%n",
+          getter.getEntriesSent(), getter.getBatchesSent(), withIssues[0]);
+    } catch (GoogleJsonResponseException e) {
+      checkGoogleJsonResponseException(e);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    new AccountstatusesBulkGetSample(args).execute();
+  }
+}
@@ -0,0 +1,129 @@
+package shopping.content.v2_1.samples.accountstatuses;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.AccountStatus;
+import com.google.api.services.content.model.AccountstatusesCustomBatchRequest;
+import com.google.api.services.content.model.AccountstatusesCustomBatchRequestEntry;
+import com.google.api.services.content.model.AccountstatusesCustomBatchResponse;
+import com.google.api.services.content.model.AccountstatusesCustomBatchResponseEntry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import shopping.common.CustomBatchGetter;
+import shopping.common.Projection;
+
+/**
+ * Gets the statuses of many accounts, such as all sub-accounts of a multi-client account, through
+ * {@code accountstatuses.custombatch}.
+ *
+ * <p>Account IDs are packed into custombatch requests by a {@link CustomBatchGetter}, which sends
+ * them concurrently up to a fixed limit. Reading from the source iterator blocks while all
+ * requests are in flight, so the IDs can be streamed from a listing of any size.
+ *
+ * <p>Each entry either holds a status or the errors for that account, for example when it isn't
+ * a sub-account of the given merchant. The first request that fails as a whole stops the run, and
+ * its failure is thrown as an IOException.
+ */
+public class AccountstatusesBulkGetter implements Closeable {
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+  /** Receives the result for each account, which is null if the response had no entry for it. */
+  public interface EntryHandler
+      extends CustomBatchGetter.EntryHandler<BigInteger, AccountstatusesCustomBatchResponseEntry> {}
+
+  private final ShoppingContent content;
+  private final BigInteger merchantId;
+  private final CustomBatchGetter<
+          BigInteger,
+          AccountstatusesCustomBatchRequestEntry,
+          AccountstatusesCustomBatchResponseEntry,
+          AccountstatusesCustomBatchResponse>
+      getter;
+  private List<String> destinations;
+  private String fields;
+
+  public AccountstatusesBulkGetter(ShoppingContent content, BigInteger merchantId) {
+    this(content, merchantId, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  public AccountstatusesBulkGetter(
+      ShoppingContent content, BigInteger merchantId, int maxEntries, int maxInFlight) {
+    this.content = content;
+    this.merchantId = merchantId;
+    this.getter =
+        new CustomBatchGetter<>(
+            maxEntries,
+            maxInFlight,
+            this::entryFor,
+            this::send,
+            AccountstatusesCustomBatchResponse::getEntries,
+            AccountstatusesCustomBatchResponseEntry::getBatchId);
+  }
+
+  /** Restricts the issues in the returned statuses to the given destinations. */
+  public AccountstatusesBulkGetter setDestinations(List<String> destinations) {
+    this.destinations = destinations;
+    return this;
+  }
+
+  /** Restricts the returned statuses to the fields selected by the given projection. */
+  public AccountstatusesBulkGetter setFields(Projection<AccountStatus> projection) {
+    this.fields = projection == null ? null : projection.forBatch("accountStatus");
+    return this;
+  }
+
+  /**
+   * Gets the statuses of all the given accounts, returning the result entries by account ID.
+   * Accounts that the responses had no entry for are mapped to null.
+   */
+  public Map<BigInteger, AccountstatusesCustomBatchResponseEntry> getAll(
+      Iterator<BigInteger> accountIds) throws IOException {
+    return getter.getAll(accountIds);
+  }
+
+  /**
+   * Gets the statuses of all the given accounts, passing each result to the handler as soon as
+   * its request completes. The handler is never called concurrently, but may be called from other
+   * threads than the caller's.
+   */
+  public void forEach(Iterator<BigInteger> accountIds, EntryHandler handler) throws IOException {
+    getter.forEach(accountIds, handler);
+  }
+
+  private AccountstatusesCustomBatchRequestEntry entryFor(BigInteger accountId, long batchId) {
+    return new AccountstatusesCustomBatchRequestEntry()
+        .setBatchId(batchId)
+        .setMerchantId(merchantId)
+        .setMethod("get")
+        .setAccountId(accountId)
+        .setDestinations(destinations);
+  }
+
+  private AccountstatusesCustomBatchResponse send(
+      List<AccountstatusesCustomBatchRequestEntry> entries) throws IOException {
+    ShoppingContent.Accountstatuses.Custombatch request =
+        content
+            .accountstatuses()
+            .custombatch(new AccountstatusesCustomBatchRequest().setEntries(entries));
+    if (fields != null) {
+      request.setFields(fields);
+    }
+    return request.execute();
+  }
+
+  public long getEntriesSent() {
+    return getter.getEntriesSent();
+  }
+
+  public long getBatchesSent() {
+    return getter.getBatchesSent();
+  }
+
+  public void close() {
+    getter.close();
+  }
+}
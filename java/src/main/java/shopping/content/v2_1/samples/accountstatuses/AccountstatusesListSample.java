@@ -6,6 +6,7 @@ import com.google.api.services.content.model.AccountStatus;
 import com.google.api.services.content.model.AccountstatusesListResponse;
 import java.io.IOException;
 import java.math.BigInteger;
+import shopping.common.PagedStream;
 import shopping.content.v2_1.samples.ContentSample;
 
 /**
@@ -19,25 +20,15 @@ public class AccountstatusesListSample extends ContentSample {
 
   static void listAccountStatusesForMerchant(BigInteger merchantId, ShoppingContent content)
       throws IOException {
-    ShoppingContent.Accountstatuses.List accountStatusesList =
-        content.accountstatuses().list(merchantId);
-
-    AccountstatusesListResponse page = null;
-
-    do {
-        if (page != null) {
-            accountStatusesList.setPageToken(page.getNextPageToken());
-        }
-        page = accountStatusesList.execute();
-
-        if (page.getResources() == null) {
-            System.out.println("No accounts found.");
-            return;
-        }
-        for (AccountStatus accountStatus : page.getResources()) {
-            AccountstatusUtils.printAccountStatus(accountStatus);
-        }
-    } while (page.getNextPageToken() != null);
+    try (PagedStream<AccountStatus> accountStatuses =
+        PagedStream.of(
+            content.accountstatuses().list(merchantId),
+            AccountstatusesListResponse::getResources,
+            AccountstatusesListResponse::getNextPageToken)) {
+      if (accountStatuses.forEachItem(AccountstatusUtils::printAccountStatus) == 0) {
+        System.out.println("No accounts found.");
+      }
+    }
   }
 
   @Override
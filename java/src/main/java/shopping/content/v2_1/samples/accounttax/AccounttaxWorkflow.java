@@ -10,6 +10,7 @@ import java.io.File;
 import java.io.IOException;
 import org.apache.commons.cli.CommandLine;
 import shopping.common.BaseOption;
+import shopping.common.PagedStream;
 import shopping.content.v2_1.samples.ContentConfig;
 import shopping.content.v2_1.samples.ContentWorkflowSample;
 
@@ -64,22 +65,15 @@ public class AccounttaxWorkflow extends ContentWorkflowSample {
     }
 
     System.out.println("Listing tax settings for all sub-accounts:");
-    ShoppingContent.Accounttax.List accountTaxList =
-        content.accounttax().list(config.getMerchantId());
-    do {
-      AccounttaxListResponse page = accountTaxList.execute();
-      if (page.getResources() == null) {
+    try (PagedStream<AccountTax> accountTaxes =
+        PagedStream.of(
+            content.accounttax().list(config.getMerchantId()),
+            AccounttaxListResponse::getResources,
+            AccounttaxListResponse::getNextPageToken)) {
+      if (accountTaxes.forEachItem(AccounttaxUtils::printAccountTax) == 0) {
         System.out.println("No accounts found.");
-        return;
       }
-      for (AccountTax settings : page.getResources()) {
-        AccounttaxUtils.printAccountTax(settings);
-      }
-      if (page.getNextPageToken() == null) {
-        break;
-      }
-      accountTaxList.setPageToken(page.getNextPageToken());
-    } while (true);
+    }
   }
 
   public static void main(String[] args) throws IOException {
@@ -2,16 +2,16 @@ package shopping.content.v2_1.samples.datafeeds;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.content.ShoppingContent;
-import com.google.api.services.content.ShoppingContent.Datafeeds.List;
 import com.google.api.services.content.model.Datafeed;
 import com.google.api.services.content.model.DatafeedsListResponse;
 import java.io.IOException;
 import java.math.BigInteger;
+import shopping.common.PagedStream;
 import shopping.content.v2_1.samples.ContentSample;
 
 /**
  * Sample that gets a list of all of the datafeeds for the merchant. If there is more than one page
- * of results, we fetch each page in turn.
+ * of results, the next page is fetched while the current one is being printed.
  */
 public class DatafeedListSample extends ContentSample {
   public DatafeedListSample(String[] args) throws IOException {
@@ -20,22 +20,15 @@ public class DatafeedListSample extends ContentSample {
 
   static void listDatafeedsForMerchant(BigInteger merchantId, ShoppingContent content)
       throws IOException {
-    List datafeedsList = content.datafeeds().list(merchantId);
-    DatafeedsListResponse page = null;
-
-    do {
-      if (page != null) {
-        datafeedsList.setPageToken(page.getNextPageToken());
-      }
-      page = datafeedsList.execute();
-      if (page.getResources() == null) {
+    try (PagedStream<Datafeed> datafeeds =
+        PagedStream.of(
+            content.datafeeds().list(merchantId),
+            DatafeedsListResponse::getResources,
+            DatafeedsListResponse::getNextPageToken)) {
+      if (datafeeds.forEachItem(DatafeedUtils::printDatafeed) == 0) {
         System.out.println("No datafeeds found.");
-        return;
       }
-      for (Datafeed datafeed : page.getResources()) {
-        DatafeedUtils.printDatafeed(datafeed);
-      }
-    } while (page.getNextPageToken() != null);
+    }
   }
 
   @Override
@@ -0,0 +1,119 @@
+package shopping.content.v2_1.samples.orders;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Issues unique operation IDs for order updates, from any number of threads and processes.
+ *
+ * <p>Each ID is a 64-bit number made of the milliseconds since 2020 (41 bits), a node ID (10 bits)
+ * and a sequence number within the millisecond (12 bits), so processes with different node IDs
+ * never issue the same ID, and each process issues increasing IDs without locking. The node ID
+ * must therefore be unique among the processes issuing IDs for the same merchant at the same
+ * time; samples take it from the {@code --node_id} option. When more than
+ * 4096 IDs are needed in a millisecond, or the clock goes backwards, IDs are taken from the
+ * following milliseconds instead of waiting.
+ *
+ * <p>If a high-water mark file is given, the generator reserves IDs a few seconds ahead in the
+ * file, which is memory-mapped and synced whenever the reservation runs out. A generator that is
+ * restarted with the same file continues after the reserved IDs, so it can't repeat IDs issued
+ * before the restart even if the clock was set back in the meantime.
+ */
+public class OperationIdGenerator implements Supplier<String>, Closeable {
+  public static final int MAX_NODE_ID = 1023;
+
+  private static final long EPOCH_MILLIS = 1577836800000L; // 2020-01-01T00:00:00Z
+  private static final int SEQUENCE_BITS = 12;
+  private static final int NODE_BITS = 10;
+  private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+  // How far ahead of the last issued ID the high-water mark is moved, in ticks.
+  private static final long RESERVATION_TICKS = TimeUnit.SECONDS.toMillis(10) << SEQUENCE_BITS;
+
+  private final long node;
+  // A tick is the time and sequence parts of an ID, without the node ID in between.
+  private final AtomicLong lastTick;
+  private final FileChannel highWaterMarkFile;
+  private final MappedByteBuffer highWaterMark;
+  private volatile long reservedTick;
+
+  /** Creates a generator that doesn't persist its high-water mark. */
+  public OperationIdGenerator(int nodeId) {
+    this.node = checkNodeId(nodeId);
+    this.lastTick = new AtomicLong();
+    this.highWaterMarkFile = null;
+    this.highWaterMark = null;
+    this.reservedTick = Long.MAX_VALUE;
+  }
+
+  /** Creates a generator that persists its high-water mark in the given file. */
+  public OperationIdGenerator(int nodeId, File highWaterMarkFile) throws IOException {
+    this.node = checkNodeId(nodeId);
+    this.highWaterMarkFile =
+        FileChannel.open(
+            highWaterMarkFile.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    this.highWaterMark = this.highWaterMarkFile.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+    // A new file reads as 0. Every ID issued before is at or below the stored mark.
+    long stored = highWaterMark.getLong(0);
+    this.lastTick = new AtomicLong(stored);
+    this.reservedTick = stored;
+  }
+
+  private static long checkNodeId(int nodeId) {
+    if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+      throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID);
+    }
+    return nodeId;
+  }
+
+  /** Returns a new operation ID. */
+  public long nextId() {
+    while (true) {
+      long last = lastTick.get();
+      long tick = Math.max(currentTick(), last + 1);
+      if (tick > reservedTick) {
+        reserve(tick);
+      }
+      if (lastTick.compareAndSet(last, tick)) {
+        return ((tick >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+            | (node << SEQUENCE_BITS)
+            | (tick & SEQUENCE_MASK);
+      }
+    }
+  }
+
+  /** Returns a new operation ID as a string, as the API expects. */
+  public String get() {
+    return Long.toString(nextId());
+  }
+
+  private static long currentTick() {
+    return (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+  }
+
+  // The mark is synced before any ID above the old one is issued.
+  private synchronized void reserve(long tick) {
+    if (tick <= reservedTick) {
+      return;
+    }
+    long reserved = tick + RESERVATION_TICKS;
+    highWaterMark.putLong(0, reserved);
+    highWaterMark.force();
+    reservedTick = reserved;
+  }
+
+  public void close() throws IOException {
+    if (highWaterMarkFile != null) {
+      highWaterMarkFile.close();
+    }
+  }
+}
@@ -0,0 +1,298 @@
+package shopping.content.v2_1.samples.orders;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.Order;
+import com.google.api.services.content.model.OrdersAcknowledgeRequest;
+import com.google.api.services.content.model.OrdersListResponse;
+import com.google.api.services.content.model.OrdersUpdateMerchantOrderIdRequest;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import shopping.common.AsyncRequestExecutor;
+import shopping.common.PagedStream;
+import shopping.common.Projection;
+
+/**
+ * Continuously acknowledges new orders, and optionally sets their merchant order IDs.
+ *
+ * <p>Each poll lists the unacknowledged orders and hands every order to the executor as soon as it
+ * is read, so orders are processed concurrently up to the executor's concurrency limit while the
+ * rest of the list is still being fetched. The steps of each order are recorded in an {@link
+ * OrderCheckpoint}, which makes processing safe to restart: after a crash, orders that were in
+ * progress are resumed with the operation IDs they were first sent with, so the API reports the
+ * repeated calls as duplicates instead of applying them twice.
+ *
+ * <p>Orders that fail are counted and left in progress, and are tried again by the next poll. An
+ * order that has failed a given number of times is abandoned in the checkpoint instead, so that
+ * an order that can never succeed isn't retried forever.
+ */
+public class OrderAckPipeline {
+  public static final String ACKNOWLEDGE = "acknowledge";
+  public static final String UPDATE_MERCHANT_ORDER_ID = "updatemerchantorderid";
+  public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+  // Acknowledging only needs the order ID, but the merchant order ID function may use more.
+  private static final Projection<Order> LISTED_FIELDS = OrdersUtils.SUMMARY_FIELDS;
+
+  private interface StepCall {
+    String execute(String operationId, String argument) throws IOException;
+  }
+
+  private final ShoppingContent content;
+  private final BigInteger merchantId;
+  private final OrderCheckpoint checkpoint;
+  private final AsyncRequestExecutor executor;
+  private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+  private Function<Order, String> merchantOrderIds;
+  private Supplier<String> operationIds = () -> UUID.randomUUID().toString();
+  private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+  private volatile boolean stopped;
+
+  private final AtomicLong acknowledged = new AtomicLong();
+  private final AtomicLong merchantOrderIdsSet = new AtomicLong();
+  private final AtomicLong duplicates = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong abandoned = new AtomicLong();
+
+  public OrderAckPipeline(
+      ShoppingContent content,
+      BigInteger merchantId,
+      OrderCheckpoint checkpoint,
+      AsyncRequestExecutor executor) {
+    this.content = content;
+    this.merchantId = merchantId;
+    this.checkpoint = checkpoint;
+    this.executor = executor;
+  }
+
+  /**
+   * Sets the function that chooses the merchant order ID of each acknowledged order. If it isn't
+   * set, merchant order IDs are left alone.
+   */
+  public OrderAckPipeline setMerchantOrderIds(Function<Order, String> merchantOrderIds) {
+    this.merchantOrderIds = merchantOrderIds;
+    return this;
+  }
+
+  /** Sets the source of operation IDs for new steps, which defaults to random UUIDs. */
+  public OrderAckPipeline setOperationIds(Supplier<String> operationIds) {
+    this.operationIds = operationIds;
+    return this;
+  }
+
+  /**
+   * Sets the number of times processing an order may fail before the order is abandoned, which
+   * defaults to {@link #DEFAULT_MAX_ATTEMPTS}.
+   */
+  public OrderAckPipeline setMaxAttempts(int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("Maximum attempts must be positive");
+    }
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  /**
+   * Resumes the orders left in progress by an earlier poll or run, then processes all orders
+   * that are currently unacknowledged, and waits until they are done. Returns the number of
+   * orders completed by this poll, not counting those that failed.
+   */
+  public int pollOnce() throws IOException {
+    final List<CompletableFuture<Void>> pending = new ArrayList<>();
+    final AtomicInteger completed = new AtomicInteger();
+    for (String orderId : checkpoint.getPendingOrders()) {
+      submit(orderId, null, pending, completed);
+    }
+    // Orders acknowledged during the listing may shift later pages, so a few orders can be missed
+    // by this poll; they are still unacknowledged, so the next poll finds them.
+    try (PagedStream<Order> orders =
+        PagedStream.of(
+            LISTED_FIELDS.applyToList(content.orders().list(merchantId).setAcknowledged(false)),
+            OrdersListResponse::getResources,
+            OrdersListResponse::getNextPageToken)) {
+      orders.forEachItem(
+          order -> {
+            // The listing can lag behind, so it may still return orders completed just before.
+            // Abandoned orders are still unacknowledged, so they are listed again every time.
+            if (!checkpoint.isCompleted(order.getId()) && !checkpoint.isAbandoned(order.getId())) {
+              submit(order.getId(), order, pending, completed);
+            }
+          });
+    }
+    for (CompletableFuture<Void> future : pending) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while processing orders");
+      } catch (ExecutionException e) {
+        // Already counted as failed by the order's task.
+      }
+    }
+    return completed.get();
+  }
+
+  /**
+   * Polls for new orders until {@link #stop} is called, waiting for the given interval after
+   * each poll that completed no orders, whether it found nothing to do or only failed.
+   */
+  public void run(long pollIntervalMillis) throws IOException {
+    stopped = false;
+    while (!stopped) {
+      if (pollOnce() == 0 && !stopped) {
+        try {
+          Thread.sleep(pollIntervalMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for new orders");
+        }
+      }
+    }
+  }
+
+  /** Makes {@link #run} return after the current poll. */
+  public void stop() {
+    stopped = true;
+  }
+
+  private void submit(
+      final String orderId,
+      final Order order,
+      List<CompletableFuture<Void>> pending,
+      final AtomicInteger completed) {
+    // Orders being processed by an earlier, unfinished poll are left to it.
+    if (!inFlight.add(orderId)) {
+      return;
+    }
+    CompletableFuture<Void> future =
+        executor.call(
+            () -> {
+              try {
+                process(orderId, order);
+                completed.incrementAndGet();
+                return null;
+              } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                try {
+                  if (checkpoint.fail(orderId) >= maxAttempts) {
+                    checkpoint.abandon(orderId);
+                    abandoned.incrementAndGet();
+                  }
+                } catch (IOException checkpointError) {
+                  e.addSuppressed(checkpointError);
+                }
+                throw e;
+              } finally {
+                inFlight.remove(orderId);
+              }
+            });
+    pending.add(future);
+  }
+
+  private void process(final String orderId, Order order) throws IOException {
+    runStep(
+        orderId,
+        ACKNOWLEDGE,
+        null,
+        (operationId, argument) -> {
+          String status =
+              content
+                  .orders()
+                  .acknowledge(
+                      merchantId,
+                      orderId,
+                      new OrdersAcknowledgeRequest().setOperationId(operationId))
+                  .execute()
+                  .getExecutionStatus();
+          acknowledged.incrementAndGet();
+          return status;
+        });
+    if (merchantOrderIds != null) {
+      String merchantOrderId = null;
+      if (checkpoint.getStep(orderId, UPDATE_MERCHANT_ORDER_ID) == null) {
+        // Resumed orders weren't listed, so they are fetched to choose their merchant order ID.
+        if (order == null) {
+          order = content.orders().get(merchantId, orderId).execute();
+        }
+        merchantOrderId = merchantOrderIds.apply(order);
+      }
+      runStep(
+          orderId,
+          UPDATE_MERCHANT_ORDER_ID,
+          merchantOrderId,
+          (operationId, argument) -> {
+            String status =
+                content
+                    .orders()
+                    .updatemerchantorderid(
+                        merchantId,
+                        orderId,
+                        new OrdersUpdateMerchantOrderIdRequest()
+                            .setMerchantOrderId(argument)
+                            .setOperationId(operationId))
+                    .execute()
+                    .getExecutionStatus();
+            merchantOrderIdsSet.incrementAndGet();
+            return status;
+          });
+    }
+    checkpoint.complete(orderId);
+  }
+
+  // Sends a step unless the checkpoint shows it already ended. A step that began but didn't end
+  // is sent again with its recorded operation ID and argument instead of the given one.
+  private void runStep(String orderId, String step, String argument, StepCall call)
+      throws IOException {
+    OrderCheckpoint.Step recorded = checkpoint.getStep(orderId, step);
+    if (recorded != null && recorded.getStatus() != null) {
+      return;
+    }
+    String operationId;
+    if (recorded != null) {
+      operationId = recorded.getOperationId();
+      argument = recorded.getArgument();
+    } else {
+      operationId = operationIds.get();
+      checkpoint.begin(orderId, step, operationId, argument);
+    }
+    String status = call.execute(operationId, argument);
+    if ("duplicate".equals(status)) {
+      duplicates.incrementAndGet();
+    }
+    checkpoint.end(orderId, step, status);
+  }
+
+  public long getAcknowledged() {
+    return acknowledged.get();
+  }
+
+  public long getMerchantOrderIdsSet() {
+    return merchantOrderIdsSet.get();
+  }
+
+  /** Returns the number of steps the API reported as duplicates of earlier calls. */
+  public long getDuplicates() {
+    return duplicates.get();
+  }
+
+  /** Returns the number of times processing an order failed. */
+  public long getFailed() {
+    return failed.get();
+  }
+
+  /** Returns the number of orders abandoned for failing too many times. */
+  public long getAbandoned() {
+    return abandoned.get();
+  }
+}
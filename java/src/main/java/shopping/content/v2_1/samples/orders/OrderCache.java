@@ -0,0 +1,421 @@
+package shopping.content.v2_1.samples.orders;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.Order;
+import com.google.api.services.content.model.OrderCancellation;
+import com.google.api.services.content.model.OrderLineItem;
+import com.google.api.services.content.model.OrderReturn;
+import com.google.api.services.content.model.OrderShipment;
+import com.google.api.services.content.model.OrderShipmentLineItemShipment;
+import com.google.api.services.content.model.OrdersCancelLineItemRequest;
+import com.google.api.services.content.model.OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo;
+import com.google.api.services.content.model.OrdersReturnRefundLineItemRequest;
+import com.google.api.services.content.model.OrdersShipLineItemsRequest;
+import com.google.api.services.content.model.OrdersUpdateShipmentRequest;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of orders, by order ID and merchant order ID, that follows the orders' changes locally.
+ *
+ * <p>After an acknowledge, update merchant order ID, ship, update shipment, cancel or return call
+ * succeeds, its effects on the cached order are applied by the matching {@code apply} method, so
+ * the order doesn't have to be read again to find out, for example, how many items are still
+ * pending. Updates to orders that aren't cached are ignored. An order is read again when its entry
+ * is older than the time to live, or when a local update doesn't match the cached state (such as
+ * shipping more items than are pending), which means the order was changed elsewhere. A call
+ * reported as a duplicate also drops the order, since its effects may or may not be in the cached
+ * copy already.
+ *
+ * <p>At most a fixed number of orders are cached, dropping the least recently used ones first.
+ * Orders are returned as copies, so callers can't change the cached state by accident.
+ */
+public class OrderCache {
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+  public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final ShoppingContent content;
+  private final BigInteger merchantId;
+  private final long ttlNanos;
+  private final LinkedHashMap<String, Entry> orders;
+  private final Map<String, String> orderIdsByMerchantOrderId = new HashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong localUpdates = new AtomicLong();
+  private final AtomicLong mismatches = new AtomicLong();
+
+  public OrderCache(ShoppingContent content, BigInteger merchantId) {
+    this(content, merchantId, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+  }
+
+  public OrderCache(
+      ShoppingContent content, BigInteger merchantId, final int maxEntries, long ttlMillis) {
+    if (maxEntries < 1 || ttlMillis < 0) {
+      throw new IllegalArgumentException("Invalid cache size or time to live");
+    }
+    this.content = content;
+    this.merchantId = merchantId;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    // Access order makes the eldest entry the least recently used one.
+    this.orders =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries) {
+              unindex(eldest.getValue().order);
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /** Returns the order with the given ID, reading it only if it isn't cached or is too old. */
+  public Order get(String orderId) throws IOException {
+    synchronized (this) {
+      Order cached = fresh(orderId);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    return put(content.orders().get(merchantId, orderId).execute());
+  }
+
+  /** Returns the order with the given ID if it is cached and fresh, or null otherwise. */
+  public synchronized Order getIfCached(String orderId) {
+    return fresh(orderId);
+  }
+
+  /** Returns the order with the given merchant order ID, like {@link #getIfCached}. */
+  public synchronized Order getIfCachedByMerchantOrderId(String merchantOrderId) {
+    String orderId = orderIdsByMerchantOrderId.get(merchantOrderId);
+    return orderId == null ? null : fresh(orderId);
+  }
+
+  /** Returns the order with the given merchant order ID, like {@link #get}. */
+  public Order getByMerchantOrderId(String merchantOrderId) throws IOException {
+    synchronized (this) {
+      String orderId = orderIdsByMerchantOrderId.get(merchantOrderId);
+      Order cached = orderId == null ? null : fresh(orderId);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    return put(
+        content
+            .orders()
+            .getbymerchantorderid(merchantId, merchantOrderId)
+            .execute()
+            .getOrder());
+  }
+
+  /** Adds or replaces an order that was read elsewhere, and returns a copy of it. */
+  public synchronized Order put(Order order) {
+    misses.incrementAndGet();
+    invalidate(order.getId());
+    Order copy = order.clone();
+    orders.put(order.getId(), new Entry(copy));
+    if (copy.getMerchantOrderId() != null) {
+      orderIdsByMerchantOrderId.put(copy.getMerchantOrderId(), copy.getId());
+    }
+    return copy.clone();
+  }
+
+  /** Drops the order, so that it is read again the next time it is needed. */
+  public synchronized void invalidate(String orderId) {
+    Entry entry = orders.remove(orderId);
+    if (entry != null) {
+      unindex(entry.order);
+    }
+  }
+
+  /** Marks an order as acknowledged. */
+  public synchronized void applyAcknowledge(String orderId, String executionStatus) {
+    Order order = cachedForUpdate(orderId, executionStatus);
+    if (order != null) {
+      order.setAcknowledged(true);
+    }
+  }
+
+  /** Records the new merchant order ID of an order. */
+  public synchronized void applyUpdateMerchantOrderId(
+      String orderId, String merchantOrderId, String executionStatus) {
+    Order order = cachedForUpdate(orderId, executionStatus);
+    if (order != null) {
+      unindex(order);
+      order.setMerchantOrderId(merchantOrderId);
+      orderIdsByMerchantOrderId.put(merchantOrderId, orderId);
+    }
+  }
+
+  /**
+   * Moves the shipped quantities from pending to shipped, and adds the new shipment. A request with
+   * several shipment infos doesn't say which items went into which shipment, so it invalidates the
+   * order instead.
+   */
+  public synchronized void applyShipLineItems(
+      String orderId, OrdersShipLineItemsRequest request, String executionStatus) {
+    Order order = cachedForUpdate(orderId, executionStatus);
+    if (order == null) {
+      return;
+    }
+    if (request.getShipmentInfos() == null || request.getShipmentInfos().size() != 1) {
+      // Giving every shipment all the items would count them as delivered once per shipment.
+      invalidate(orderId);
+      return;
+    }
+    List<OrderShipmentLineItemShipment> shipmentLineItems = new ArrayList<>();
+    for (OrderShipmentLineItemShipment shipped : request.getLineItems()) {
+      OrderLineItem item = lineItem(order, shipped.getLineItemId(), shipped.getProductId());
+      long quantity = quantity(shipped.getQuantity());
+      if (item == null || quantity(item.getQuantityPending()) < quantity) {
+        mismatch(orderId);
+        return;
+      }
+      item.setQuantityPending(quantity(item.getQuantityPending()) - quantity);
+      item.setQuantityShipped(quantity(item.getQuantityShipped()) + quantity);
+      shipmentLineItems.add(
+          new OrderShipmentLineItemShipment().setLineItemId(item.getId()).setQuantity(quantity));
+    }
+    if (order.getShipments() == null) {
+      order.setShipments(new ArrayList<OrderShipment>());
+    }
+    OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo info =
+        request.getShipmentInfos().get(0);
+    order
+        .getShipments()
+        .add(
+            new OrderShipment()
+                .setId(info.getShipmentId())
+                .setCarrier(info.getCarrier())
+                .setTrackingId(info.getTrackingId())
+                .setStatus("shipped")
+                .setLineItems(shipmentLineItems));
+    updateStatus(order);
+  }
+
+  /** Updates the status and tracking of a shipment, counting its items as delivered if it is. */
+  public synchronized void applyUpdateShipment(
+      String orderId, OrdersUpdateShipmentRequest request, String executionStatus) {
+    Order order = cachedForUpdate(orderId, executionStatus);
+    if (order == null) {
+      return;
+    }
+    OrderShipment shipment = shipment(order, request.getShipmentId());
+    if (shipment == null) {
+      mismatch(orderId);
+      return;
+    }
+    if ("delivered".equals(request.getStatus()) && !"delivered".equals(shipment.getStatus())) {
+      for (OrderShipmentLineItemShipment shipped : shipment.getLineItems()) {
+        OrderLineItem item = lineItem(order, shipped.getLineItemId(), shipped.getProductId());
+        if (item == null) {
+          mismatch(orderId);
+          return;
+        }
+        item.setQuantityDelivered(
+            quantity(item.getQuantityDelivered()) + quantity(shipped.getQuantity()));
+      }
+      shipment.setDeliveryDate(request.getDeliveryDate());
+    }
+    if (request.getStatus() != null) {
+      shipment.setStatus(request.getStatus());
+    }
+    if (request.getCarrier() != null) {
+      shipment.setCarrier(request.getCarrier());
+    }
+    if (request.getTrackingId() != null) {
+      shipment.setTrackingId(request.getTrackingId());
+    }
+    updateStatus(order);
+  }
+
+  /** Moves the canceled quantity from pending to canceled. */
+  public synchronized void applyCancelLineItem(
+      String orderId, OrdersCancelLineItemRequest request, String executionStatus) {
+    Order order = cachedForUpdate(orderId, executionStatus);
+    if (order == null) {
+      return;
+    }
+    OrderLineItem item = lineItem(order, request.getLineItemId(), request.getProductId());
+    long quantity = quantity(request.getQuantity());
+    if (item == null || quantity(item.getQuantityPending()) < quantity) {
+      mismatch(orderId);
+      return;
+    }
+    item.setQuantityPending(quantity(item.getQuantityPending()) - quantity);
+    item.setQuantityCanceled(quantity(item.getQuantityCanceled()) + quantity);
+    if (item.getCancellations() == null) {
+      item.setCancellations(new ArrayList<OrderCancellation>());
+    }
+    item.getCancellations()
+        .add(
+            new OrderCancellation()
+                .setActor("merchant")
+                .setQuantity(quantity)
+                .setReason(request.getReason())
+                .setReasonText(request.getReasonText()));
+    updateStatus(order);
+  }
+
+  /** Counts the returned quantity of a shipped line item as returned. */
+  public synchronized void applyReturnRefundLineItem(
+      String orderId, OrdersReturnRefundLineItemRequest request, String executionStatus) {
+    Order order = cachedForUpdate(orderId, executionStatus);
+    if (order == null) {
+      return;
+    }
+    OrderLineItem item = lineItem(order, request.getLineItemId(), request.getProductId());
+    long quantity = quantity(request.getQuantity());
+    if (item == null
+        || quantity(item.getQuantityShipped()) < quantity(item.getQuantityReturned()) + quantity) {
+      mismatch(orderId);
+      return;
+    }
+    item.setQuantityReturned(quantity(item.getQuantityReturned()) + quantity);
+    if (item.getReturns() == null) {
+      item.setReturns(new ArrayList<OrderReturn>());
+    }
+    item.getReturns()
+        .add(
+            new OrderReturn()
+                .setActor("merchant")
+                .setQuantity(quantity)
+                .setReason(request.getReason())
+                .setReasonText(request.getReasonText()));
+    updateStatus(order);
+  }
+
+  /** Returns the number of orders returned from the cache. */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /** Returns the number of orders read from the API or added with {@link #put}. */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getLocalUpdates() {
+    return localUpdates.get();
+  }
+
+  /** Returns the number of orders dropped because a local update didn't match them. */
+  public long getMismatches() {
+    return mismatches.get();
+  }
+
+  private Order fresh(String orderId) {
+    Entry entry = orders.get(orderId);
+    if (entry == null) {
+      return null;
+    }
+    if (System.nanoTime() - entry.loadedAt > ttlNanos) {
+      invalidate(orderId);
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.order.clone();
+  }
+
+  // Returns the cached order to update, or null if it isn't cached or the update can't be applied.
+  private Order cachedForUpdate(String orderId, String executionStatus) {
+    Entry entry = orders.get(orderId);
+    if (entry == null) {
+      return null;
+    }
+    if (!"executed".equals(executionStatus)) {
+      invalidate(orderId);
+      return null;
+    }
+    localUpdates.incrementAndGet();
+    return entry.order;
+  }
+
+  private void mismatch(String orderId) {
+    mismatches.incrementAndGet();
+    invalidate(orderId);
+  }
+
+  private void unindex(Order order) {
+    if (order.getMerchantOrderId() != null) {
+      orderIdsByMerchantOrderId.remove(order.getMerchantOrderId(), order.getId());
+    }
+  }
+
+  private static OrderLineItem lineItem(Order order, String lineItemId, String productId) {
+    if (order.getLineItems() == null) {
+      return null;
+    }
+    for (OrderLineItem item : order.getLineItems()) {
+      if (lineItemId != null) {
+        if (lineItemId.equals(item.getId())) {
+          return item;
+        }
+      } else if (item.getProduct() != null && item.getProduct().getId().equals(productId)) {
+        return item;
+      }
+    }
+    return null;
+  }
+
+  private static OrderShipment shipment(Order order, String shipmentId) {
+    if (order.getShipments() == null) {
+      return null;
+    }
+    for (OrderShipment shipment : order.getShipments()) {
+      if (shipment.getId() != null && shipment.getId().equals(shipmentId)) {
+        return shipment;
+      }
+    }
+    return null;
+  }
+
+  // Derives the order status from the line item quantities, the way the API reports it.
+  private static void updateStatus(Order order) {
+    long ordered = 0;
+    long pending = 0;
+    long shipped = 0;
+    long delivered = 0;
+    long canceled = 0;
+    long returned = 0;
+    for (OrderLineItem item : order.getLineItems()) {
+      ordered += quantity(item.getQuantityOrdered());
+      pending += quantity(item.getQuantityPending());
+      shipped += quantity(item.getQuantityShipped());
+      delivered += quantity(item.getQuantityDelivered());
+      canceled += quantity(item.getQuantityCanceled());
+      returned += quantity(item.getQuantityReturned());
+    }
+    if (canceled == ordered) {
+      order.setStatus("canceled");
+    } else if (returned > 0) {
+      order.setStatus(returned + canceled == ordered ? "returned" : "partiallyReturned");
+    } else if (delivered > 0) {
+      order.setStatus(delivered + canceled == ordered ? "delivered" : "partiallyDelivered");
+    } else if (shipped > 0) {
+      order.setStatus(pending == 0 ? "shipped" : "partiallyShipped");
+    }
+  }
+
+  private static long quantity(Long quantity) {
+    return quantity == null ? 0 : quantity;
+  }
+
+  private static class Entry {
+    private final Order order;
+    private final long loadedAt = System.nanoTime();
+
+    Entry(Order order) {
+      this.order = order;
+    }
+  }
+}
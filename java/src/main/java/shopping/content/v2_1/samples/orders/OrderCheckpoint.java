@@ -0,0 +1,403 @@
+package shopping.content.v2_1.samples.orders;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable record of the progress of {@link OrderAckPipeline}.
+ *
+ * <p>Before a step of an order, such as acknowledging it, is sent to the API, the operation ID and
+ * argument used for it are appended to a log file and synced to disk; once the API has answered,
+ * the step is marked as done. After a crash, unfinished steps are therefore sent again with the
+ * same operation IDs, which the API recognizes as duplicates instead of applying them twice, and
+ * finished steps aren't sent again at all.
+ *
+ * <p>Failed attempts at an order are counted, and an order can be abandoned once it has failed too
+ * often, which takes it out of the pending orders like a completed one.
+ *
+ * <p>Records are lines of tab-separated fields ending with a "." field, so that a line left
+ * incomplete by a crash is ignored. Threads that call {@link #begin} at the same time share a
+ * single disk sync. When the checkpoint is opened, and again whenever the log has doubled in size
+ * since, the log is rewritten with one record per step and without the orders that were completed
+ * or abandoned longer ago than the retention period.
+ */
+public class OrderCheckpoint implements Closeable {
+  public static final long DEFAULT_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  private static final String BEGIN = "B";
+  private static final String END = "E";
+  private static final String COMPLETE = "C";
+  private static final String FAIL = "F";
+  private static final String ABANDON = "A";
+  private static final String TERMINATOR = ".";
+  // The log is only rewritten once it has grown past this size.
+  private static final long MIN_BYTES_TO_COMPACT = 1024 * 1024;
+
+  private final File file;
+  private final long retentionMillis;
+  private final Map<String, OrderProgress> orders = new LinkedHashMap<>();
+  private final Object syncLock = new Object();
+  private FileChannel log;
+  private long appended;
+  private long synced;
+  // The size of the log when it was last rewritten.
+  private long compacted;
+
+  /** Opens the checkpoint in the given file, creating it if it doesn't exist. */
+  public OrderCheckpoint(File file) throws IOException {
+    this(file, DEFAULT_RETENTION_MILLIS);
+  }
+
+  public OrderCheckpoint(File file, long retentionMillis) throws IOException {
+    this.file = file;
+    this.retentionMillis = retentionMillis;
+    if (file.exists()) {
+      load();
+    }
+    compact();
+    openLog();
+  }
+
+  /**
+   * Returns the IDs of the orders that have begun but have neither completed all their steps nor
+   * been abandoned.
+   */
+  public synchronized List<String> getPendingOrders() {
+    List<String> pending = new ArrayList<>();
+    for (Map.Entry<String, OrderProgress> e : orders.entrySet()) {
+      if (e.getValue().completedAt == 0 && e.getValue().abandonedAt == 0) {
+        pending.add(e.getKey());
+      }
+    }
+    return pending;
+  }
+
+  /** Returns whether all steps of the given order have been completed. */
+  public synchronized boolean isCompleted(String orderId) {
+    OrderProgress progress = orders.get(orderId);
+    return progress != null && progress.completedAt != 0;
+  }
+
+  /** Returns whether the given order was abandoned after failing too often. */
+  public synchronized boolean isAbandoned(String orderId) {
+    OrderProgress progress = orders.get(orderId);
+    return progress != null && progress.abandonedAt != 0;
+  }
+
+  /** Returns the given step of the order, or null if it hasn't begun. */
+  public synchronized Step getStep(String orderId, String step) {
+    OrderProgress progress = orders.get(orderId);
+    return progress == null ? null : progress.steps.get(step);
+  }
+
+  /**
+   * Records that a step of the order is about to be sent with the given operation ID and
+   * argument, which may be null, and waits until the record is on disk.
+   */
+  public void begin(String orderId, String step, String operationId, String argument)
+      throws IOException {
+    long position;
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      progressOf(orderId).steps.put(step, new Step(operationId, argument, null));
+      position = append(BEGIN, now, orderId, step, operationId, argument);
+    }
+    sync(position);
+  }
+
+  /**
+   * Records that the API answered a step of the order with the given status. This isn't synced to
+   * disk right away: if it is lost, the step is just sent again with the same operation ID.
+   */
+  public synchronized void end(String orderId, String step, String status) throws IOException {
+    Step begun = getStep(orderId, step);
+    if (begun == null) {
+      throw new IllegalStateException("Step " + step + " of order " + orderId + " hasn't begun");
+    }
+    progressOf(orderId).steps.put(step, new Step(begun.operationId, begun.argument, status));
+    append(END, System.currentTimeMillis(), orderId, step, status);
+  }
+
+  /** Records that all steps of the order are done. Like {@link #end}, this isn't synced. */
+  public void complete(String orderId) throws IOException {
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      progressOf(orderId).completedAt = now;
+      append(COMPLETE, now, orderId);
+    }
+    compactIfGrown();
+  }
+
+  /**
+   * Records a failed attempt at the order, and returns the number of failed attempts so far. Like
+   * {@link #end}, this isn't synced: if it is lost, the order just gets one more attempt.
+   */
+  public synchronized int fail(String orderId) throws IOException {
+    OrderProgress progress = progressOf(orderId);
+    progress.failures++;
+    append(FAIL, System.currentTimeMillis(), orderId);
+    return progress.failures;
+  }
+
+  /**
+   * Records that the order won't be tried again, until it is dropped after the retention period.
+   * Like {@link #end}, this isn't synced.
+   */
+  public void abandon(String orderId) throws IOException {
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      progressOf(orderId).abandonedAt = now;
+      append(ABANDON, now, orderId);
+    }
+    compactIfGrown();
+  }
+
+  public void close() throws IOException {
+    synchronized (syncLock) {
+      log.force(false);
+      log.close();
+    }
+  }
+
+  // Rewrites the log once it has doubled in size since it was last rewritten. The sync lock is
+  // taken first, as in sync(), so that no sync uses the log while it is being replaced.
+  private void compactIfGrown() throws IOException {
+    synchronized (syncLock) {
+      synchronized (this) {
+        if (appended < MIN_BYTES_TO_COMPACT || appended < 2 * compacted) {
+          return;
+        }
+        // The rewritten log holds everything recorded so far, including records not yet synced.
+        compact();
+        log.close();
+        openLog();
+        synced = appended;
+      }
+    }
+  }
+
+  private void openLog() throws IOException {
+    log = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    appended = log.size();
+    compacted = appended;
+  }
+
+  private OrderProgress progressOf(String orderId) {
+    OrderProgress progress = orders.get(orderId);
+    if (progress == null) {
+      progress = new OrderProgress();
+      orders.put(orderId, progress);
+    }
+    return progress;
+  }
+
+  // Must be called with the lock on this held. Returns the log size after the record.
+  private long append(String type, long time, String... values) throws IOException {
+    ByteBuffer record =
+        ByteBuffer.wrap(format(type, time, values).getBytes(StandardCharsets.UTF_8));
+    while (record.hasRemaining()) {
+      log.write(record);
+    }
+    appended = log.position();
+    return appended;
+  }
+
+  private void sync(long position) throws IOException {
+    synchronized (syncLock) {
+      // Another thread's sync may already have covered this record while we were waiting.
+      if (synced >= position) {
+        return;
+      }
+      long target;
+      synchronized (this) {
+        target = appended;
+      }
+      log.force(false);
+      synced = target;
+    }
+  }
+
+  private void load() throws IOException {
+    try (BufferedReader in =
+        new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length < 4 || !TERMINATOR.equals(fields[fields.length - 1])) {
+          continue;
+        }
+        for (int i = 0; i < fields.length; i++) {
+          fields[i] = unescape(fields[i]);
+        }
+        replay(fields);
+      }
+    }
+  }
+
+  private void replay(String[] fields) throws IOException {
+    long time;
+    try {
+      time = Long.parseLong(fields[1]);
+    } catch (NumberFormatException e) {
+      throw new IOException("Not an order checkpoint: " + file, e);
+    }
+    OrderProgress progress = progressOf(fields[2]);
+    if (BEGIN.equals(fields[0]) && fields.length == 7) {
+      progress.steps.put(fields[3], new Step(fields[4], emptyToNull(fields[5]), null));
+    } else if (END.equals(fields[0]) && fields.length == 6) {
+      Step begun = progress.steps.get(fields[3]);
+      if (begun != null) {
+        progress.steps.put(fields[3], new Step(begun.operationId, begun.argument, fields[4]));
+      }
+    } else if (COMPLETE.equals(fields[0]) && fields.length == 4) {
+      progress.completedAt = time;
+    } else if (FAIL.equals(fields[0]) && fields.length == 4) {
+      progress.failures++;
+    } else if (ABANDON.equals(fields[0]) && fields.length == 4) {
+      progress.abandonedAt = time;
+    } else {
+      throw new IOException("Not an order checkpoint: " + file);
+    }
+  }
+
+  // Rewrites the log with one record per step, dropping orders completed or abandoned before the
+  // retention period. This also discards anything after an incomplete final line.
+  private void compact() throws IOException {
+    long now = System.currentTimeMillis();
+    File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+    try (FileOutputStream out = new FileOutputStream(tmp)) {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+      for (Map.Entry<String, OrderProgress> e : orders.entrySet()) {
+        OrderProgress progress = e.getValue();
+        if (isExpired(progress, now)) {
+          continue;
+        }
+        for (Map.Entry<String, Step> s : progress.steps.entrySet()) {
+          Step step = s.getValue();
+          writer.write(format(BEGIN, now, e.getKey(), s.getKey(), step.operationId, step.argument));
+          if (step.status != null) {
+            writer.write(format(END, now, e.getKey(), s.getKey(), step.status));
+          }
+        }
+        for (int i = 0; i < progress.failures; i++) {
+          writer.write(format(FAIL, now, e.getKey()));
+        }
+        if (progress.completedAt != 0) {
+          writer.write(format(COMPLETE, progress.completedAt, e.getKey()));
+        }
+        if (progress.abandonedAt != 0) {
+          writer.write(format(ABANDON, progress.abandonedAt, e.getKey()));
+        }
+      }
+      writer.flush();
+      out.getFD().sync();
+    }
+    orders.values().removeIf(p -> isExpired(p, now));
+    try {
+      Files.move(
+          tmp.toPath(),
+          file.toPath(),
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private boolean isExpired(OrderProgress progress, long now) {
+    long finishedAt = Math.max(progress.completedAt, progress.abandonedAt);
+    return finishedAt != 0 && now - finishedAt > retentionMillis;
+  }
+
+  private static String format(String type, long time, String... values) {
+    StringBuilder line = new StringBuilder(type).append('\t').append(time);
+    for (String value : values) {
+      line.append('\t').append(escape(value == null ? "" : value));
+    }
+    return line.append('\t').append(TERMINATOR).append('\n').toString();
+  }
+
+  private static String escape(String value) {
+    return value
+        .replace("\\", "\\\\")
+        .replace("\t", "\\t")
+        .replace("\n", "\\n")
+        .replace("\r", "\\r");
+  }
+
+  private static String unescape(String value) {
+    if (value.indexOf('\\') < 0) {
+      return value;
+    }
+    StringBuilder result = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' && i + 1 < value.length()) {
+        char next = value.charAt(++i);
+        result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  private static String emptyToNull(String value) {
+    return value.isEmpty() ? null : value;
+  }
+
+  private static class OrderProgress {
+    // Steps in the order they began, so they are replayed in the same order.
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private long completedAt;
+    private long abandonedAt;
+    private int failures;
+  }
+
+  /** The operation ID and argument a step was sent with, and the status it ended with. */
+  public static class Step {
+    private final String operationId;
+    private final String argument;
+    private final String status;
+
+    private Step(String operationId, String argument, String status) {
+      this.operationId = operationId;
+      this.argument = argument;
+      this.status = status;
+    }
+
+    public String getOperationId() {
+      return operationId;
+    }
+
+    public String getArgument() {
+      return argument;
+    }
+
+    /** Returns the execution status the API answered with, or null if the step hasn't ended. */
+    public String getStatus() {
+      return status;
+    }
+  }
+}
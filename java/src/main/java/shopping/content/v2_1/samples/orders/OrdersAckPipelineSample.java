@@ -0,0 +1,103 @@
+package shopping.content.v2_1.samples.orders;
+
+import static shopping.common.BaseOption.NO_CONFIG;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.OrdersCreateTestOrderRequest;
+import java.io.File;
+import java.io.IOException;
+import org.apache.commons.cli.CommandLine;
+import shopping.common.AsyncRequestExecutor;
+import shopping.common.BaseOption;
+import shopping.content.v2_1.samples.ContentConfig;
+import shopping.content.v2_1.samples.ContentWorkflowSample;
+
+/**
+ * Sample that creates a few test orders and acknowledges them with an {@link OrderAckPipeline},
+ * setting each merchant order ID from the order ID. Like {@link OrdersWorkflow}, this runs on the
+ * sandbox API endpoint.
+ *
+ * <p>The pipeline's checkpoint is kept in the configuration directory, so if the sample is stopped
+ * partway through, the next run finishes the orders it left in progress without repeating any
+ * step.
+ */
+public class OrdersAckPipelineSample extends ContentWorkflowSample {
+  private static final String CHECKPOINT_FILE = "orders-ack.checkpoint";
+  // Each node ID has its own high-water mark, so concurrent runs don't overwrite each other's.
+  private static final String OPERATION_IDS_FILE = "orders-ack.%d.operation-ids";
+  private static final int TEST_ORDERS = 3;
+
+  private final int nodeId;
+
+  private OrdersAckPipelineSample(
+      ShoppingContent content, ShoppingContent sandbox, ContentConfig config, int nodeId) {
+    super(content, sandbox, config);
+    this.nodeId = nodeId;
+  }
+
+  @Override
+  public void execute() throws IOException {
+    checkNonMCA();
+
+    System.out.printf("Creating %d test orders... ", TEST_ORDERS);
+    for (int i = 0; i < TEST_ORDERS; i++) {
+      sandbox
+          .orders()
+          .createtestorder(
+              config.getMerchantId(),
+              new OrdersCreateTestOrderRequest().setTemplateName("template1"))
+          .execute();
+    }
+    System.out.println("done.");
+    System.out.println();
+
+    File checkpointDir = config.getPath() != null ? config.getPath() : new File(".");
+    File checkpointFile = new File(checkpointDir, CHECKPOINT_FILE);
+    try (OrderCheckpoint checkpoint = new OrderCheckpoint(checkpointFile);
+        OperationIdGenerator operationIds =
+            new OperationIdGenerator(
+                nodeId, new File(checkpointDir, String.format(OPERATION_IDS_FILE, nodeId)));
+        AsyncRequestExecutor executor = new AsyncRequestExecutor()) {
+      System.out.printf(
+          "Using checkpoint %s with %d orders in progress.%n",
+          checkpointFile, checkpoint.getPendingOrders().size());
+      OrderAckPipeline pipeline =
+          new OrderAckPipeline(sandbox, config.getMerchantId(), checkpoint, executor)
+              .setMerchantOrderIds(order -> "ack-" + order.getId())
+              .setOperationIds(operationIds);
+
+      System.out.print("Processing unacknowledged orders... ");
+      int completed = pipeline.pollOnce();
+      System.out.printf("done with %d orders.%n", completed);
+      System.out.printf(
+          "- %d acknowledged, %d merchant order IDs set, %d duplicates, %d failed, %d abandoned.%n",
+          pipeline.getAcknowledged(),
+          pipeline.getMerchantOrderIdsSet(),
+          pipeline.getDuplicates(),
+          pipeline.getFailed(),
+          pipeline.getAbandoned());
+
+      // Failed orders are left in progress, and will be resumed by the next run until they have
+      // failed too often.
+      System.out.printf(
+          "%d orders are still in progress.%n", checkpoint.getPendingOrders().size());
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    CommandLine parsedArgs = BaseOption.parseOptions(args);
+    File configPath = null;
+    if (!NO_CONFIG.isSet(parsedArgs)) {
+      configPath = BaseOption.checkedConfigPath(parsedArgs);
+    }
+    ContentConfig config = ContentConfig.load(configPath);
+
+    ShoppingContent.Builder builder = createStandardBuilder(parsedArgs, config);
+    ShoppingContent content = createService(builder);
+    ShoppingContent sandbox = createSandboxContentService(builder);
+    retrieveConfiguration(content, config);
+
+    int nodeId = Integer.parseInt(BaseOption.NODE_ID.getOptionValue(parsedArgs));
+    new OrdersAckPipelineSample(content, sandbox, config, nodeId).execute();
+  }
+}
@@ -0,0 +1,140 @@
+package shopping.content.v2_1.samples.orders;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.Order;
+import com.google.api.services.content.model.OrdersCancelLineItemRequest;
+import com.google.api.services.content.model.OrdersCancelLineItemResponse;
+import com.google.api.services.content.model.OrdersReturnRefundLineItemRequest;
+import com.google.api.services.content.model.OrdersReturnRefundLineItemResponse;
+import com.google.api.services.content.model.OrdersShipLineItemsRequest;
+import com.google.api.services.content.model.OrdersShipLineItemsResponse;
+import com.google.api.services.content.model.OrdersUpdateShipmentRequest;
+import com.google.api.services.content.model.OrdersUpdateShipmentResponse;
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import shopping.common.AsyncRequestExecutor;
+
+/**
+ * Sends shipping and status updates for many orders, without making callers wait for each one.
+ *
+ * <p>Each update is sent as soon as it is queued, on the given executor. Updates of different
+ * orders run concurrently, while the updates of each order run one after the other in the order
+ * they were queued, since later updates usually depend on earlier ones (a shipment has to exist
+ * before it can be marked as delivered). Each update is sent once all earlier updates of its
+ * order have finished, whether they succeeded or not, so a failed update only fails its own
+ * future; a later update that depended on it fails in turn when the API rejects it.
+ *
+ * <p>Orders are only read back when a caller asks for it with {@link #get}, which is queued like
+ * any update and so sees the effects of all updates queued before it for that order.
+ */
+public class OrdersBulkExecutor implements Closeable {
+  private final ShoppingContent content;
+  private final BigInteger merchantId;
+  private final AsyncRequestExecutor executor;
+  // The last operation queued for each order that hasn't finished yet. Never fails.
+  private final Map<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+  private boolean closed;
+
+  private final AtomicLong operationsSent = new AtomicLong();
+  private final AtomicLong operationsFailed = new AtomicLong();
+
+  public OrdersBulkExecutor(
+      ShoppingContent content, BigInteger merchantId, AsyncRequestExecutor executor) {
+    this.content = content;
+    this.merchantId = merchantId;
+    this.executor = executor;
+  }
+
+  public CompletableFuture<OrdersShipLineItemsResponse> shipLineItems(
+      final String orderId, final OrdersShipLineItemsRequest request) {
+    return enqueue(
+        orderId, () -> content.orders().shiplineitems(merchantId, orderId, request).execute());
+  }
+
+  public CompletableFuture<OrdersUpdateShipmentResponse> updateShipment(
+      final String orderId, final OrdersUpdateShipmentRequest request) {
+    return enqueue(
+        orderId, () -> content.orders().updateshipment(merchantId, orderId, request).execute());
+  }
+
+  public CompletableFuture<OrdersCancelLineItemResponse> cancelLineItem(
+      final String orderId, final OrdersCancelLineItemRequest request) {
+    return enqueue(
+        orderId, () -> content.orders().cancellineitem(merchantId, orderId, request).execute());
+  }
+
+  public CompletableFuture<OrdersReturnRefundLineItemResponse> returnRefundLineItem(
+      final String orderId, final OrdersReturnRefundLineItemRequest request) {
+    return enqueue(
+        orderId,
+        () -> content.orders().returnrefundlineitem(merchantId, orderId, request).execute());
+  }
+
+  /** Reads the order once all updates queued for it so far are done. */
+  public CompletableFuture<Order> get(final String orderId) {
+    return enqueue(orderId, () -> content.orders().get(merchantId, orderId).execute());
+  }
+
+  // Synchronized with close(), and so that the operations of an order are chained in the order
+  // they were queued.
+  private synchronized <T> CompletableFuture<T> enqueue(String orderId, final Callable<T> call) {
+    if (closed) {
+      throw new IllegalStateException("OrdersBulkExecutor is closed");
+    }
+    CompletableFuture<Void> previous = tails.get(orderId);
+    CompletableFuture<T> result =
+        (previous != null ? previous : CompletableFuture.<Void>completedFuture(null))
+            .thenCompose(ignored -> executor.call(() -> send(call)));
+    final CompletableFuture<Void> tail = result.handle((response, t) -> null);
+    tails.put(orderId, tail);
+    tail.thenRun(() -> tails.remove(orderId, tail));
+    return result;
+  }
+
+  private <T> T send(Callable<T> call) throws Exception {
+    operationsSent.incrementAndGet();
+    try {
+      return call.call();
+    } catch (Exception e) {
+      operationsFailed.incrementAndGet();
+      throw e;
+    }
+  }
+
+  /** Returns the number of updates and reads sent to the API. */
+  public long getOperationsSent() {
+    return operationsSent.get();
+  }
+
+  /** Returns the number of updates and reads that failed. */
+  public long getOperationsFailed() {
+    return operationsFailed.get();
+  }
+
+  /**
+   * Waits until all queued updates are done. The executor passed to the constructor is left open.
+   */
+  public void close() throws InterruptedIOException {
+    synchronized (this) {
+      closed = true;
+    }
+    try {
+      for (CompletableFuture<Void> tail : new ArrayList<>(tails.values())) {
+        tail.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for order updates");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Order tails never fail", e);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package shopping.content.v2_1.samples.orders;
+
+import static shopping.common.BaseOption.NO_CONFIG;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.Order;
+import com.google.api.services.content.model.OrderLineItem;
+import com.google.api.services.content.model.OrderShipmentLineItemShipment;
+import com.google.api.services.content.model.OrdersCreateTestOrderRequest;
+import com.google.api.services.content.model.OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo;
+import com.google.api.services.content.model.OrdersShipLineItemsRequest;
+import com.google.api.services.content.model.OrdersUpdateShipmentRequest;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.apache.commons.cli.CommandLine;
+import shopping.common.AsyncRequestExecutor;
+import shopping.common.BaseOption;
+import shopping.content.v2_1.samples.ContentConfig;
+import shopping.content.v2_1.samples.ContentWorkflowSample;
+
+/**
+ * Sample that ships and delivers all line items of several test orders with an {@link
+ * OrdersBulkExecutor}. All updates are queued up front; the executor sends the updates of
+ * different orders concurrently, and each order is only read back once, after its last update.
+ * Like {@link OrdersWorkflow}, this runs on the sandbox API endpoint.
+ */
+public class OrdersBulkShippingSample extends ContentWorkflowSample {
+  private static final int TEST_ORDERS = 5;
+
+  private final OperationIdGenerator operationIds;
+
+  private OrdersBulkShippingSample(
+      ShoppingContent content, ShoppingContent sandbox, ContentConfig config, int nodeId) {
+    super(content, sandbox, config);
+    this.operationIds = new OperationIdGenerator(nodeId);
+  }
+
+  @Override
+  public void execute() throws IOException {
+    checkNonMCA();
+
+    // Test orders have to be advanced before their line items can be shipped.
+    System.out.printf("Creating and advancing %d test orders... ", TEST_ORDERS);
+    List<String> orderIds = new ArrayList<>();
+    for (int i = 0; i < TEST_ORDERS; i++) {
+      String orderId =
+          sandbox
+              .orders()
+              .createtestorder(
+                  config.getMerchantId(),
+                  new OrdersCreateTestOrderRequest().setTemplateName("template1"))
+              .execute()
+              .getOrderId();
+      sandbox.orders().advancetestorder(config.getMerchantId(), orderId).execute();
+      orderIds.add(orderId);
+    }
+    System.out.println("done.");
+    System.out.println();
+
+    try (AsyncRequestExecutor executor = new AsyncRequestExecutor();
+        OrdersBulkExecutor bulk =
+            new OrdersBulkExecutor(sandbox, config.getMerchantId(), executor)) {
+      // The line item IDs are needed to ship them, so each order is read once up front.
+      List<CompletableFuture<Order>> orders = new ArrayList<>();
+      for (String orderId : orderIds) {
+        orders.add(bulk.get(orderId));
+      }
+
+      System.out.print("Queueing shipment and delivery of all line items... ");
+      List<CompletableFuture<Order>> updated = new ArrayList<>();
+      for (CompletableFuture<Order> future : orders) {
+        Order order = AsyncRequestExecutor.await(future);
+        for (OrderLineItem item : order.getLineItems()) {
+          OrdersShipLineItemsRequest shipReq = newShipLineItemsRequest(item);
+          bulk.shipLineItems(order.getId(), shipReq);
+          bulk.updateShipment(order.getId(), newDeliveredRequest(shipReq));
+        }
+        updated.add(bulk.get(order.getId()));
+      }
+      System.out.println("done.");
+
+      for (CompletableFuture<Order> future : updated) {
+        Order order = AsyncRequestExecutor.await(future);
+        System.out.printf("Order \"%s\" is now %s.%n", order.getId(), order.getStatus());
+      }
+      System.out.printf(
+          "Sent %d requests, %d failed.%n", bulk.getOperationsSent(), bulk.getOperationsFailed());
+    }
+  }
+
+  private OrdersShipLineItemsRequest newShipLineItemsRequest(OrderLineItem item) {
+    return new OrdersShipLineItemsRequest()
+        .setOperationId(operationIds.get())
+        .setLineItems(
+            ImmutableList.of(
+                new OrderShipmentLineItemShipment()
+                    .setLineItemId(item.getId())
+                    .setQuantity(item.getQuantityPending())))
+        .setShipmentInfos(
+            ImmutableList.of(
+                new OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo()
+                    .setCarrier(item.getShippingDetails().getMethod().getCarrier())
+                    .setShipmentId(UUID.randomUUID().toString())
+                    .setTrackingId(UUID.randomUUID().toString())));
+  }
+
+  private OrdersUpdateShipmentRequest newDeliveredRequest(
+      OrdersShipLineItemsRequest shipReq) {
+    OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo info =
+        shipReq.getShipmentInfos().get(0);
+    return new OrdersUpdateShipmentRequest()
+        .setOperationId(operationIds.get())
+        .setCarrier(info.getCarrier())
+        .setTrackingId(info.getTrackingId())
+        .setShipmentId(info.getShipmentId())
+        .setStatus("delivered");
+  }
+
+  public static void main(String[] args) throws IOException {
+    CommandLine parsedArgs = BaseOption.parseOptions(args);
+    File configPath = null;
+    if (!NO_CONFIG.isSet(parsedArgs)) {
+      configPath = BaseOption.checkedConfigPath(parsedArgs);
+    }
+    ContentConfig config = ContentConfig.load(configPath);
+
+    ShoppingContent.Builder builder = createStandardBuilder(parsedArgs, config);
+    ShoppingContent content = createService(builder);
+    ShoppingContent sandbox = createSandboxContentService(builder);
+    retrieveConfiguration(content, config);
+
+    int nodeId = Integer.parseInt(BaseOption.NODE_ID.getOptionValue(parsedArgs));
+    new OrdersBulkShippingSample(content, sandbox, config, nodeId).execute();
+  }
+}
@@ -3,6 +3,7 @@ package shopping.content.v2_1.samples.orders;
 import com.google.api.services.content.model.Order;
 import com.google.api.services.content.model.OrderCustomer;
 import com.google.api.services.content.model.OrderLineItem;
+import com.google.api.services.content.model.OrderLineItemProduct;
 import com.google.api.services.content.model.OrderLineItemReturnInfo;
 import com.google.api.services.content.model.OrderLineItemShippingDetails;
 import com.google.api.services.content.model.OrderLineItemShippingDetailsMethod;
@@ -10,9 +11,82 @@ import com.google.api.services.content.model.OrderReturn;
 import com.google.api.services.content.model.OrderShipment;
 import com.google.api.services.content.model.OrderShipmentLineItemShipment;
 import com.google.api.services.content.model.Price;
+import shopping.common.Projection;
 
 /** Utility class for working with Order resources. */
 public class OrdersUtils {
+  private static final Projection<Price> PRICE_FIELDS =
+      Projection.of(Price.class).with(Price::getValue).with(Price::getCurrency);
+
+  /** The fields of an order that {@link #printOrderSummary} prints. */
+  public static final Projection<Order> SUMMARY_FIELDS =
+      Projection.of(Order.class)
+          .with(Order::getId)
+          .with(Order::getStatus)
+          .with(Order::getMerchantId)
+          .with(Order::getMerchantOrderId)
+          .with(Order::getPlacedDate)
+          .with(Order::getNetPriceAmount, PRICE_FIELDS)
+          .with(Order::getPaymentStatus)
+          .with(Order::getAcknowledged);
+
+  /** The fields of an order that {@link #printOrder} prints. */
+  public static final Projection<Order> PRINTED_FIELDS =
+      Projection.of(Order.class)
+          .with(Order::getId)
+          .with(Order::getStatus)
+          .with(Order::getMerchantId)
+          .with(Order::getMerchantOrderId)
+          .with(
+              Order::getCustomer,
+              Projection.of(OrderCustomer.class)
+                  .with(OrderCustomer::getFullName)
+                  .with(OrderCustomer::getMarketingRightsInfo))
+          .with(Order::getPlacedDate)
+          .with(Order::getNetPriceAmount, PRICE_FIELDS)
+          .with(Order::getPaymentStatus)
+          .with(Order::getAcknowledged)
+          .with(
+              Order::getLineItems,
+              Projection.of(OrderLineItem.class)
+                  .with(OrderLineItem::getId)
+                  .with(
+                      OrderLineItem::getProduct,
+                      Projection.of(OrderLineItemProduct.class)
+                          .with(OrderLineItemProduct::getId)
+                          .with(OrderLineItemProduct::getTitle))
+                  .with(OrderLineItem::getPrice, PRICE_FIELDS)
+                  .with(OrderLineItem::getTax, PRICE_FIELDS)
+                  .with(OrderLineItem::getQuantityOrdered)
+                  .with(OrderLineItem::getQuantityPending)
+                  .with(OrderLineItem::getQuantityShipped)
+                  .with(OrderLineItem::getQuantityDelivered)
+                  .with(OrderLineItem::getQuantityReturned)
+                  .with(OrderLineItem::getQuantityCanceled)
+                  .with(OrderLineItem::getShippingDetails)
+                  .with(OrderLineItem::getReturnInfo)
+                  .with(OrderLineItem::getReturns))
+          // The shipments are printed in full as the shipping option.
+          .with(Order::getShipments)
+          .with(Order::getShippingCost, PRICE_FIELDS)
+          .with(Order::getShippingCostTax, PRICE_FIELDS);
+
+  /** Prints the top-level fields of an order, without its customer, line items or shipments. */
+  public static void printOrderSummary(Order order) {
+    System.out.printf("Order \"%s\":%n", order.getId());
+    System.out.printf("- Status: %s%n", order.getStatus());
+    System.out.printf("- Merchant: %d%n", order.getMerchantId());
+    System.out.printf("- Merchant order ID: %s%n", order.getMerchantOrderId());
+    System.out.printf("- Placed on date: %s%n", order.getPlacedDate());
+    if (order.getNetPriceAmount() != null) {
+      Price amount = order.getNetPriceAmount();
+      System.out.printf("- Net amount: %s %s%n", amount.getValue(), amount.getCurrency());
+    }
+    System.out.printf("- Payment status: %s%n", order.getPaymentStatus());
+    System.out.println(
+        "- Acknowledged: " + (order.getAcknowledged() == Boolean.TRUE ? "yes" : "no"));
+  }
+
   public static void printOrder(Order order) {
     System.out.printf("Order \"%s\":%n", order.getId());
     System.out.printf("- Status: %s%n", order.getStatus());
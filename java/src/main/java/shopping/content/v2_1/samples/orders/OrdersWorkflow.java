@@ -13,14 +13,20 @@ import com.google.api.services.content.model.OrdersCustomBatchRequestEntryShipLi
 import com.google.api.services.content.model.OrdersListResponse;
 import com.google.api.services.content.model.OrdersReturnRefundLineItemRequest;
 import com.google.api.services.content.model.OrdersShipLineItemsRequest;
+import com.google.api.services.content.model.OrdersShipLineItemsResponse;
 import com.google.api.services.content.model.OrdersUpdateMerchantOrderIdRequest;
 import com.google.api.services.content.model.OrdersUpdateShipmentRequest;
+import com.google.api.services.content.model.OrdersUpdateShipmentResponse;
 import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.cli.CommandLine;
+import shopping.common.AsyncRequestExecutor;
 import shopping.common.BaseOption;
+import shopping.common.PagedStream;
+import shopping.common.Projection;
 import shopping.content.v2_1.samples.ContentConfig;
 import shopping.content.v2_1.samples.ContentWorkflowSample;
 
@@ -28,13 +34,26 @@ import shopping.content.v2_1.samples.ContentWorkflowSample;
  * Sample that runs through an entire test order workflow. We run this sample on the sandbox API
  * endpoint, so that we have access to test order creation and don't accidentally mutate real
  * orders.
+ *
+ * <p>When run with the --async option, notifications for the two line items of the test order are
+ * sent concurrently.
  */
 public class OrdersWorkflow extends ContentWorkflowSample {
-  private int nonce = 0;
+  private final OperationIdGenerator operationIds;
   private final Random random = new Random();
+  private final boolean async;
+  private final OrderCache cache;
 
-  private OrdersWorkflow(ShoppingContent content, ShoppingContent sandbox, ContentConfig config) {
+  private OrdersWorkflow(
+      ShoppingContent content,
+      ShoppingContent sandbox,
+      ContentConfig config,
+      int nodeId,
+      boolean async) {
     super(content, sandbox, config);
+    this.operationIds = new OperationIdGenerator(nodeId);
+    this.async = async;
+    this.cache = new OrderCache(sandbox, config.getMerchantId());
   }
 
   @Override
@@ -59,25 +78,20 @@ public class OrdersWorkflow extends ContentWorkflowSample {
 
     // List the unacknowledged orders.
     System.out.printf("Listing unacknowledged orders for merchant %d:%n", config.getMerchantId());
-    ShoppingContent.Orders.List listCall =
-        sandbox.orders().list(config.getMerchantId()).setAcknowledged(false);
-    do {
-      OrdersListResponse page = listCall.execute();
-      for (Order product : page.getResources()) {
-        OrdersUtils.printOrder(product);
-      }
-      if (page.getNextPageToken() == null) {
-        break;
-      }
-      listCall.setPageToken(page.getNextPageToken());
-    } while (true);
+    try (PagedStream<Order> orders =
+        PagedStream.of(
+            OrdersUtils.SUMMARY_FIELDS.applyToList(
+                sandbox.orders().list(config.getMerchantId()).setAcknowledged(false)),
+            OrdersListResponse::getResources,
+            OrdersListResponse::getNextPageToken)) {
+      orders.forEachItem(OrdersUtils::printOrderSummary);
+    }
     System.out.println();
 
     // Acknowledge the newly received order. (Normally we'd do this for the orders returned by the
     // list call, but here, we'll just use the one we got from creating the test order.)
     System.out.printf("Acknowledging order \"%s\"... ", orderId);
-    System.out.printf(
-        "done with status \"%s\".%n",
+    String status =
         sandbox
             .orders()
             .acknowledge(
@@ -85,14 +99,15 @@ public class OrdersWorkflow extends ContentWorkflowSample {
                 orderId,
                 new OrdersAcknowledgeRequest().setOperationId(newOperationId()))
             .execute()
-            .getExecutionStatus());
+            .getExecutionStatus();
+    cache.applyAcknowledge(orderId, status);
+    System.out.printf("done with status \"%s\".%n", status);
     System.out.println();
 
     // Set the new order's merchant order ID.
     String merchantOrderId = "test order " + String.valueOf(random.nextLong());
     System.out.printf("Updating merchant order ID to \"%s\"... ", merchantOrderId);
-    System.out.printf(
-        "done with status \"%s\".%n",
+    status =
         sandbox
             .orders()
             .updatemerchantorderid(
@@ -102,7 +117,9 @@ public class OrdersWorkflow extends ContentWorkflowSample {
                     .setMerchantOrderId(merchantOrderId)
                     .setOperationId(newOperationId()))
             .execute()
-            .getExecutionStatus());
+            .getExecutionStatus();
+    cache.applyUpdateMerchantOrderId(orderId, merchantOrderId, status);
+    System.out.printf("done with status \"%s\".%n", status);
     System.out.println();
 
     Order currentOrder = getOrderByMerchantOrderId(merchantOrderId);
@@ -111,21 +128,21 @@ public class OrdersWorkflow extends ContentWorkflowSample {
 
     // Oops, not enough stock for all the Chromecasts, so we cancel one of them.
     System.out.print("Canceling one Chromecast order... ");
-    System.out.printf(
-        "done with status \"%s\".%n",
+    OrdersCancelLineItemRequest cancelReq =
+        new OrdersCancelLineItemRequest()
+            .setOperationId(newOperationId())
+            .setLineItemId(currentOrder.getLineItems().get(0).getId())
+            .setQuantity(1L)
+            .setReason("noInventory")
+            .setReasonText("Ran out of inventory while fulfilling request.");
+    status =
         sandbox
             .orders()
-            .cancellineitem(
-                config.getMerchantId(),
-                orderId,
-                new OrdersCancelLineItemRequest()
-                    .setOperationId(newOperationId())
-                    .setLineItemId(currentOrder.getLineItems().get(0).getId())
-                    .setQuantity(1L)
-                    .setReason("noInventory")
-                    .setReasonText("Ran out of inventory while fulfilling request."))
+            .cancellineitem(config.getMerchantId(), orderId, cancelReq)
             .execute()
-            .getExecutionStatus());
+            .getExecutionStatus();
+    cache.applyCancelLineItem(orderId, cancelReq, status);
+    System.out.printf("done with status \"%s\".%n", status);
     System.out.println();
 
     currentOrder = getOrder(orderId);
@@ -137,6 +154,8 @@ public class OrdersWorkflow extends ContentWorkflowSample {
     // to do it ourselves.
     System.out.print("Advancing test order... ");
     sandbox.orders().advancetestorder(config.getMerchantId(), orderId).execute();
+    // We don't know which fields advancing changes, so the order has to be read again.
+    cache.invalidate(orderId);
     System.out.println("done.");
     System.out.println();
 
@@ -144,113 +163,78 @@ public class OrdersWorkflow extends ContentWorkflowSample {
     OrdersUtils.printOrder(currentOrder);
     System.out.println();
 
-    // To simulate partial fulfillment, we'll pick the first line item from our test order
-    // and ship the amount that's still pending.
-    System.out.print("Notifying Google about shipment of first line item... ");
     OrderLineItem item1 = currentOrder.getLineItems().get(0);
-    // Storing this in a variable so we can access the shipment/tracking IDs later.
-    OrdersShipLineItemsRequest shipReq1 =
-        new OrdersShipLineItemsRequest()
-            .setOperationId(newOperationId())
-            .setLineItems(
-                ImmutableList.of(
-                    new OrderShipmentLineItemShipment()
-                        .setLineItemId(item1.getId())
-                        .setQuantity(item1.getQuantityPending())))
-                .setShipmentInfos(
-                        ImmutableList.of(
-                                new OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo()
-                                        .setCarrier(item1.getShippingDetails().getMethod()
-                                                        .getCarrier())
-                                        .setShipmentId(String.valueOf(random.nextLong()))
-                                        .setTrackingId(String.valueOf(random.nextLong()))
-                        ));
-    System.out.printf(
-        "done with status \"%s\".%n",
-        sandbox
-            .orders()
-            .shiplineitems(config.getMerchantId(), orderId, shipReq1)
-            .execute()
-            .getExecutionStatus());
-    System.out.println();
+    OrderLineItem item2 = currentOrder.getLineItems().get(1);
+    // Storing these in variables so we can access the shipment/tracking IDs later.
+    OrdersShipLineItemsRequest shipReq1 = newShipLineItemsRequest(item1);
+    OrdersShipLineItemsRequest shipReq2 = newShipLineItemsRequest(item2);
 
-    currentOrder = getOrder(orderId);
-    OrdersUtils.printOrder(currentOrder);
-    System.out.println();
+    if (async) {
+      shipAndDeliverAsync(orderId, shipReq1, shipReq2);
+    } else {
+      // To simulate partial fulfillment, we'll ship the amount that's still pending for the
+      // first line item from our test order.
+      System.out.print("Notifying Google about shipment of first line item... ");
+      status =
+          sandbox
+              .orders()
+              .shiplineitems(config.getMerchantId(), orderId, shipReq1)
+              .execute()
+              .getExecutionStatus();
+      cache.applyShipLineItems(orderId, shipReq1, status);
+      System.out.printf("done with status \"%s\".%n", status);
+      System.out.println();
 
-    // Now we ship the rest.
-    System.out.print("Notifying Google about shipment of second line item... ");
-    OrderLineItem item2 = currentOrder.getLineItems().get(1);
-    OrdersShipLineItemsRequest shipReq2 =
-        new OrdersShipLineItemsRequest()
-            .setOperationId(newOperationId())
-            .setLineItems(
-                ImmutableList.of(
-                    new OrderShipmentLineItemShipment()
-                        .setLineItemId(item2.getId())
-                        .setQuantity(item2.getQuantityPending())))
-            .setShipmentInfos(
-                    ImmutableList.of(
-                      new OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo()
-                              .setCarrier(item2.getShippingDetails().getMethod().getCarrier())
-                              .setShipmentId(String.valueOf(random.nextLong()))
-                              .setTrackingId(String.valueOf(random.nextLong()))
-            ));
-    System.out.printf(
-        "done with status \"%s\".%n",
-        sandbox
-            .orders()
-            .shiplineitems(config.getMerchantId(), orderId, shipReq2)
-            .execute()
-            .getExecutionStatus());
-    System.out.println();
+      currentOrder = getOrder(orderId);
+      OrdersUtils.printOrder(currentOrder);
+      System.out.println();
 
-    currentOrder = getOrder(orderId);
-    OrdersUtils.printOrder(currentOrder);
-    System.out.println();
+      // Now we ship the rest.
+      System.out.print("Notifying Google about shipment of second line item... ");
+      status =
+          sandbox
+              .orders()
+              .shiplineitems(config.getMerchantId(), orderId, shipReq2)
+              .execute()
+              .getExecutionStatus();
+      cache.applyShipLineItems(orderId, shipReq2, status);
+      System.out.printf("done with status \"%s\".%n", status);
+      System.out.println();
 
-    // First item arrives to the customer.
-    System.out.print("Notifying Google about delivery of first line item... ");
-    OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo l2 = shipReq1.getShipmentInfos().get(0);
-    System.out.printf(
-        "done with status \"%s\".%n",
-        sandbox
-            .orders()
-            .updateshipment(
-                config.getMerchantId(),
-                orderId,
-                new OrdersUpdateShipmentRequest()
-                    .setOperationId(newOperationId())
-                    .setCarrier(shipReq1.getShipmentInfos().get(0).getCarrier())
-                    .setTrackingId(shipReq1.getShipmentInfos().get(0).getTrackingId())
-                    .setShipmentId(shipReq1.getShipmentInfos().get(0).getShipmentId())
-                    .setStatus("delivered"))
-            .execute()
-            .getExecutionStatus());
-    System.out.println();
+      currentOrder = getOrder(orderId);
+      OrdersUtils.printOrder(currentOrder);
+      System.out.println();
 
-    currentOrder = getOrder(orderId);
-    OrdersUtils.printOrder(currentOrder);
-    System.out.println();
+      // First item arrives to the customer.
+      System.out.print("Notifying Google about delivery of first line item... ");
+      OrdersUpdateShipmentRequest deliverReq1 = newDeliveredRequest(shipReq1);
+      status =
+          sandbox
+              .orders()
+              .updateshipment(config.getMerchantId(), orderId, deliverReq1)
+              .execute()
+              .getExecutionStatus();
+      cache.applyUpdateShipment(orderId, deliverReq1, status);
+      System.out.printf("done with status \"%s\".%n", status);
+      System.out.println();
 
-    // Second item arrives.
-    System.out.print("Notifying Google about delivery of second line item... ");
-    System.out.printf(
-        "done with status \"%s\".%n",
-        sandbox
-            .orders()
-            .updateshipment(
-                config.getMerchantId(),
-                orderId,
-                new OrdersUpdateShipmentRequest()
-                    .setOperationId(newOperationId())
-                        .setCarrier(shipReq2.getShipmentInfos().get(0).getCarrier())
-                        .setTrackingId(shipReq2.getShipmentInfos().get(0).getTrackingId())
-                        .setShipmentId(shipReq2.getShipmentInfos().get(0).getShipmentId())
-                        .setStatus("delivered"))
-            .execute()
-            .getExecutionStatus());
-    System.out.println();
+      currentOrder = getOrder(orderId);
+      OrdersUtils.printOrder(currentOrder);
+      System.out.println();
+
+      // Second item arrives.
+      System.out.print("Notifying Google about delivery of second line item... ");
+      OrdersUpdateShipmentRequest deliverReq2 = newDeliveredRequest(shipReq2);
+      status =
+          sandbox
+              .orders()
+              .updateshipment(config.getMerchantId(), orderId, deliverReq2)
+              .execute()
+              .getExecutionStatus();
+      cache.applyUpdateShipment(orderId, deliverReq2, status);
+      System.out.printf("done with status \"%s\".%n", status);
+      System.out.println();
+    }
 
     currentOrder = getOrder(orderId);
     OrdersUtils.printOrder(currentOrder);
@@ -258,51 +242,141 @@ public class OrdersWorkflow extends ContentWorkflowSample {
 
     // Customer returns the first delivered item because it's malfunctioning.
     System.out.print("Notifying Google about return of first line item... ");
-    System.out.printf(
-        "... done with status \"%s\".%n",
+    OrdersReturnRefundLineItemRequest returnReq =
+        new OrdersReturnRefundLineItemRequest()
+            .setOperationId(newOperationId())
+            .setLineItemId(item1.getId())
+            .setQuantity(1L)
+            .setReason("productArrivedDamaged")
+            .setReasonText("Item malfunctioning upon receipt.");
+    status =
         sandbox
             .orders()
-            .returnrefundlineitem(
-                config.getMerchantId(),
-                orderId,
-                new OrdersReturnRefundLineItemRequest()
-                    .setOperationId(newOperationId())
-                    .setLineItemId(item1.getId())
-                    .setQuantity(1L)
-                    .setReason("productArrivedDamaged")
-                    .setReasonText("Item malfunctioning upon receipt."))
+            .returnrefundlineitem(config.getMerchantId(), orderId, returnReq)
             .execute()
-            .getExecutionStatus());
+            .getExecutionStatus();
+    cache.applyReturnRefundLineItem(orderId, returnReq, status);
+    System.out.printf("... done with status \"%s\".%n", status);
     System.out.println();
 
-    currentOrder = getOrder(orderId);
+    // The order is only printed from here on, so only the printed fields are needed.
+    currentOrder = getOrder(orderId, OrdersUtils.PRINTED_FIELDS);
     OrdersUtils.printOrder(currentOrder);
     System.out.println();
+
+    System.out.printf(
+        "Order cache: %d orders read, %d served from cache, %d updated locally.%n",
+        cache.getMisses(), cache.getHits(), cache.getLocalUpdates());
+  }
+
+  // The two line items ship and arrive independently of each other, so in async mode we send
+  // the notifications for both at once instead of waiting for each response in turn.
+  private void shipAndDeliverAsync(
+      String orderId, OrdersShipLineItemsRequest shipReq1, OrdersShipLineItemsRequest shipReq2)
+      throws IOException {
+    try (AsyncRequestExecutor executor = new AsyncRequestExecutor()) {
+      System.out.print("Notifying Google about shipment of both line items... ");
+      CompletableFuture<OrdersShipLineItemsResponse> ship1 =
+          executor.submit(
+              sandbox.orders().shiplineitems(config.getMerchantId(), orderId, shipReq1));
+      CompletableFuture<OrdersShipLineItemsResponse> ship2 =
+          executor.submit(
+              sandbox.orders().shiplineitems(config.getMerchantId(), orderId, shipReq2));
+      String status1 = AsyncRequestExecutor.await(ship1).getExecutionStatus();
+      String status2 = AsyncRequestExecutor.await(ship2).getExecutionStatus();
+      cache.applyShipLineItems(orderId, shipReq1, status1);
+      cache.applyShipLineItems(orderId, shipReq2, status2);
+      System.out.printf("done with statuses \"%s\" and \"%s\".%n", status1, status2);
+      System.out.println();
+
+      Order currentOrder = getOrder(orderId);
+      OrdersUtils.printOrder(currentOrder);
+      System.out.println();
+
+      System.out.print("Notifying Google about delivery of both line items... ");
+      OrdersUpdateShipmentRequest deliverReq1 = newDeliveredRequest(shipReq1);
+      OrdersUpdateShipmentRequest deliverReq2 = newDeliveredRequest(shipReq2);
+      CompletableFuture<OrdersUpdateShipmentResponse> deliver1 =
+          executor.submit(
+              sandbox.orders().updateshipment(config.getMerchantId(), orderId, deliverReq1));
+      CompletableFuture<OrdersUpdateShipmentResponse> deliver2 =
+          executor.submit(
+              sandbox.orders().updateshipment(config.getMerchantId(), orderId, deliverReq2));
+      status1 = AsyncRequestExecutor.await(deliver1).getExecutionStatus();
+      status2 = AsyncRequestExecutor.await(deliver2).getExecutionStatus();
+      cache.applyUpdateShipment(orderId, deliverReq1, status1);
+      cache.applyUpdateShipment(orderId, deliverReq2, status2);
+      System.out.printf("done with statuses \"%s\" and \"%s\".%n", status1, status2);
+      System.out.println();
+    }
+  }
+
+  // Ships the full pending quantity of the given line item.
+  private OrdersShipLineItemsRequest newShipLineItemsRequest(OrderLineItem item) {
+    return new OrdersShipLineItemsRequest()
+        .setOperationId(newOperationId())
+        .setLineItems(
+            ImmutableList.of(
+                new OrderShipmentLineItemShipment()
+                    .setLineItemId(item.getId())
+                    .setQuantity(item.getQuantityPending())))
+        .setShipmentInfos(
+            ImmutableList.of(
+                new OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo()
+                    .setCarrier(item.getShippingDetails().getMethod().getCarrier())
+                    .setShipmentId(String.valueOf(random.nextLong()))
+                    .setTrackingId(String.valueOf(random.nextLong()))));
+  }
+
+  // Marks the shipment created by the given request as delivered.
+  private OrdersUpdateShipmentRequest newDeliveredRequest(OrdersShipLineItemsRequest shipReq) {
+    OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo info =
+        shipReq.getShipmentInfos().get(0);
+    return new OrdersUpdateShipmentRequest()
+        .setOperationId(newOperationId())
+        .setCarrier(info.getCarrier())
+        .setTrackingId(info.getTrackingId())
+        .setShipmentId(info.getShipmentId())
+        .setStatus("delivered");
   }
 
   private String newOperationId() {
-    String ret = String.valueOf(nonce);
-    nonce++;
-    return ret;
+    return operationIds.get();
   }
 
+  // Orders are read through the cache, which already reflects the changes made above, so most of
+  // these calls don't need an API request.
   private Order getOrder(String orderId) throws IOException {
-    System.out.printf("Retrieving order \"%s\"... ", orderId);
-    Order ret = sandbox.orders().get(config.getMerchantId(), orderId).execute();
-    System.out.println("done.");
+    return getOrder(orderId, null);
+  }
+
+  // Reads only the fields selected by the projection, if one is given. Partial orders can't be
+  // cached, so those are always read from the API.
+  private Order getOrder(String orderId, Projection<Order> fields) throws IOException {
+    Order ret = fields == null ? cache.getIfCached(orderId) : null;
+    if (ret != null) {
+      System.out.printf("Retrieved order \"%s\" from the cache.%n", orderId);
+    } else {
+      System.out.printf("Retrieving order \"%s\"... ", orderId);
+      ret =
+          fields == null
+              ? cache.get(orderId)
+              : fields.applyTo(sandbox.orders().get(config.getMerchantId(), orderId)).execute();
+      System.out.println("done.");
+    }
     System.out.println();
     return ret;
   }
 
   private Order getOrderByMerchantOrderId(String merchantOrderId) throws IOException {
-    System.out.printf("Retrieving merchant order \"%s\"... ", merchantOrderId);
-    Order ret =
-        sandbox
-            .orders()
-            .getbymerchantorderid(config.getMerchantId(), merchantOrderId)
-            .execute()
-            .getOrder();
-    System.out.println("done.");
+    Order ret = cache.getIfCachedByMerchantOrderId(merchantOrderId);
+    if (ret != null) {
+      System.out.printf("Retrieved merchant order \"%s\" from the cache.%n", merchantOrderId);
+    } else {
+      System.out.printf("Retrieving merchant order \"%s\"... ", merchantOrderId);
+      ret = cache.getByMerchantOrderId(merchantOrderId);
+      System.out.println("done.");
+    }
     System.out.println();
     return ret;
   }
@@ -320,6 +394,8 @@ public class OrdersWorkflow extends ContentWorkflowSample {
     ShoppingContent sandbox = createSandboxContentService(builder);
     retrieveConfiguration(content, config);
 
-    new OrdersWorkflow(content, sandbox, config).execute();
+    int nodeId = Integer.parseInt(BaseOption.NODE_ID.getOptionValue(parsedArgs));
+    new OrdersWorkflow(content, sandbox, config, nodeId, BaseOption.ASYNC.isSet(parsedArgs))
+        .execute();
   }
 }
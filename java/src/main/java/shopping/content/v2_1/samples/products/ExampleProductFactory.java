@@ -7,7 +7,9 @@ import com.google.api.services.content.model.ProductsCustomBatchRequest;
 import com.google.api.services.content.model.ProductsCustomBatchRequestEntry;
 import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import shopping.content.v2_1.samples.ContentConfig;
 
 /**
@@ -63,8 +65,14 @@ public class ExampleProductFactory {
   }
 
   public static ProductsCustomBatchRequest createBatch(ContentConfig config, String prefix) {
-    List<ProductsCustomBatchRequestEntry> productsBatchRequestEntries = new ArrayList<>();
-    for (int i = 0; i < PRODUCT_COUNT; i++) {
+    return createBatch(config, prefix, PRODUCT_COUNT);
+  }
+
+  /** Creates a custombatch request that inserts {@code count} example products. */
+  public static ProductsCustomBatchRequest createBatch(
+      ContentConfig config, String prefix, int count) {
+    List<ProductsCustomBatchRequestEntry> productsBatchRequestEntries = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
       productsBatchRequestEntries.add(
           new ProductsCustomBatchRequestEntry()
               .setBatchId((long) i)
@@ -74,4 +82,50 @@ public class ExampleProductFactory {
     }
     return new ProductsCustomBatchRequest().setEntries(productsBatchRequestEntries);
   }
+
+  /**
+   * Lazily creates the entries of a custombatch request that inserts {@code count} example
+   * products, for use with {@link shopping.common.StreamingBatchContent}.
+   */
+  public static Iterator<ProductsCustomBatchRequestEntry> createBatchEntries(
+      final ContentConfig config, final String prefix, final int count) {
+    final Iterator<Product> products = createMany(config, prefix, count);
+    return new Iterator<ProductsCustomBatchRequestEntry>() {
+      private long batchId = 0;
+
+      public boolean hasNext() {
+        return products.hasNext();
+      }
+
+      public ProductsCustomBatchRequestEntry next() {
+        return new ProductsCustomBatchRequestEntry()
+            .setBatchId(batchId++)
+            .setMerchantId(config.getMerchantId())
+            .setProduct(products.next())
+            .setMethod("insert");
+      }
+    };
+  }
+
+  /**
+   * Lazily creates {@code count} example products, so that large catalogs can be generated without
+   * holding them all in memory.
+   */
+  public static Iterator<Product> createMany(
+      final ContentConfig config, final String prefix, final int count) {
+    return new Iterator<Product>() {
+      private int next = 0;
+
+      public boolean hasNext() {
+        return next < count;
+      }
+
+      public Product next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return create(config, prefix + next++);
+      }
+    };
+  }
 }
@@ -1,10 +1,11 @@
 package shopping.content.v2_1.samples.products;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import com.google.api.services.content.ShoppingContent.Products.List;
+import com.google.api.services.content.model.Price;
 import com.google.api.services.content.model.Product;
-import com.google.api.services.content.model.ProductsListResponse;
 import java.io.IOException;
+import shopping.common.PagedStream;
+import shopping.common.Projection;
 import shopping.content.v2_1.samples.ContentSample;
 
 /** Sample demonstrating retrieving only a subset of fields for an item. */
@@ -18,21 +19,30 @@ public class PartialResponseSample extends ContentSample {
     checkNonMCA();
 
     try {
-      List productsList = content.products().list(this.config.getMerchantId());
-      // Must still select the nextPageToken if you wish to page through results
-      productsList.setFields("kind,nextPageToken,resources(id,title)");
+      // Only the fields needed for an inventory check are returned and parsed. The projection adds
+      // the nextPageToken that is needed to page through the results.
+      Projection<Product> inventoryFields =
+          Projection.of(Product.class)
+              .with(Product::getOfferId)
+              .with(Product::getPrice, ProductUtils.PRICE_FIELDS)
+              .with(Product::getAvailability);
+      System.out.printf("Fields requested: %s%n", inventoryFields.forList());
 
-      ProductsListResponse page = null;
-
-      do {
-        if (page != null) {
-          productsList.setPageToken(page.getNextPageToken());
-        }
-        page = productsList.execute();
-        for (Product product : page.getResources()) {
-          System.out.printf("%s %s%n", product.getId(), product.getTitle());
-        }
-      } while (page.getNextPageToken() != null);
+      try (PagedStream<Product> products =
+          PagedStream.streaming(
+              inventoryFields.applyToList(content.products().list(this.config.getMerchantId())),
+              "resources",
+              Product.class)) {
+        products.forEachItem(
+            product -> {
+              Price price = product.getPrice();
+              System.out.printf(
+                  "%s: %s, %s%n",
+                  product.getOfferId(),
+                  price != null ? price.getValue() + " " + price.getCurrency() : "no price",
+                  product.getAvailability());
+            });
+      }
     } catch (GoogleJsonResponseException e) {
       checkGoogleJsonResponseException(e);
     }
@@ -0,0 +1,157 @@
+package shopping.content.v2_1.samples.products;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.Product;
+import com.google.api.services.content.model.ProductsCustomBatchRequest;
+import com.google.api.services.content.model.ProductsCustomBatchRequestEntry;
+import com.google.api.services.content.model.ProductsCustomBatchResponse;
+import com.google.api.services.content.model.ProductsCustomBatchResponseEntry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import shopping.common.ChunkedBatchRunner;
+
+/**
+ * Sends an unbounded stream of products through {@code products.custombatch}.
+ *
+ * <p>Entries are split into chunks capped both by number of entries and by their estimated
+ * serialized size, and sent by a {@link ChunkedBatchRunner}, which keeps up to a fixed number of
+ * chunks in flight at once. Reading from the source iterator blocks while all slots are busy, and
+ * each result is passed to a handler as soon as its chunk completes, so neither the catalog nor
+ * the results ever have to be held in memory. The first chunk that fails stops the whole run.
+ *
+ * <p>Batch IDs are assigned by the engine in iteration order starting from 0, so callers can
+ * match the response entries back to their input.
+ *
+ * <p>If a {@link ProductBatchRetrier} is given, each chunk is sent through it so that entries
+ * failing with transient errors are retried without re-sending the rest of the chunk.
+ */
+public class ProductBatchEngine implements Closeable {
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+  public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+  /** Receives the result for each entry. */
+  public interface EntryHandler {
+    /**
+     * Handles the response entry for a request entry, which is null if the response had no entry
+     * for it.
+     */
+    void handle(ProductsCustomBatchRequestEntry request, ProductsCustomBatchResponseEntry response)
+        throws IOException;
+  }
+
+  private final ShoppingContent content;
+  private final BigInteger merchantId;
+  private final ProductBatchRetrier retrier;
+  private final ChunkedBatchRunner<ProductsCustomBatchRequestEntry, ProductsCustomBatchResponse>
+      runner;
+
+  public ProductBatchEngine(ShoppingContent content, BigInteger merchantId) {
+    this(content, merchantId, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  public ProductBatchEngine(
+      ShoppingContent content,
+      BigInteger merchantId,
+      int maxEntries,
+      long maxBytes,
+      int maxInFlight) {
+    this(content, merchantId, maxEntries, maxBytes, maxInFlight, null);
+  }
+
+  public ProductBatchEngine(
+      ShoppingContent content,
+      BigInteger merchantId,
+      int maxEntries,
+      long maxBytes,
+      int maxInFlight,
+      ProductBatchRetrier retrier) {
+    this.content = content;
+    this.merchantId = merchantId;
+    this.retrier = retrier;
+    this.runner =
+        new ChunkedBatchRunner<>(
+            maxEntries, maxBytes, maxInFlight, ChunkedBatchRunner::estimateJsonSize, this::send);
+  }
+
+  /** Inserts all the given products, passing the result for each to the handler. */
+  public void insertAll(final Iterator<Product> products, EntryHandler handler)
+      throws IOException {
+    execute(
+        new Iterator<ProductsCustomBatchRequestEntry>() {
+          public boolean hasNext() {
+            return products.hasNext();
+          }
+
+          public ProductsCustomBatchRequestEntry next() {
+            return new ProductsCustomBatchRequestEntry()
+                .setMethod("insert")
+                .setProduct(products.next());
+          }
+        },
+        handler);
+  }
+
+  /**
+   * Sends all the given entries, passing the result for each to the handler. The handler is never
+   * called concurrently, but may be called from other threads than the caller's. The batch ID of
+   * each entry is overwritten, and the merchant ID is filled in if missing.
+   */
+  public void execute(
+      final Iterator<ProductsCustomBatchRequestEntry> entries, final EntryHandler handler)
+      throws IOException {
+    runner.run(
+        new Iterator<ProductsCustomBatchRequestEntry>() {
+          private long nextBatchId = 0;
+
+          public boolean hasNext() {
+            return entries.hasNext();
+          }
+
+          public ProductsCustomBatchRequestEntry next() {
+            ProductsCustomBatchRequestEntry entry = entries.next();
+            entry.setBatchId(nextBatchId++);
+            if (entry.getMerchantId() == null) {
+              entry.setMerchantId(merchantId);
+            }
+            return entry;
+          }
+        },
+        (chunk, response) -> {
+          Map<Long, ProductsCustomBatchResponseEntry> byBatchId = new HashMap<>();
+          if (response.getEntries() != null) {
+            for (ProductsCustomBatchResponseEntry entry : response.getEntries()) {
+              byBatchId.put(entry.getBatchId(), entry);
+            }
+          }
+          for (ProductsCustomBatchRequestEntry entry : chunk) {
+            handler.handle(entry, byBatchId.get(entry.getBatchId()));
+          }
+        });
+  }
+
+  private ProductsCustomBatchResponse send(List<ProductsCustomBatchRequestEntry> chunk)
+      throws IOException {
+    ProductsCustomBatchRequest request = new ProductsCustomBatchRequest().setEntries(chunk);
+    return retrier != null
+        ? retrier.execute(request)
+        : content.products().custombatch(request).execute();
+  }
+
+  public long getEntriesSent() {
+    return runner.getItemsSent();
+  }
+
+  public long getBatchesSent() {
+    return runner.getChunksSent();
+  }
+
+  public void close() {
+    runner.close();
+  }
+}
@@ -0,0 +1,69 @@
+package shopping.content.v2_1.samples.products;
+
+import java.io.IOException;
+import shopping.common.HttpTransportFactory;
+import shopping.content.v2_1.samples.ContentSample;
+
+/**
+ * Measures the throughput of {@link ProductBatchEngine} for increasing numbers of in-flight
+ * batches.
+ *
+ * <p>This inserts a large number of products, so it refuses to run unless the API endpoint has
+ * been redirected (for example, to a local stub server) with the GOOGLE_SHOPPING_SAMPLES_ENDPOINT
+ * environment variable.
+ */
+public class ProductBatchEngineBenchmark extends ContentSample {
+  private static final int ENTRY_COUNT = 20000;
+  private static final int ENTRIES_PER_BATCH = 1000;
+  private static final int[] IN_FLIGHT_DEPTHS = {1, 2, 4, 8, 16};
+
+  public ProductBatchEngineBenchmark(String[] args) throws IOException {
+    super(args);
+  }
+
+  @Override
+  public void execute() throws IOException {
+    checkNonMCA();
+    if (System.getenv(ENDPOINT_ENV_VAR) == null) {
+      throw new IllegalStateException(
+          "Benchmark must be run against a stub endpoint set with " + ENDPOINT_ENV_VAR);
+    }
+
+    System.out.printf(
+        "Inserting %d products in batches of %d entries.%n", ENTRY_COUNT, ENTRIES_PER_BATCH);
+    for (int depth : IN_FLIGHT_DEPTHS) {
+      try (ProductBatchEngine engine =
+          new ProductBatchEngine(
+              content,
+              config.getMerchantId(),
+              ENTRIES_PER_BATCH,
+              ProductBatchEngine.DEFAULT_MAX_BYTES,
+              depth)) {
+        final int[] failed = {0};
+        long start = System.nanoTime();
+        engine.insertAll(
+            ExampleProductFactory.createMany(config, "bench" + depth + "_", ENTRY_COUNT),
+            (request, response) -> {
+              if (response == null || response.getErrors() != null) {
+                failed[0]++;
+              }
+            });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(
+            "- In-flight depth %2d: %d entries in %d batches, %.2f s, %.0f entries/sec"
+                + " (%d failed)%n",
+            depth,
+            engine.getEntriesSent(),
+            engine.getBatchesSent(),
+            seconds,
+            engine.getEntriesSent() / seconds,
+            failed[0]);
+        HttpTransportFactory.printPoolStats();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    new ProductBatchEngineBenchmark(args).execute();
+  }
+}
@@ -0,0 +1,246 @@
+package shopping.content.v2_1.samples.products;
+
+import com.google.api.client.util.BackOff;
+import com.google.api.client.util.ExponentialBackOff;
+import com.google.api.client.util.Sleeper;
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.Error;
+import com.google.api.services.content.model.Errors;
+import com.google.api.services.content.model.ProductsCustomBatchRequest;
+import com.google.api.services.content.model.ProductsCustomBatchRequestEntry;
+import com.google.api.services.content.model.ProductsCustomBatchResponse;
+import com.google.api.services.content.model.ProductsCustomBatchResponseEntry;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import shopping.common.RateLimitingHttpRequestInitializer;
+
+/**
+ * Executes {@code products.custombatch} requests, re-sending only the entries that failed with a
+ * transient error instead of the whole request.
+ *
+ * <p>After each round, entries whose errors are all transient (for example, backendError or
+ * rateLimitExceeded) are merged into a single follow-up request, which is sent after an exponential
+ * back off. Entries with any other error are reported as-is. Counters for each error reason are
+ * kept across all requests executed by an instance, which is safe to share between threads.
+ *
+ * <p>Entries that hit a quota are also reported to {@link RateLimitingHttpRequestInitializer}, so
+ * that the rate-limited clients slow down before the follow-up request is sent.
+ */
+public class ProductBatchRetrier {
+  private static final Set<String> RETRYABLE_REASONS =
+      ImmutableSet.of(
+          "backendError",
+          "internalError",
+          "deadlineExceeded",
+          "serviceUnavailable",
+          "rateLimitExceeded",
+          "userRateLimitExceeded");
+  private static final Set<String> QUOTA_REASONS =
+      ImmutableSet.of("rateLimitExceeded", "userRateLimitExceeded", "quotaExceeded");
+
+  private final ShoppingContent content;
+  private final ExponentialBackOff.Builder backOffBuilder;
+
+  private final ConcurrentMap<String, AtomicLong> transientByReason = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> permanentByReason = new ConcurrentHashMap<>();
+  private final AtomicLong entriesResent = new AtomicLong();
+  private final AtomicLong entriesNotResent = new AtomicLong();
+
+  public ProductBatchRetrier(ShoppingContent content) {
+    this(
+        content,
+        new ExponentialBackOff.Builder()
+            .setInitialIntervalMillis(1000)
+            .setMaxIntervalMillis(30000)
+            .setMaxElapsedTimeMillis(120000));
+  }
+
+  public ProductBatchRetrier(ShoppingContent content, ExponentialBackOff.Builder backOffBuilder) {
+    this.content = content;
+    this.backOffBuilder = backOffBuilder;
+  }
+
+  /**
+   * Executes the given request, retrying transient per-entry failures until they succeed or the
+   * back off runs out. The returned response contains the final result of every entry, ordered by
+   * batch ID.
+   *
+   * @throws IllegalArgumentException if an entry has no batch ID, or shares it with another entry
+   */
+  public ProductsCustomBatchResponse execute(ProductsCustomBatchRequest request)
+      throws IOException {
+    Map<Long, ProductsCustomBatchRequestEntry> requestEntries = new HashMap<>();
+    for (ProductsCustomBatchRequestEntry entry : request.getEntries()) {
+      // Retried entries are found by batch ID, so a missing or repeated one would retry the wrong
+      // entry.
+      if (entry.getBatchId() == null) {
+        throw new IllegalArgumentException("Batch entry has no batch ID");
+      }
+      if (requestEntries.put(entry.getBatchId(), entry) != null) {
+        throw new IllegalArgumentException("Duplicate batch ID " + entry.getBatchId());
+      }
+    }
+    Map<Long, ProductsCustomBatchResponseEntry> results = new TreeMap<>();
+    BackOff backOff = backOffBuilder.build();
+    List<ProductsCustomBatchRequestEntry> toSend = request.getEntries();
+
+    while (true) {
+      ProductsCustomBatchResponse response =
+          content.products().custombatch(new ProductsCustomBatchRequest().setEntries(toSend))
+              .execute();
+      Set<Long> sent = new HashSet<>();
+      for (ProductsCustomBatchRequestEntry entry : toSend) {
+        sent.add(entry.getBatchId());
+      }
+      List<ProductsCustomBatchRequestEntry> retryable = new ArrayList<>();
+      boolean throttled = false;
+      if (response.getEntries() != null) {
+        for (ProductsCustomBatchResponseEntry entry : response.getEntries()) {
+          // Only entries sent in this round can be matched to a result, or retried.
+          if (entry.getBatchId() == null || !sent.remove(entry.getBatchId())) {
+            System.out.printf(
+                "Ignoring response entry with unknown batch ID %s.%n", entry.getBatchId());
+            continue;
+          }
+          results.put(entry.getBatchId(), entry);
+          if (entry.getErrors() == null) {
+            continue;
+          }
+          String reason = reasonOf(entry.getErrors());
+          throttled |= hitQuota(entry.getErrors());
+          if (isRetryable(entry.getErrors())) {
+            increment(transientByReason, reason);
+            retryable.add(requestEntries.get(entry.getBatchId()));
+          } else {
+            increment(permanentByReason, reason);
+          }
+        }
+      }
+      if (throttled) {
+        // The request itself succeeded, so the rate limiter hasn't seen these quota errors.
+        RateLimitingHttpRequestInitializer.reportThrottled("products");
+      }
+      if (retryable.isEmpty()) {
+        break;
+      }
+      long nextPause = backOff.nextBackOffMillis();
+      if (nextPause == BackOff.STOP) {
+        System.out.printf(
+            "Giving up on %d batch entries with transient errors.%n", retryable.size());
+        break;
+      }
+      // A whole-request retry would have re-sent these entries as well.
+      entriesNotResent.addAndGet(toSend.size() - retryable.size());
+      entriesResent.addAndGet(retryable.size());
+      System.out.printf(
+          "Retrying %d of %d batch entries in %f seconds.%n",
+          retryable.size(), toSend.size(), nextPause / 1000.0);
+      try {
+        Sleeper.DEFAULT.sleep(nextPause);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting to retry batch entries");
+      }
+      toSend = retryable;
+    }
+    return new ProductsCustomBatchResponse().setEntries(new ArrayList<>(results.values()));
+  }
+
+  /**
+   * Returns whether a failed entry is worth re-sending, which is the case only when every error
+   * reported for it is transient. The status code is only used when no reasons are reported, since
+   * a 429 or 5xx entry can still carry a permanent reason.
+   */
+  public static boolean isRetryable(Errors errors) {
+    if (errors.getErrors() == null || errors.getErrors().isEmpty()) {
+      return errors.getCode() != null && (errors.getCode() == 429 || errors.getCode() >= 500);
+    }
+    for (Error error : errors.getErrors()) {
+      if (!RETRYABLE_REASONS.contains(error.getReason())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hitQuota(Errors errors) {
+    if (errors.getCode() != null && errors.getCode() == 429) {
+      return true;
+    }
+    if (errors.getErrors() != null) {
+      for (Error error : errors.getErrors()) {
+        if (QUOTA_REASONS.contains(error.getReason())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String reasonOf(Errors errors) {
+    if (errors.getErrors() != null
+        && !errors.getErrors().isEmpty()
+        && errors.getErrors().get(0).getReason() != null) {
+      return errors.getErrors().get(0).getReason();
+    }
+    return "code " + errors.getCode();
+  }
+
+  private static void increment(ConcurrentMap<String, AtomicLong> counters, String reason) {
+    counters.computeIfAbsent(reason, k -> new AtomicLong()).incrementAndGet();
+  }
+
+  private static Map<String, Long> snapshot(ConcurrentMap<String, AtomicLong> counters) {
+    Map<String, Long> result = new TreeMap<>();
+    for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+      result.put(e.getKey(), e.getValue().get());
+    }
+    return result;
+  }
+
+  /** Returns the number of transient entry failures, keyed by error reason. */
+  public Map<String, Long> getTransientCounts() {
+    return snapshot(transientByReason);
+  }
+
+  /** Returns the number of permanent entry failures, keyed by error reason. */
+  public Map<String, Long> getPermanentCounts() {
+    return snapshot(permanentByReason);
+  }
+
+  /** Returns the number of entries sent again in follow-up requests. */
+  public long getEntriesResent() {
+    return entriesResent.get();
+  }
+
+  /**
+   * Returns the number of already successful or permanently failed entries that a whole-request
+   * retry would have sent again, but this class did not.
+   */
+  public long getEntriesNotResent() {
+    return entriesNotResent.get();
+  }
+
+  public void printStats() {
+    System.out.printf(
+        "Batch retries: %d entries re-sent, %d entries not re-sent.%n",
+        getEntriesResent(), getEntriesNotResent());
+    for (Map.Entry<String, Long> e : getTransientCounts().entrySet()) {
+      System.out.printf("- Transient [%s]: %d%n", e.getKey(), e.getValue());
+    }
+    for (Map.Entry<String, Long> e : getPermanentCounts().entrySet()) {
+      System.out.printf("- Permanent [%s]: %d%n", e.getKey(), e.getValue());
+    }
+  }
+}
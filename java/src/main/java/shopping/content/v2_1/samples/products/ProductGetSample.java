@@ -1,8 +1,11 @@
 package shopping.content.v2_1.samples.products;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.content.ShoppingContent;
 import com.google.api.services.content.model.Product;
 import java.io.IOException;
+import java.math.BigInteger;
+import shopping.common.Projection;
 import shopping.content.v2_1.samples.ContentSample;
 
 /**
@@ -10,20 +13,31 @@ import shopping.content.v2_1.samples.ContentSample;
  * ProductInsert sample.
  */
 public class ProductGetSample extends ContentSample {
+  private static final Projection<Product> ID_AND_TITLE =
+      Projection.of(Product.class).with(Product::getId).with(Product::getTitle);
+
   public ProductGetSample(String[] args) throws IOException {
     super(args);
   }
 
+  /** Gets a product, retrieving only the fields selected by the given projection. */
+  static Product getProduct(
+      BigInteger merchantId, String productId, ShoppingContent content, Projection<Product> fields)
+      throws IOException {
+    return fields.applyTo(content.products().get(merchantId, productId)).execute();
+  }
+
   @Override
   public void execute() throws IOException {
     checkNonMCA();
     try {
       // We create a product with ID online:en:GB:book123 in the ProductInsert sample
       Product product =
-          content
-              .products()
-              .get(this.config.getMerchantId(), ExampleProductFactory.sampleProductId())
-              .execute();
+          getProduct(
+              this.config.getMerchantId(),
+              ExampleProductFactory.sampleProductId(),
+              content,
+              ID_AND_TITLE);
       System.out.printf("%s %s\n", product.getId(), product.getTitle());
     } catch (GoogleJsonResponseException e) {
       if (e.getDetails().getCode() == 404) {
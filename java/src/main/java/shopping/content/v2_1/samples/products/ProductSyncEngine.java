@@ -0,0 +1,226 @@
+package shopping.content.v2_1.samples.products;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.content.model.Product;
+import com.google.api.services.content.model.ProductsCustomBatchRequestEntry;
+import com.google.api.services.content.model.ProductsCustomBatchResponseEntry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the products of a merchant in sync with a source catalog by uploading only what changed.
+ *
+ * <p>Each product in the catalog is hashed, and the hash is compared with the one recorded in a
+ * {@link ProductSyncIndex} when the product was last uploaded. Only new and changed products are
+ * inserted, and products in the index that are missing from the catalog are deleted, all through
+ * a {@link ProductBatchEngine}. The index is updated as each chunk completes, and only for the
+ * entries that succeeded, so failed entries are simply tried again by the next sync. If a chunk
+ * fails, the sync stops, but the updates for the chunks that completed are still committed.
+ *
+ * <p>The catalog is read once, lazily, and products are only held in memory while their chunk is
+ * in flight. To find the vanished products, the sync does keep the 64-bit hash of every product
+ * ID in the catalog, which takes about 16 bytes per product.
+ */
+public class ProductSyncEngine {
+  private final ProductBatchEngine batchEngine;
+  private final ProductSyncIndex index;
+  private final JsonFactory jsonFactory;
+  // Guards the index, which is read while reading the catalog and updated by the batch handler.
+  private final Object indexLock = new Object();
+
+  public ProductSyncEngine(
+      ProductBatchEngine batchEngine, ProductSyncIndex index, JsonFactory jsonFactory) {
+    this.batchEngine = batchEngine;
+    this.index = index;
+    this.jsonFactory = jsonFactory;
+  }
+
+  /** Returns the REST ID of a product, like {@code online:en:GB:book123}. */
+  public static String productIdOf(Product product) {
+    return product.getChannel()
+        + ":"
+        + product.getContentLanguage()
+        + ":"
+        + product.getTargetCountry()
+        + ":"
+        + product.getOfferId();
+  }
+
+  /** Returns a hash of the product's content, which changes whenever any of its fields does. */
+  public long contentHash(Product product) throws IOException {
+    return ProductSyncIndex.hash64(jsonFactory.toByteArray(product));
+  }
+
+  /**
+   * Uploads the changes between the catalog and the index, and records the successful ones in the
+   * index. If the catalog contains a product more than once, the last occurrence wins.
+   */
+  public Summary sync(final Iterator<Product> catalog) throws IOException {
+    final Summary summary = new Summary();
+    // The content hashes of the entries in flight, by batch ID. The batch engine numbers entries
+    // from 0 in iteration order, and a hash of 0 marks a delete.
+    final Map<Long, Long> pendingHashes = new ConcurrentHashMap<>();
+    final ProductSyncIndex.LongTable seen = new ProductSyncIndex.LongTable();
+
+    Iterator<ProductsCustomBatchRequestEntry> changes =
+        new Iterator<ProductsCustomBatchRequestEntry>() {
+          private ProductsCustomBatchRequestEntry next;
+          private Iterator<String> vanished;
+          private long nextBatchId = 0;
+
+          public boolean hasNext() {
+            try {
+              while (next == null) {
+                if (catalog.hasNext()) {
+                  Product product = catalog.next();
+                  long idHash = ProductSyncIndex.idHash(productIdOf(product));
+                  long hash = contentHash(product);
+                  seen.put(idHash, 1);
+                  summary.catalogSize++;
+                  if (indexedHash(idHash) == hash) {
+                    summary.unchanged++;
+                    continue;
+                  }
+                  next =
+                      new ProductsCustomBatchRequestEntry().setMethod("insert").setProduct(product);
+                  pendingHashes.put(nextBatchId++, hash);
+                } else if (vanished == null) {
+                  // The index can only be scanned for vanished products once the catalog is done.
+                  vanished = findVanished(seen);
+                } else if (vanished.hasNext()) {
+                  next =
+                      new ProductsCustomBatchRequestEntry()
+                          .setMethod("delete")
+                          .setProductId(vanished.next());
+                  pendingHashes.put(nextBatchId++, 0L);
+                } else {
+                  return false;
+                }
+              }
+              return true;
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+
+          public ProductsCustomBatchRequestEntry next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            ProductsCustomBatchRequestEntry entry = next;
+            next = null;
+            return entry;
+          }
+        };
+
+    try {
+      batchEngine.execute(
+          changes,
+          (request, response) -> {
+            long hash = pendingHashes.remove(request.getBatchId());
+            record(request, hash, response, summary);
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      synchronized (indexLock) {
+        index.commit();
+      }
+    }
+    return summary;
+  }
+
+  // Records the result of one entry in the index and the summary.
+  private void record(
+      ProductsCustomBatchRequestEntry request,
+      long hash,
+      ProductsCustomBatchResponseEntry result,
+      Summary summary)
+      throws IOException {
+    // A product that is already gone counts as deleted.
+    boolean deleted =
+        hash == 0
+            && result != null
+            && (result.getErrors() == null
+                || (result.getErrors().getCode() != null && result.getErrors().getCode() == 404));
+    if (result == null || (result.getErrors() != null && !deleted)) {
+      summary.failed++;
+      return;
+    }
+    synchronized (indexLock) {
+      if (hash == 0) {
+        index.remove(request.getProductId());
+        summary.deleted++;
+      } else {
+        index.put(productIdOf(request.getProduct()), hash);
+        summary.inserted++;
+      }
+    }
+  }
+
+  private long indexedHash(long idHash) {
+    synchronized (indexLock) {
+      return index.get(idHash);
+    }
+  }
+
+  private Iterator<String> findVanished(final ProductSyncIndex.LongTable seen) throws IOException {
+    final List<String> vanished = new ArrayList<>();
+    synchronized (indexLock) {
+      index.forEachLive(
+          (productId, idHash, contentHash) -> {
+            if (seen.get(idHash) == 0) {
+              vanished.add(productId);
+            }
+          });
+    }
+    return vanished.iterator();
+  }
+
+  /** Counts of what a sync did. */
+  public static class Summary {
+    private long catalogSize;
+    private long unchanged;
+    private long inserted;
+    private long deleted;
+    private long failed;
+
+    /** Returns the number of products read from the catalog. */
+    public long getCatalogSize() {
+      return catalogSize;
+    }
+
+    /** Returns the number of products that were skipped for being unchanged. */
+    public long getUnchanged() {
+      return unchanged;
+    }
+
+    /** Returns the number of new or changed products that were inserted. */
+    public long getInserted() {
+      return inserted;
+    }
+
+    /** Returns the number of products that were deleted for being missing from the catalog. */
+    public long getDeleted() {
+      return deleted;
+    }
+
+    /** Returns the number of inserts and deletes that failed, and will be retried next time. */
+    public long getFailed() {
+      return failed;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d products in catalog: %d unchanged, %d inserted, %d deleted, %d failed",
+          catalogSize, unchanged, inserted, deleted, failed);
+    }
+  }
+}
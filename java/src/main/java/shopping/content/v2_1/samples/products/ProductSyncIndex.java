@@ -0,0 +1,318 @@
+package shopping.content.v2_1.samples.products;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * On-disk index of the content hash last uploaded for each product ID, used by {@link
+ * ProductSyncEngine} to find the products that changed since the previous sync.
+ *
+ * <p>The index is an append-only log of (product ID, content hash) records, where a hash of 0
+ * records a deletion. Only a table of 64-bit ID hashes to content hashes is kept in memory, so
+ * that large catalogs fit in a few tens of megabytes; the product IDs themselves are read back from
+ * the log when needed, with {@link #forEachLive}. Updates are appended and synced to disk by
+ * {@link #commit}, and the log is rewritten without superseded records once they make up most of
+ * it. A record left incomplete by a crash is discarded when the index is next opened.
+ */
+public class ProductSyncIndex implements Closeable {
+  private static final int MAGIC = 0x50534958; // "PSIX"
+  private static final int HEADER_BYTES = 4;
+  // The log is compacted once it holds this many times more records than live products.
+  private static final int COMPACTION_FACTOR = 2;
+  private static final long MIN_RECORDS_TO_COMPACT = 10000;
+
+  /** Receives the live records of the index. */
+  public interface RecordHandler {
+    void handle(String productId, long idHash, long contentHash) throws IOException;
+  }
+
+  private final File file;
+  private final LongTable live = new LongTable();
+  private long records;
+  private DataOutputStream log;
+  private FileOutputStream logFile;
+
+  /** Opens the index in the given file, creating it if it doesn't exist. */
+  public ProductSyncIndex(File file) throws IOException {
+    this.file = file;
+    if (file.exists()) {
+      load();
+    } else {
+      try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+        out.writeInt(MAGIC);
+      }
+    }
+    openLog();
+  }
+
+  /** Returns the hash identifying a product ID in the index. */
+  public static long idHash(String productId) {
+    return hash64(productId.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Returns a 64-bit hash of the given bytes, which is never 0. */
+  public static long hash64(byte[] bytes) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+      long hash = 0;
+      for (int i = 0; i < 8; i++) {
+        hash = (hash << 8) | (digest[i] & 0xff);
+      }
+      return hash != 0 ? hash : 1;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is always available", e);
+    }
+  }
+
+  /** Returns the content hash last recorded for the product, or 0 if there is none. */
+  public long get(long idHash) {
+    return live.get(idHash);
+  }
+
+  /** Returns the number of products in the index. */
+  public int size() {
+    return live.size();
+  }
+
+  /** Records the content hash of an uploaded product. Call {@link #commit} to make it durable. */
+  public void put(String productId, long contentHash) throws IOException {
+    log.writeUTF(productId);
+    log.writeLong(contentHash);
+    live.put(idHash(productId), contentHash);
+    records++;
+  }
+
+  /** Records the deletion of a product. Call {@link #commit} to make it durable. */
+  public void remove(String productId) throws IOException {
+    log.writeUTF(productId);
+    log.writeLong(0);
+    live.remove(idHash(productId));
+    records++;
+  }
+
+  /** Writes all recorded changes to disk, and compacts the log if it has grown too large. */
+  public void commit() throws IOException {
+    log.flush();
+    logFile.getChannel().force(false);
+    if (records >= MIN_RECORDS_TO_COMPACT && records > (long) COMPACTION_FACTOR * live.size()) {
+      compact();
+    }
+  }
+
+  /** Passes each product in the index to the handler, in log order. */
+  public void forEachLive(RecordHandler handler) throws IOException {
+    log.flush();
+    // A product may have several records in the log; only report it for its current one.
+    LongTable reported = new LongTable();
+    try (DataInputStream in = openForReading(file)) {
+      long remaining = records;
+      while (remaining-- > 0) {
+        String productId = in.readUTF();
+        long contentHash = in.readLong();
+        long idHash = idHash(productId);
+        if (contentHash != 0 && live.get(idHash) == contentHash && reported.get(idHash) == 0) {
+          reported.put(idHash, 1);
+          handler.handle(productId, idHash, contentHash);
+        }
+      }
+    }
+  }
+
+  public void close() throws IOException {
+    log.close();
+  }
+
+  private void load() throws IOException {
+    long validBytes = HEADER_BYTES;
+    try (DataInputStream in = openForReading(file)) {
+      while (true) {
+        String productId;
+        long contentHash;
+        try {
+          productId = in.readUTF();
+          contentHash = in.readLong();
+        } catch (EOFException e) {
+          break;
+        }
+        if (contentHash == 0) {
+          live.remove(idHash(productId));
+        } else {
+          live.put(idHash(productId), contentHash);
+        }
+        records++;
+        validBytes += 2 + utfLength(productId) + 8;
+      }
+    }
+    // Drop a partial record at the end, so that new records are appended after a complete one.
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      if (raf.length() > validBytes) {
+        raf.setLength(validBytes);
+      }
+    }
+  }
+
+  // The length of a string as written by writeUTF, in modified UTF-8.
+  private static int utfLength(String s) {
+    int length = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+    }
+    return length;
+  }
+
+  private void compact() throws IOException {
+    File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+    final long[] written = {0};
+    FileOutputStream tmpFile = new FileOutputStream(tmp);
+    try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(tmpFile))) {
+      out.writeInt(MAGIC);
+      forEachLive(
+          (productId, idHash, contentHash) -> {
+            out.writeUTF(productId);
+            out.writeLong(contentHash);
+            written[0]++;
+          });
+      out.flush();
+      tmpFile.getChannel().force(false);
+    }
+    log.close();
+    try {
+      Files.move(
+          tmp.toPath(),
+          file.toPath(),
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    records = written[0];
+    openLog();
+  }
+
+  private void openLog() throws IOException {
+    logFile = new FileOutputStream(file, true);
+    log = new DataOutputStream(new BufferedOutputStream(logFile));
+  }
+
+  private static DataInputStream openForReading(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a product sync index: " + file);
+      }
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+    return in;
+  }
+
+  /**
+   * Open-addressing hash table from non-zero long keys to non-zero long values, using about 16
+   * bytes per entry at most half full, without boxing.
+   */
+  static class LongTable {
+    private long[] keys = new long[16];
+    private long[] values = new long[16];
+    private int size;
+    private int tombstones;
+    // Marks a removed entry, so that lookups continue probing past it.
+    private static final long TOMBSTONE = Long.MIN_VALUE;
+
+    long get(long key) {
+      key = normalize(key);
+      int mask = keys.length - 1;
+      for (int i = mix(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          return values[i];
+        }
+      }
+      return 0;
+    }
+
+    void put(long key, long value) {
+      key = normalize(key);
+      if ((size + tombstones + 1) * 2 > keys.length) {
+        // Grow if mostly full of live entries, otherwise just clear out the tombstones.
+        resize((size + 1) * 4 > keys.length ? keys.length * 2 : keys.length);
+      }
+      int mask = keys.length - 1;
+      int free = -1;
+      int i = mix(key) & mask;
+      for (; keys[i] != 0; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          values[i] = value;
+          return;
+        }
+        if (keys[i] == TOMBSTONE && free < 0) {
+          free = i;
+        }
+      }
+      if (free >= 0) {
+        i = free;
+        tombstones--;
+      }
+      keys[i] = key;
+      values[i] = value;
+      size++;
+    }
+
+    void remove(long key) {
+      key = normalize(key);
+      int mask = keys.length - 1;
+      for (int i = mix(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          keys[i] = TOMBSTONE;
+          values[i] = 0;
+          size--;
+          tombstones++;
+          return;
+        }
+      }
+    }
+
+    int size() {
+      return size;
+    }
+
+    private void resize(int capacity) {
+      long[] oldKeys = keys;
+      long[] oldValues = values;
+      keys = new long[capacity];
+      values = new long[capacity];
+      size = 0;
+      tombstones = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != 0 && oldKeys[i] != TOMBSTONE) {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+
+    // 0 marks empty slots and TOMBSTONE removed ones, so neither can be used as a key.
+    private static long normalize(long key) {
+      return key == 0 || key == TOMBSTONE ? 1 : key;
+    }
+
+    private static int mix(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+    }
+  }
+}
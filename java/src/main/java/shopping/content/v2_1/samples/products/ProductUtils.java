@@ -1,14 +1,28 @@
 package shopping.content.v2_1.samples.products;
 
+import com.google.api.services.content.model.Price;
 import com.google.api.services.content.model.Product;
 import com.google.api.services.content.model.ProductsCustomBatchRequest;
 import com.google.api.services.content.model.ProductsCustomBatchRequestEntry;
 import com.google.api.services.content.model.ProductsCustomBatchResponse;
 import com.google.api.services.content.model.ProductsCustomBatchResponseEntry;
+import shopping.common.Projection;
 import shopping.content.v2_1.samples.ContentUtils;
 
 /** Utility class for methods like printing Product objects. */
 public class ProductUtils {
+  /** The fields of a price that are printed. */
+  public static final Projection<Price> PRICE_FIELDS =
+      Projection.of(Price.class).with(Price::getValue).with(Price::getCurrency);
+
+  /** The fields of a product that {@link #printProduct} prints. */
+  public static final Projection<Product> PRINTED_FIELDS =
+      Projection.of(Product.class)
+          .with(Product::getId)
+          .with(Product::getTitle)
+          .with(Product::getPrice, PRICE_FIELDS)
+          .with(Product::getAvailability);
+
   public static void printProduct(Product product) {
     if (product.getTitle() != null) {
       System.out.printf("- [%s] %s%n", product.getId(), product.getTitle());
@@ -80,14 +94,18 @@ public class ProductUtils {
       return;
     }
     for (ProductsCustomBatchResponseEntry entry : response.getEntries()) {
-      if (entry.getErrors() != null) {
-        System.out.printf("Errors in batch entry %d:%n", entry.getBatchId());
-        ContentUtils.printErrors(entry.getErrors().getErrors());
-      } else {
-        System.out.printf("Successfully executed batch entry %d%n", entry.getBatchId());
-        if (entry.getProduct() != null) {
-          printProduct(entry.getProduct());
-        }
+      printProductBatchEntry(entry);
+    }
+  }
+
+  public static void printProductBatchEntry(ProductsCustomBatchResponseEntry entry) {
+    if (entry.getErrors() != null) {
+      System.out.printf("Errors in batch entry %d:%n", entry.getBatchId());
+      ContentUtils.printErrors(entry.getErrors().getErrors());
+    } else {
+      System.out.printf("Successfully executed batch entry %d%n", entry.getBatchId());
+      if (entry.getProduct() != null) {
+        printProduct(entry.getProduct());
       }
     }
   }
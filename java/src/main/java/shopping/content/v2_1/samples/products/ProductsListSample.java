@@ -3,14 +3,15 @@ package shopping.content.v2_1.samples.products;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.content.ShoppingContent;
 import com.google.api.services.content.model.Product;
-import com.google.api.services.content.model.ProductsListResponse;
 import java.io.IOException;
 import java.math.BigInteger;
+import shopping.common.PagedStream;
+import shopping.common.Projection;
 import shopping.content.v2_1.samples.ContentSample;
 
 /**
- * Sample that gets a list of all of the products for the merchant. If there is more than one page
- * of results, we fetch each page in turn.
+ * Sample that gets a list of all of the products for the merchant. Products are printed as they
+ * are parsed from the response, and the next page is fetched while the current one is printed.
  */
 public class ProductsListSample extends ContentSample {
   public ProductsListSample(String[] args) throws IOException {
@@ -19,23 +20,20 @@ public class ProductsListSample extends ContentSample {
 
   static void listProductsForMerchant(BigInteger merchantId, ShoppingContent content)
       throws IOException {
-    ShoppingContent.Products.List productsList = content.products().list(merchantId);
-
-    ProductsListResponse page = null;
+    listProductsForMerchant(merchantId, content, ProductUtils.PRINTED_FIELDS);
+  }
 
-    do {
-      if (page != null) {
-        productsList.setPageToken(page.getNextPageToken());
-      }
-      page = productsList.execute();
-      if (page.getResources() == null) {
+  /** Lists the products, retrieving only the fields selected by the given projection. */
+  static void listProductsForMerchant(
+      BigInteger merchantId, ShoppingContent content, Projection<Product> fields)
+      throws IOException {
+    try (PagedStream<Product> products =
+        PagedStream.streaming(
+            fields.applyToList(content.products().list(merchantId)), "resources", Product.class)) {
+      if (products.forEachItem(ProductUtils::printProduct) == 0) {
         System.out.println("No products found.");
-        return;
-      }
-      for (Product product : page.getResources()) {
-        ProductUtils.printProduct(product);
       }
-    } while (page.getNextPageToken() != null);
+    }
   }
 
   @Override
@@ -0,0 +1,42 @@
+package shopping.content.v2_1.samples.products;
+
+import com.google.api.services.content.model.ProductsCustomBatchResponseEntry;
+import java.io.IOException;
+import shopping.common.StreamingBatchContent;
+import shopping.content.v2_1.samples.ContentSample;
+
+/**
+ * Sample that shows streaming a batch of product inserts with {@link StreamingBatchContent}. Unlike
+ * {@link ProductsBatchInsertSample}, the batch entries are created and serialized one at a time
+ * while the request is sent, instead of building the whole batch in memory first, and the results
+ * are printed entry by entry as the response is parsed.
+ */
+public class ProductsStreamingBatchInsertSample extends ContentSample {
+  private static final int BATCH_SIZE = 10;
+
+  public ProductsStreamingBatchInsertSample(String[] args) throws IOException {
+    super(args);
+  }
+
+  @Override
+  public void execute() throws IOException {
+    checkNonMCA();
+
+    long results =
+        StreamingBatchContent.execute(
+            content,
+            "products/batch",
+            new StreamingBatchContent(
+                content.getJsonFactory(),
+                () -> ExampleProductFactory.createBatchEntries(config, "book", BATCH_SIZE)),
+            ProductsCustomBatchResponseEntry.class,
+            ProductUtils::printProductBatchEntry);
+    if (results == 0) {
+      System.out.println("There were no results from the batch request.");
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    new ProductsStreamingBatchInsertSample(args).execute();
+  }
+}
@@ -0,0 +1,69 @@
+package shopping.content.v2_1.samples.products;
+
+import com.google.api.services.content.model.Price;
+import com.google.api.services.content.model.Product;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import shopping.content.v2_1.samples.ContentSample;
+
+/**
+ * Sample that keeps a small catalog in sync with {@link ProductSyncEngine}.
+ *
+ * <p>The first sync uploads every product that isn't in the local index yet. The catalog is then
+ * changed, by repricing a few products and dropping a few others, and synced again; only those
+ * changes are sent. The index is kept in the configuration directory, so when the sample is run
+ * again, its first sync only sends what its previous run changed.
+ */
+public class ProductsSyncSample extends ContentSample {
+  private static final String INDEX_FILE = "product-sync.index";
+  private static final int CATALOG_SIZE = 20;
+  private static final int REPRICED = 3;
+  private static final int DROPPED = 2;
+
+  public ProductsSyncSample(String[] args) throws IOException {
+    super(args);
+  }
+
+  @Override
+  public void execute() throws IOException {
+    checkNonMCA();
+
+    File indexDir = config.getPath() != null ? config.getPath() : new File(".");
+    File indexFile = new File(indexDir, INDEX_FILE);
+    try (ProductSyncIndex index = new ProductSyncIndex(indexFile);
+        ProductBatchEngine batchEngine =
+            new ProductBatchEngine(content, config.getMerchantId())) {
+      ProductSyncEngine syncEngine =
+          new ProductSyncEngine(batchEngine, index, content.getJsonFactory());
+      System.out.printf("Using sync index %s with %d products.%n", indexFile, index.size());
+
+      System.out.println("Syncing the catalog:");
+      System.out.printf("- %s%n", syncEngine.sync(catalog(0, 0)));
+
+      System.out.printf(
+          "Syncing the catalog after repricing %d products and dropping %d:%n", REPRICED, DROPPED);
+      System.out.printf("- %s%n", syncEngine.sync(catalog(REPRICED, DROPPED)));
+    }
+  }
+
+  private Iterator<Product> catalog(int repriced, int dropped) {
+    List<Product> products = new ArrayList<>();
+    Iterator<Product> base =
+        ExampleProductFactory.createMany(config, "sync", CATALOG_SIZE - dropped);
+    for (int i = 0; base.hasNext(); i++) {
+      Product product = base.next();
+      if (i < repriced) {
+        product.setPrice(new Price().setValue("1.99").setCurrency("GBP"));
+      }
+      products.add(product);
+    }
+    return products.iterator();
+  }
+
+  public static void main(String[] args) throws IOException {
+    new ProductsSyncSample(args).execute();
+  }
+}
@@ -94,8 +94,9 @@ public class ProductsWorkflow extends ContentWorkflowSample {
     ProductsCustomBatchRequest insertRequest =
         ExampleProductFactory.createBatch(config, baseName + "_");
     ProductUtils.printProductBatchRequest(insertRequest);
-    ProductsCustomBatchResponse batchResponse =
-        content.products().custombatch(insertRequest).execute();
+    // Only entries that fail with transient errors are re-sent, not the whole batch.
+    ProductBatchRetrier retrier = new ProductBatchRetrier(content);
+    ProductsCustomBatchResponse batchResponse = retrier.execute(insertRequest);
     ProductUtils.printProductBatchResults(batchResponse);
 
     System.out.println("Listing current products:");
@@ -106,9 +107,9 @@ public class ProductsWorkflow extends ContentWorkflowSample {
     System.out.printf("Product %s deleted.%n", newBook.getId());
     ProductsCustomBatchRequest deleteRequest = deleteBatch(batchResponse);
     ProductUtils.printProductBatchRequest(deleteRequest);
-    ProductsCustomBatchResponse batchDeleteResponse =
-        content.products().custombatch(deleteRequest).execute();
+    ProductsCustomBatchResponse batchDeleteResponse = retrier.execute(deleteRequest);
     ProductUtils.printProductBatchResults(batchDeleteResponse);
+    retrier.printStats();
 
     System.out.println("Listing current products:");
     ProductsListSample.listProductsForMerchant(config.getMerchantId(), content);
@@ -0,0 +1,308 @@
+package shopping.content.v2_1.samples.productstatuses;
+
+import com.google.api.services.content.model.ProductStatusItemLevelIssue;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact index of the item-level issues of a merchant's products.
+ *
+ * <p>Each distinct issue (code, destination, attribute and servability) is stored once and given
+ * a number, and each product with issues is stored as its ID and the numbers of its issues, so
+ * millions of product statuses can be indexed without keeping their JSON objects. Issues can be
+ * counted by code, destination or attribute, and the index can be saved to a snapshot file and
+ * compared with the snapshot of an earlier crawl to find new and resolved issues.
+ */
+public class ProductIssueIndex {
+  private static final int SNAPSHOT_MAGIC = 0x50495358; // "PISX"
+  private static final int[] NO_ISSUES = new int[0];
+
+  /** Receives the differences between two indexes. */
+  public interface DiffHandler {
+    void onNewIssue(String productId, Issue issue) throws IOException;
+
+    void onResolvedIssue(String productId, Issue issue) throws IOException;
+  }
+
+  private final Map<Issue, Integer> issueNumbers = new HashMap<>();
+  private final List<Issue> issues = new ArrayList<>();
+  private final List<Long> productCounts = new ArrayList<>();
+  private final Map<String, int[]> productIssues = new HashMap<>();
+  private long productsIndexed;
+
+  /** Adds a product and its issues, which may be null. */
+  public void add(String productId, List<ProductStatusItemLevelIssue> itemLevelIssues) {
+    productsIndexed++;
+    if (itemLevelIssues == null || itemLevelIssues.isEmpty()) {
+      return;
+    }
+    int[] numbers = new int[itemLevelIssues.size()];
+    int count = 0;
+    for (ProductStatusItemLevelIssue itemLevelIssue : itemLevelIssues) {
+      int number = numberOf(new Issue(itemLevelIssue));
+      // The same issue may be reported more than once, for example for several countries.
+      if (!contains(numbers, count, number)) {
+        numbers[count++] = number;
+        productCounts.set(number, productCounts.get(number) + 1);
+      }
+    }
+    productIssues.put(productId, Arrays.copyOf(numbers, count));
+  }
+
+  /** Returns the number of products indexed, including those without issues. */
+  public long getProductsIndexed() {
+    return productsIndexed;
+  }
+
+  /** Returns the number of products with at least one issue. */
+  public int getProductsWithIssues() {
+    return productIssues.size();
+  }
+
+  /** Returns the number of products with each issue, sorted by issue. */
+  public Map<Issue, Long> countByIssue() {
+    return countBy(Function.identity());
+  }
+
+  public Map<String, Long> countByCode() {
+    return countBy(Issue::getCode);
+  }
+
+  public Map<String, Long> countByDestination() {
+    return countBy(Issue::getDestination);
+  }
+
+  public Map<String, Long> countByAttribute() {
+    return countBy(Issue::getAttribute);
+  }
+
+  /** Returns the IDs of the products that have the given issue. */
+  public List<String> productsWith(Issue issue) {
+    List<String> productIds = new ArrayList<>();
+    Integer number = issueNumbers.get(issue);
+    if (number == null) {
+      return productIds;
+    }
+    for (Map.Entry<String, int[]> e : productIssues.entrySet()) {
+      if (contains(e.getValue(), e.getValue().length, number)) {
+        productIds.add(e.getKey());
+      }
+    }
+    return productIds;
+  }
+
+  /**
+   * Passes each issue that is in this index but not in the previous one to {@code onNewIssue}, and
+   * each issue that is only in the previous one to {@code onResolvedIssue}. Issues of products
+   * that are no longer indexed count as resolved.
+   */
+  public void diff(ProductIssueIndex previous, DiffHandler handler) throws IOException {
+    for (Map.Entry<String, int[]> e : productIssues.entrySet()) {
+      Set<Issue> before = previous.issuesOf(e.getKey());
+      for (int number : e.getValue()) {
+        Issue issue = issues.get(number);
+        if (!before.remove(issue)) {
+          handler.onNewIssue(e.getKey(), issue);
+        }
+      }
+      for (Issue issue : before) {
+        handler.onResolvedIssue(e.getKey(), issue);
+      }
+    }
+    for (Map.Entry<String, int[]> e : previous.productIssues.entrySet()) {
+      if (!productIssues.containsKey(e.getKey())) {
+        for (int number : e.getValue()) {
+          handler.onResolvedIssue(e.getKey(), previous.issues.get(number));
+        }
+      }
+    }
+  }
+
+  /** Writes the index to a gzipped snapshot file, replacing it atomically. */
+  public void writeSnapshot(File file) throws IOException {
+    File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeLong(productsIndexed);
+      out.writeInt(issues.size());
+      for (Issue issue : issues) {
+        out.writeUTF(issue.code);
+        out.writeUTF(issue.destination);
+        out.writeUTF(issue.attribute);
+        out.writeUTF(issue.servability);
+      }
+      out.writeInt(productIssues.size());
+      for (Map.Entry<String, int[]> e : productIssues.entrySet()) {
+        out.writeUTF(e.getKey());
+        out.writeShort(e.getValue().length);
+        for (int number : e.getValue()) {
+          out.writeInt(number);
+        }
+      }
+    }
+    try {
+      Files.move(
+          tmp.toPath(),
+          file.toPath(),
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** Reads an index from a snapshot file written by {@link #writeSnapshot}. */
+  public static ProductIssueIndex readSnapshot(File file) throws IOException {
+    ProductIssueIndex index = new ProductIssueIndex();
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a product issue snapshot: " + file);
+      }
+      index.productsIndexed = in.readLong();
+      int issueCount = in.readInt();
+      for (int i = 0; i < issueCount; i++) {
+        index.numberOf(new Issue(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()));
+      }
+      int productCount = in.readInt();
+      for (int i = 0; i < productCount; i++) {
+        String productId = in.readUTF();
+        int[] numbers = new int[in.readUnsignedShort()];
+        for (int j = 0; j < numbers.length; j++) {
+          numbers[j] = in.readInt();
+          index.productCounts.set(numbers[j], index.productCounts.get(numbers[j]) + 1);
+        }
+        index.productIssues.put(productId, numbers);
+      }
+    }
+    return index;
+  }
+
+  private int numberOf(Issue issue) {
+    Integer number = issueNumbers.get(issue);
+    if (number == null) {
+      number = issues.size();
+      issueNumbers.put(issue, number);
+      issues.add(issue);
+      productCounts.add(0L);
+    }
+    return number;
+  }
+
+  private Set<Issue> issuesOf(String productId) {
+    Set<Issue> result = new HashSet<>();
+    for (int number : productIssues.getOrDefault(productId, NO_ISSUES)) {
+      result.add(issues.get(number));
+    }
+    return result;
+  }
+
+  private <K extends Comparable<K>> Map<K, Long> countBy(Function<Issue, K> key) {
+    Map<K, Long> counts = new TreeMap<>();
+    for (int i = 0; i < issues.size(); i++) {
+      counts.merge(key.apply(issues.get(i)), productCounts.get(i), Long::sum);
+    }
+    return counts;
+  }
+
+  private static boolean contains(int[] numbers, int length, int number) {
+    for (int i = 0; i < length; i++) {
+      if (numbers[i] == number) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** An item-level issue, without the texts that only explain it. */
+  public static class Issue implements Comparable<Issue> {
+    private final String code;
+    private final String destination;
+    private final String attribute;
+    private final String servability;
+
+    Issue(ProductStatusItemLevelIssue issue) {
+      this(
+          issue.getCode(),
+          issue.getDestination(),
+          issue.getAttributeName(),
+          issue.getServability());
+    }
+
+    // Missing values are stored as empty strings, so they can be written to snapshots.
+    Issue(String code, String destination, String attribute, String servability) {
+      this.code = Objects.toString(code, "");
+      this.destination = Objects.toString(destination, "");
+      this.attribute = Objects.toString(attribute, "");
+      this.servability = Objects.toString(servability, "");
+    }
+
+    public String getCode() {
+      return code;
+    }
+
+    public String getDestination() {
+      return destination;
+    }
+
+    public String getAttribute() {
+      return attribute;
+    }
+
+    public String getServability() {
+      return servability;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Issue)) {
+        return false;
+      }
+      Issue other = (Issue) o;
+      return code.equals(other.code)
+          && destination.equals(other.destination)
+          && attribute.equals(other.attribute)
+          && servability.equals(other.servability);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(code, destination, attribute, servability);
+    }
+
+    public int compareTo(Issue other) {
+      return toString().compareTo(other.toString());
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%s (%s%s, %s)",
+          code, destination, attribute.isEmpty() ? "" : ", attribute " + attribute, servability);
+    }
+  }
+}
@@ -1,8 +1,11 @@
 package shopping.content.v2_1.samples.productstatuses;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.content.ShoppingContent;
 import com.google.api.services.content.model.ProductStatus;
 import java.io.IOException;
+import java.math.BigInteger;
+import shopping.common.Projection;
 import shopping.content.v2_1.samples.ContentSample;
 import shopping.content.v2_1.samples.products.ExampleProductFactory;
 
@@ -15,14 +18,25 @@ public class ProductstatusGetSample extends ContentSample {
     super(args);
   }
 
+  /** Gets a product status, retrieving only the fields selected by the given projection. */
+  static ProductStatus getProductStatus(
+      BigInteger merchantId,
+      String productId,
+      ShoppingContent content,
+      Projection<ProductStatus> fields)
+      throws IOException {
+    return fields.applyTo(content.productstatuses().get(merchantId, productId)).execute();
+  }
+
   @Override
   public void execute() throws IOException {
     try {
       ProductStatus productStatus =
-          content
-              .productstatuses()
-              .get(this.config.getMerchantId(), ExampleProductFactory.sampleProductId())
-              .execute();
+          getProductStatus(
+              this.config.getMerchantId(),
+              ExampleProductFactory.sampleProductId(),
+              content,
+              ProductstatusUtils.PRINTED_FIELDS);
       ProductstatusUtils.printProductStatus(productStatus);
     } catch (GoogleJsonResponseException e) {
       if (e.getDetails().getCode() == 404) {
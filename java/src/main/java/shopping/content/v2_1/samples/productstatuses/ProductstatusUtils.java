@@ -4,9 +4,30 @@ import com.google.api.services.content.model.ProductStatus;
 import com.google.api.services.content.model.ProductStatusDestinationStatus;
 import com.google.api.services.content.model.ProductStatusItemLevelIssue;
 import java.util.List;
+import shopping.common.Projection;
 
 /** Utility class for methods like printing ProductStatus objects. */
 public class ProductstatusUtils {
+  /** The fields of a product status that {@link #printProductStatus} prints. */
+  public static final Projection<ProductStatus> PRINTED_FIELDS =
+      Projection.of(ProductStatus.class)
+          .with(ProductStatus::getProductId)
+          .with(ProductStatus::getTitle)
+          .with(
+              ProductStatus::getDestinationStatuses,
+              Projection.of(ProductStatusDestinationStatus.class)
+                  .with(ProductStatusDestinationStatus::getDestination)
+                  .with(ProductStatusDestinationStatus::getStatus))
+          .with(
+              ProductStatus::getItemLevelIssues,
+              Projection.of(ProductStatusItemLevelIssue.class)
+                  .with(ProductStatusItemLevelIssue::getCode)
+                  .with(ProductStatusItemLevelIssue::getDescription)
+                  .with(ProductStatusItemLevelIssue::getDetail)
+                  .with(ProductStatusItemLevelIssue::getDocumentation)
+                  .with(ProductStatusItemLevelIssue::getResolution)
+                  .with(ProductStatusItemLevelIssue::getServability));
+
   public static void printProductStatus(ProductStatus productStatus) {
     System.out.printf("- \"%s\" (%s)%n", productStatus.getTitle(), productStatus.getProductId());
 
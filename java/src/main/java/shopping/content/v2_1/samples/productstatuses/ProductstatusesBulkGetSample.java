@@ -0,0 +1,59 @@
+package shopping.content.v2_1.samples.productstatuses;
+
+import com.google.api.services.content.model.ProductstatusesCustomBatchResponseEntry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import shopping.content.v2_1.samples.ContentSample;
+import shopping.content.v2_1.samples.ContentUtils;
+import shopping.content.v2_1.samples.products.ExampleProductFactory;
+
+/**
+ * Sample that checks the statuses of the products inserted by the ProductsBatchInsert sample with
+ * {@link ProductstatusesBulkGetter}, which gets them in a few custombatch requests instead of one
+ * request per product.
+ */
+public class ProductstatusesBulkGetSample extends ContentSample {
+  // Matches the products inserted by ProductsBatchInsertSample.
+  private static final String OFFER_ID_PREFIX = "book";
+  private static final int PRODUCT_COUNT = 10;
+
+  public ProductstatusesBulkGetSample(String[] args) throws IOException {
+    super(args);
+  }
+
+  @Override
+  public void execute() throws IOException {
+    checkNonMCA();
+
+    List<String> productIds = new ArrayList<>(PRODUCT_COUNT);
+    for (int i = 0; i < PRODUCT_COUNT; i++) {
+      productIds.add(ExampleProductFactory.sampleProductId(OFFER_ID_PREFIX + i));
+    }
+    Map<String, ProductstatusesCustomBatchResponseEntry> results;
+    try (ProductstatusesBulkGetter getter =
+        new ProductstatusesBulkGetter(content, config.getMerchantId())
+            .setFields(ProductstatusUtils.PRINTED_FIELDS)) {
+      results = getter.getAll(productIds.iterator());
+      System.out.printf(
+          "Got %d product statuses in %d requests:%n",
+          getter.getEntriesSent(), getter.getBatchesSent());
+    }
+    for (String productId : productIds) {
+      ProductstatusesCustomBatchResponseEntry entry = results.get(productId);
+      if (entry == null) {
+        System.out.printf("- No result for %s%n", productId);
+      } else if (entry.getErrors() != null) {
+        System.out.printf("Errors for %s:%n", productId);
+        ContentUtils.printErrors(entry.getErrors().getErrors());
+      } else {
+        ProductstatusUtils.printProductStatus(entry.getProductStatus());
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    new ProductstatusesBulkGetSample(args).execute();
+  }
+}
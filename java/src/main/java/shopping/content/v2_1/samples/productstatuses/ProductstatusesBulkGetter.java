@@ -0,0 +1,128 @@
+package shopping.content.v2_1.samples.productstatuses;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.ProductStatus;
+import com.google.api.services.content.model.ProductstatusesCustomBatchRequest;
+import com.google.api.services.content.model.ProductstatusesCustomBatchRequestEntry;
+import com.google.api.services.content.model.ProductstatusesCustomBatchResponse;
+import com.google.api.services.content.model.ProductstatusesCustomBatchResponseEntry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import shopping.common.CustomBatchGetter;
+import shopping.common.Projection;
+
+/**
+ * Gets the statuses of many products through {@code productstatuses.custombatch}.
+ *
+ * <p>Product IDs are grouped into custombatch requests by a {@link CustomBatchGetter}, with up to a
+ * fixed number of entries per request and of requests in flight at once. Reading from the source
+ * iterator blocks while all slots are busy, so the IDs can come from a stream of any length.
+ *
+ * <p>Each entry either holds a status or the errors for that product (for example, a 404 if the
+ * product doesn't exist yet). The first request that fails as a whole stops the run, and its
+ * failure is thrown as an IOException.
+ */
+public class ProductstatusesBulkGetter implements Closeable {
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+  /** Receives the result for each product, which is null if the response had no entry for it. */
+  public interface EntryHandler
+      extends CustomBatchGetter.EntryHandler<String, ProductstatusesCustomBatchResponseEntry> {}
+
+  private final ShoppingContent content;
+  private final BigInteger merchantId;
+  private final CustomBatchGetter<
+          String,
+          ProductstatusesCustomBatchRequestEntry,
+          ProductstatusesCustomBatchResponseEntry,
+          ProductstatusesCustomBatchResponse>
+      getter;
+  private List<String> destinations;
+  private String fields;
+
+  public ProductstatusesBulkGetter(ShoppingContent content, BigInteger merchantId) {
+    this(content, merchantId, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  public ProductstatusesBulkGetter(
+      ShoppingContent content, BigInteger merchantId, int maxEntries, int maxInFlight) {
+    this.content = content;
+    this.merchantId = merchantId;
+    this.getter =
+        new CustomBatchGetter<>(
+            maxEntries,
+            maxInFlight,
+            this::entryFor,
+            this::send,
+            ProductstatusesCustomBatchResponse::getEntries,
+            ProductstatusesCustomBatchResponseEntry::getBatchId);
+  }
+
+  /** Restricts the returned statuses to the given destinations, like {@code Shopping}. */
+  public ProductstatusesBulkGetter setDestinations(List<String> destinations) {
+    this.destinations = destinations;
+    return this;
+  }
+
+  /** Restricts the returned statuses to the fields selected by the given projection. */
+  public ProductstatusesBulkGetter setFields(Projection<ProductStatus> projection) {
+    this.fields = projection == null ? null : projection.forBatch("productStatus");
+    return this;
+  }
+
+  /**
+   * Gets the statuses of all the given products, returning the result entries by product ID.
+   * Products that the responses had no entry for are mapped to null.
+   */
+  public Map<String, ProductstatusesCustomBatchResponseEntry> getAll(Iterator<String> productIds)
+      throws IOException {
+    return getter.getAll(productIds);
+  }
+
+  /**
+   * Gets the statuses of all the given products, passing each result to the handler as soon as
+   * its request completes. The handler is never called concurrently, but may be called from other
+   * threads than the caller's.
+   */
+  public void forEach(Iterator<String> productIds, EntryHandler handler) throws IOException {
+    getter.forEach(productIds, handler);
+  }
+
+  private ProductstatusesCustomBatchRequestEntry entryFor(String productId, long batchId) {
+    return new ProductstatusesCustomBatchRequestEntry()
+        .setBatchId(batchId)
+        .setMerchantId(merchantId)
+        .setMethod("get")
+        .setProductId(productId)
+        .setDestinations(destinations);
+  }
+
+  private ProductstatusesCustomBatchResponse send(
+      List<ProductstatusesCustomBatchRequestEntry> entries) throws IOException {
+    ShoppingContent.Productstatuses.Custombatch request =
+        content
+            .productstatuses()
+            .custombatch(new ProductstatusesCustomBatchRequest().setEntries(entries));
+    if (fields != null) {
+      request.setFields(fields);
+    }
+    return request.execute();
+  }
+
+  public long getEntriesSent() {
+    return getter.getEntriesSent();
+  }
+
+  public long getBatchesSent() {
+    return getter.getBatchesSent();
+  }
+
+  public void close() {
+    getter.close();
+  }
+}
@@ -0,0 +1,99 @@
+package shopping.content.v2_1.samples.productstatuses;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import shopping.content.v2_1.samples.ContentSample;
+
+/**
+ * Sample that crawls the status of every product of the merchant, and reports how many products
+ * have each issue. The issues are saved to a snapshot in the configuration directory, and on later
+ * runs only the issues that appeared or were resolved since the previous run are listed.
+ */
+public class ProductstatusesCrawlSample extends ContentSample {
+  private static final String SNAPSHOT_FILE = "productstatuses.snapshot";
+  // Number of new and resolved issues listed individually; the rest are only counted.
+  private static final int MAX_CHANGES_LISTED = 50;
+
+  public ProductstatusesCrawlSample(String[] args) throws IOException {
+    super(args);
+  }
+
+  @Override
+  public void execute() throws IOException {
+    checkNonMCA();
+    File snapshotDir = config.getPath() != null ? config.getPath() : new File(".");
+    File snapshot = new File(snapshotDir, SNAPSHOT_FILE);
+
+    ProductIssueIndex index;
+    try {
+      index = new ProductstatusesCrawler(content).crawl(config.getMerchantId());
+    } catch (GoogleJsonResponseException e) {
+      checkGoogleJsonResponseException(e);
+      return;
+    }
+    System.out.printf(
+        "Crawled %d products, %d of them with issues.%n",
+        index.getProductsIndexed(), index.getProductsWithIssues());
+    printCounts("Products by issue:", index.countByIssue());
+    printCounts("Products by destination:", index.countByDestination());
+    printCounts("Products by attribute:", index.countByAttribute());
+
+    if (snapshot.exists()) {
+      printChanges(index, ProductIssueIndex.readSnapshot(snapshot));
+    } else {
+      System.out.println("No previous snapshot, so all issues are new.");
+    }
+    index.writeSnapshot(snapshot);
+    System.out.printf("Saved snapshot to %s.%n", snapshot);
+  }
+
+  private static void printChanges(ProductIssueIndex index, ProductIssueIndex previous)
+      throws IOException {
+    final Map<String, Long> newByCode = new TreeMap<>();
+    final Map<String, Long> resolvedByCode = new TreeMap<>();
+    final int[] listed = {0};
+    System.out.println("Changes since the previous snapshot:");
+    index.diff(
+        previous,
+        new ProductIssueIndex.DiffHandler() {
+          public void onNewIssue(String productId, ProductIssueIndex.Issue issue) {
+            newByCode.merge(issue.getCode(), 1L, Long::sum);
+            if (listed[0]++ < MAX_CHANGES_LISTED) {
+              System.out.printf("- New: %s: %s%n", productId, issue);
+            }
+          }
+
+          public void onResolvedIssue(String productId, ProductIssueIndex.Issue issue) {
+            resolvedByCode.merge(issue.getCode(), 1L, Long::sum);
+            if (listed[0]++ < MAX_CHANGES_LISTED) {
+              System.out.printf("- Resolved: %s: %s%n", productId, issue);
+            }
+          }
+        });
+    if (listed[0] == 0) {
+      System.out.println("- None.");
+    } else if (listed[0] > MAX_CHANGES_LISTED) {
+      System.out.printf("- ... and %d more.%n", listed[0] - MAX_CHANGES_LISTED);
+    }
+    printCounts("New issues by code:", newByCode);
+    printCounts("Resolved issues by code:", resolvedByCode);
+  }
+
+  private static void printCounts(String title, Map<?, Long> counts) {
+    if (counts.isEmpty()) {
+      return;
+    }
+    System.out.println(title);
+    for (Map.Entry<?, Long> e : counts.entrySet()) {
+      System.out.printf(
+          "- %s: %d%n", "".equals(e.getKey()) ? "(none)" : e.getKey(), e.getValue());
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    new ProductstatusesCrawlSample(args).execute();
+  }
+}
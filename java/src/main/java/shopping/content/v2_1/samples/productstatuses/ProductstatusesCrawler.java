@@ -0,0 +1,60 @@
+package shopping.content.v2_1.samples.productstatuses;
+
+import com.google.api.services.content.ShoppingContent;
+import com.google.api.services.content.model.ProductStatus;
+import com.google.api.services.content.model.ProductStatusItemLevelIssue;
+import java.io.IOException;
+import java.math.BigInteger;
+import shopping.common.PagedStream;
+import shopping.common.Projection;
+
+/**
+ * Lists all product statuses of a merchant into a {@link ProductIssueIndex}.
+ *
+ * <p>Only the product IDs and the identifying fields of item-level issues are requested, the
+ * statuses are parsed one at a time as they arrive, and the next page is fetched while the current
+ * one is being indexed, so crawling millions of statuses needs little more memory than the index.
+ */
+public class ProductstatusesCrawler {
+  /** The largest page size that productstatuses.list allows. */
+  public static final long MAX_PAGE_SIZE = 250;
+
+  static final Projection<ProductStatus> INDEXED_FIELDS =
+      Projection.of(ProductStatus.class)
+          .with(ProductStatus::getProductId)
+          .with(
+              ProductStatus::getItemLevelIssues,
+              Projection.of(ProductStatusItemLevelIssue.class)
+                  .with(ProductStatusItemLevelIssue::getCode)
+                  .with(ProductStatusItemLevelIssue::getDestination)
+                  .with(ProductStatusItemLevelIssue::getAttributeName)
+                  .with(ProductStatusItemLevelIssue::getServability));
+
+  private final ShoppingContent content;
+  private final int prefetchDepth;
+
+  public ProductstatusesCrawler(ShoppingContent content) {
+    this(content, PagedStream.DEFAULT_PREFETCH_DEPTH);
+  }
+
+  public ProductstatusesCrawler(ShoppingContent content, int prefetchDepth) {
+    this.content = content;
+    this.prefetchDepth = prefetchDepth;
+  }
+
+  /** Crawls the statuses of all products of the given merchant. */
+  public ProductIssueIndex crawl(BigInteger merchantId) throws IOException {
+    final ProductIssueIndex index = new ProductIssueIndex();
+    try (PagedStream<ProductStatus> statuses =
+        PagedStream.streaming(
+            INDEXED_FIELDS.applyToList(
+                content.productstatuses().list(merchantId).setMaxResults(MAX_PAGE_SIZE)),
+            "resources",
+            ProductStatus.class,
+            prefetchDepth)) {
+      statuses.forEachItem(
+          status -> index.add(status.getProductId(), status.getItemLevelIssues()));
+    }
+    return index;
+  }
+}
@@ -3,14 +3,15 @@ package shopping.content.v2_1.samples.productstatuses;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.content.ShoppingContent;
 import com.google.api.services.content.model.ProductStatus;
-import com.google.api.services.content.model.ProductstatusesListResponse;
 import java.io.IOException;
 import java.math.BigInteger;
+import shopping.common.PagedStream;
+import shopping.common.Projection;
 import shopping.content.v2_1.samples.ContentSample;
 
 /**
- * Sample that gets the status of each of the products for the merchant. If there is more than one
- * page of results, we fetch each page in turn.
+ * Sample that gets the status of each of the products for the merchant. Statuses are printed as
+ * they are parsed from the response, and the next page is fetched while the current one is printed.
  */
 public class ProductstatusesListSample extends ContentSample {
   public ProductstatusesListSample(String[] args) throws IOException {
@@ -19,24 +20,22 @@ public class ProductstatusesListSample extends ContentSample {
 
   static void listProductStatusesForMerchant(BigInteger merchantId, ShoppingContent content)
       throws IOException {
-    ShoppingContent.Productstatuses.List productStatusesList =
-        content.productstatuses().list(merchantId);
-
-    ProductstatusesListResponse page = null;
+    listProductStatusesForMerchant(merchantId, content, ProductstatusUtils.PRINTED_FIELDS);
+  }
 
-    do {
-      if (page != null) {
-        productStatusesList.setPageToken(page.getNextPageToken());
-      }
-      page = productStatusesList.execute();
-      if (page.getResources() == null) {
+  /** Lists the product statuses, retrieving only the fields selected by the given projection. */
+  static void listProductStatusesForMerchant(
+      BigInteger merchantId, ShoppingContent content, Projection<ProductStatus> fields)
+      throws IOException {
+    try (PagedStream<ProductStatus> productStatuses =
+        PagedStream.streaming(
+            fields.applyToList(content.productstatuses().list(merchantId)),
+            "resources",
+            ProductStatus.class)) {
+      if (productStatuses.forEachItem(ProductstatusUtils::printProductStatus) == 0) {
         System.out.println("No products found.");
-        return;
-      }
-      for (ProductStatus productStatus : page.getResources()) {
-        ProductstatusUtils.printProductStatus(productStatus);
       }
-    } while (page.getNextPageToken() != null);
+    }
   }
 
   @Override
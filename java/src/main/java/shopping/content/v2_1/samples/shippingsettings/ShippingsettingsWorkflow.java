@@ -10,6 +10,7 @@ import java.io.File;
 import java.io.IOException;
 import org.apache.commons.cli.CommandLine;
 import shopping.common.BaseOption;
+import shopping.common.PagedStream;
 import shopping.content.v2_1.samples.ContentConfig;
 import shopping.content.v2_1.samples.ContentWorkflowSample;
 
@@ -64,22 +65,15 @@ public class ShippingsettingsWorkflow extends ContentWorkflowSample {
     }
 
     System.out.println("Listing shipping settings for all sub-accounts:");
-    ShoppingContent.Shippingsettings.List shippingSettingsList =
-        content.shippingsettings().list(config.getMerchantId());
-    do {
-      ShippingsettingsListResponse page = shippingSettingsList.execute();
-      if (page.getResources() == null) {
+    try (PagedStream<ShippingSettings> shippingSettings =
+        PagedStream.of(
+            content.shippingsettings().list(config.getMerchantId()),
+            ShippingsettingsListResponse::getResources,
+            ShippingsettingsListResponse::getNextPageToken)) {
+      if (shippingSettings.forEachItem(ShippingsettingsUtils::printShippingSettings) == 0) {
         System.out.println("No accounts found.");
-        return;
       }
-      for (ShippingSettings settings : page.getResources()) {
-        ShippingsettingsUtils.printShippingSettings(settings);
-      }
-      if (page.getNextPageToken() == null) {
-        break;
-      }
-      shippingSettingsList.setPageToken(page.getNextPageToken());
-    } while (true);
+    }
   }
 
   public static void main(String[] args) throws IOException {
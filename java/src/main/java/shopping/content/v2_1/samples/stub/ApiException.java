@@ -0,0 +1,43 @@
+package shopping.content.v2_1.samples.stub;
+
+/** An error response of the stub API, in the format the Google API client libraries expect. */
+class ApiException extends RuntimeException {
+  private final int code;
+  private final String reason;
+
+  ApiException(int code, String reason, String message) {
+    super(message);
+    this.code = code;
+    this.reason = reason;
+  }
+
+  static ApiException notFound(String type, Object id) {
+    return new ApiException(404, "notFound", String.format("No %s found with ID %s.", type, id));
+  }
+
+  static ApiException invalid(String message) {
+    return new ApiException(400, "invalid", message);
+  }
+
+  /** Returns the API reason that goes with an HTTP status code used for error injection. */
+  static ApiException forStatus(int code) {
+    switch (code) {
+      case 429:
+        return new ApiException(code, "rateLimitExceeded", "Rate limit exceeded.");
+      case 500:
+        return new ApiException(code, "internalError", "Internal error encountered.");
+      case 503:
+        return new ApiException(code, "backendError", "Backend error.");
+      default:
+        return new ApiException(code, "backendError", "Injected error.");
+    }
+  }
+
+  int getCode() {
+    return code;
+  }
+
+  String getReason() {
+    return reason;
+  }
+}
@@ -0,0 +1,41 @@
+package shopping.content.v2_1.samples.stub;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Distribution of the simulated processing time of a stub API call. */
+public interface LatencyDistribution {
+  /** Returns a latency in microseconds, using the given source of randomness. */
+  long sampleMicros(Random random);
+
+  /** Responds as fast as possible. */
+  static LatencyDistribution none() {
+    return random -> 0;
+  }
+
+  static LatencyDistribution fixed(long millis) {
+    final long micros = TimeUnit.MILLISECONDS.toMicros(millis);
+    return random -> micros;
+  }
+
+  static LatencyDistribution uniform(long minMillis, long maxMillis) {
+    if (minMillis < 0 || maxMillis < minMillis) {
+      throw new IllegalArgumentException("Invalid latency range");
+    }
+    final long min = TimeUnit.MILLISECONDS.toMicros(minMillis);
+    final long range = TimeUnit.MILLISECONDS.toMicros(maxMillis) - min;
+    return random -> min + (long) (random.nextDouble() * range);
+  }
+
+  /**
+   * Log-normal latencies with the given median, which like real API latencies have a long tail.
+   * With a sigma of 0.5, the 99th percentile is a bit over three times the median.
+   */
+  static LatencyDistribution logNormal(double medianMillis, double sigma) {
+    if (medianMillis <= 0 || sigma < 0) {
+      throw new IllegalArgumentException("Invalid latency distribution");
+    }
+    final double mu = Math.log(medianMillis * 1000);
+    return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+  }
+}
@@ -0,0 +1,359 @@
+package shopping.content.v2_1.samples.stub;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.content.model.Account;
+import com.google.api.services.content.model.AccountStatus;
+import com.google.api.services.content.model.AccountStatusProducts;
+import com.google.api.services.content.model.AccountStatusStatistics;
+import com.google.api.services.content.model.AccountTax;
+import com.google.api.services.content.model.Datafeed;
+import com.google.api.services.content.model.Product;
+import com.google.api.services.content.model.ProductStatus;
+import com.google.api.services.content.model.ProductStatusDestinationStatus;
+import com.google.api.services.content.model.ProductStatusItemLevelIssue;
+import com.google.api.services.content.model.ShippingSettings;
+import com.google.common.collect.ImmutableList;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory state of a single stub Merchant Center account: its account settings, products,
+ * datafeeds and (for multi-client accounts) sub-accounts.
+ *
+ * <p>All methods are synchronized, and return copies of the stored resources so that callers can
+ * serialize them without holding the lock. Product statuses aren't stored, but derived from the
+ * product data whenever they are requested.
+ */
+class StubMerchantState {
+  private static final String DESTINATION = "Shopping";
+
+  private final BigInteger merchantId;
+  private final Account account;
+  private final Map<BigInteger, Account> subaccounts = new TreeMap<>();
+  private final Map<BigInteger, AccountTax> accountTax = new TreeMap<>();
+  private final Map<BigInteger, ShippingSettings> shippingSettings = new TreeMap<>();
+  // Sorted, so that list calls page through resources in a stable order.
+  private final Map<String, Product> products = new TreeMap<>();
+  private final Map<String, Long> productUpdateTimes = new TreeMap<>();
+  private final Map<Long, Datafeed> datafeeds = new TreeMap<>();
+  private long nextDatafeedId = 1000;
+  private long nextAccountId;
+
+  StubMerchantState(BigInteger merchantId) {
+    this.merchantId = merchantId;
+    this.account =
+        new Account()
+            .setKind("content#account")
+            .setId(merchantId)
+            .setName("Stub merchant " + merchantId)
+            .setWebsiteUrl("https://www.example.com");
+    this.nextAccountId = merchantId.longValue() * 10;
+  }
+
+  BigInteger getMerchantId() {
+    return merchantId;
+  }
+
+  // Accounts
+
+  synchronized Account getAccount(BigInteger accountId) {
+    if (accountId.equals(merchantId)) {
+      return account.clone();
+    }
+    Account subaccount = subaccounts.get(accountId);
+    if (subaccount == null) {
+      throw ApiException.notFound("account", accountId);
+    }
+    return subaccount.clone();
+  }
+
+  synchronized List<Account> listSubaccounts() {
+    List<Account> result = new ArrayList<>();
+    for (Account subaccount : subaccounts.values()) {
+      result.add(subaccount.clone());
+    }
+    return result;
+  }
+
+  synchronized Account insertSubaccount(Account subaccount) {
+    Account stored = subaccount.clone().setKind("content#account");
+    stored.setId(BigInteger.valueOf(nextAccountId++));
+    subaccounts.put(stored.getId(), stored);
+    return stored.clone();
+  }
+
+  synchronized Account updateAccount(BigInteger accountId, Account update) {
+    Account stored = update.clone().setKind("content#account").setId(accountId);
+    if (accountId.equals(merchantId)) {
+      account.putAll(stored);
+      return account.clone();
+    }
+    if (!subaccounts.containsKey(accountId)) {
+      throw ApiException.notFound("account", accountId);
+    }
+    subaccounts.put(accountId, stored);
+    return stored.clone();
+  }
+
+  synchronized void deleteSubaccount(BigInteger accountId) {
+    if (subaccounts.remove(accountId) == null) {
+      throw ApiException.notFound("account", accountId);
+    }
+    accountTax.remove(accountId);
+    shippingSettings.remove(accountId);
+  }
+
+  // All accounts whose settings this merchant can access: itself and its sub-accounts.
+  synchronized List<BigInteger> accountIds() {
+    List<BigInteger> ids = new ArrayList<>();
+    ids.add(merchantId);
+    ids.addAll(subaccounts.keySet());
+    return ids;
+  }
+
+  private void checkAccount(BigInteger accountId) {
+    if (!accountId.equals(merchantId) && !subaccounts.containsKey(accountId)) {
+      throw ApiException.notFound("account", accountId);
+    }
+  }
+
+  synchronized AccountStatus getAccountStatus(BigInteger accountId, List<String> destinations) {
+    checkAccount(accountId);
+    AccountStatusStatistics statistics =
+        new AccountStatusStatistics()
+            .setActive(0L)
+            .setDisapproved(0L)
+            .setPending(0L)
+            .setExpiring(0L);
+    if (accountId.equals(merchantId)) {
+      for (Product product : products.values()) {
+        if (issuesFor(product).isEmpty()) {
+          statistics.setActive(statistics.getActive() + 1);
+        } else {
+          statistics.setDisapproved(statistics.getDisapproved() + 1);
+        }
+      }
+    }
+    List<AccountStatusProducts> productStatistics = new ArrayList<>();
+    if (destinations == null || destinations.contains(DESTINATION)) {
+      productStatistics.add(
+          new AccountStatusProducts()
+              .setChannel("online")
+              .setDestination(DESTINATION)
+              .setCountry("US")
+              .setStatistics(statistics));
+    }
+    return new AccountStatus()
+        .setKind("content#accountStatus")
+        .setAccountId(accountId.toString())
+        .setWebsiteClaimed(true)
+        .setProducts(productStatistics);
+  }
+
+  synchronized AccountTax getAccountTax(BigInteger accountId) {
+    checkAccount(accountId);
+    AccountTax tax = accountTax.get(accountId);
+    if (tax == null) {
+      return new AccountTax().setKind("content#accountTax").setAccountId(accountId);
+    }
+    return tax.clone();
+  }
+
+  synchronized AccountTax updateAccountTax(BigInteger accountId, AccountTax tax) {
+    checkAccount(accountId);
+    AccountTax stored = tax.clone().setKind("content#accountTax").setAccountId(accountId);
+    accountTax.put(accountId, stored);
+    return stored.clone();
+  }
+
+  synchronized ShippingSettings getShippingSettings(BigInteger accountId) {
+    checkAccount(accountId);
+    ShippingSettings settings = shippingSettings.get(accountId);
+    if (settings == null) {
+      return new ShippingSettings().setAccountId(accountId);
+    }
+    return settings.clone();
+  }
+
+  synchronized ShippingSettings updateShippingSettings(
+      BigInteger accountId, ShippingSettings settings) {
+    checkAccount(accountId);
+    ShippingSettings stored = settings.clone().setAccountId(accountId);
+    shippingSettings.put(accountId, stored);
+    return stored.clone();
+  }
+
+  // Products
+
+  synchronized Product insertProduct(Product product) {
+    if (product.getOfferId() == null
+        || product.getChannel() == null
+        || product.getContentLanguage() == null
+        || product.getTargetCountry() == null) {
+      throw ApiException.invalid(
+          "Products need an offer ID, channel, content language and target country");
+    }
+    String id =
+        String.join(
+            ":",
+            product.getChannel(),
+            product.getContentLanguage(),
+            product.getTargetCountry(),
+            product.getOfferId());
+    Product stored = product.clone().setKind("content#product").setId(id);
+    products.put(id, stored);
+    productUpdateTimes.put(id, System.currentTimeMillis());
+    return stored.clone();
+  }
+
+  synchronized Product getProduct(String productId) {
+    Product product = products.get(productId);
+    if (product == null) {
+      throw ApiException.notFound("item", productId);
+    }
+    return product.clone();
+  }
+
+  synchronized Product updateProduct(String productId, Product update) {
+    Product stored = products.get(productId);
+    if (stored == null) {
+      throw ApiException.notFound("item", productId);
+    }
+    stored.putAll(update);
+    stored.setId(productId);
+    productUpdateTimes.put(productId, System.currentTimeMillis());
+    return stored.clone();
+  }
+
+  synchronized void deleteProduct(String productId) {
+    if (products.remove(productId) == null) {
+      throw ApiException.notFound("item", productId);
+    }
+    productUpdateTimes.remove(productId);
+  }
+
+  synchronized List<Product> listProducts() {
+    List<Product> result = new ArrayList<>();
+    for (Product product : products.values()) {
+      result.add(product.clone());
+    }
+    return result;
+  }
+
+  synchronized ProductStatus getProductStatus(String productId, List<String> destinations) {
+    Product product = products.get(productId);
+    if (product == null) {
+      throw ApiException.notFound("item", productId);
+    }
+    return statusOf(product, destinations);
+  }
+
+  synchronized List<ProductStatus> listProductStatuses(List<String> destinations) {
+    List<ProductStatus> result = new ArrayList<>();
+    for (Product product : products.values()) {
+      result.add(statusOf(product, destinations));
+    }
+    return result;
+  }
+
+  private ProductStatus statusOf(Product product, List<String> destinations) {
+    List<ProductStatusItemLevelIssue> issues = issuesFor(product);
+    boolean disapproved = false;
+    for (ProductStatusItemLevelIssue issue : issues) {
+      disapproved |= "disapproved".equals(issue.getServability());
+    }
+    String updated = timestampOf(productUpdateTimes.get(product.getId()));
+    ProductStatus status =
+        new ProductStatus()
+            .setKind("content#productStatus")
+            .setProductId(product.getId())
+            .setTitle(product.getTitle())
+            .setLink(product.getLink())
+            .setCreationDate(updated)
+            .setLastUpdateDate(updated);
+    if (destinations == null || destinations.contains(DESTINATION)) {
+      status.setDestinationStatuses(
+          ImmutableList.of(
+              new ProductStatusDestinationStatus()
+                  .setDestination(DESTINATION)
+                  .setStatus(disapproved ? "disapproved" : "approved")));
+      if (!issues.isEmpty()) {
+        status.setItemLevelIssues(issues);
+      }
+    }
+    return status;
+  }
+
+  // A few deterministic issues, so that status crawlers have something to report.
+  private static List<ProductStatusItemLevelIssue> issuesFor(Product product) {
+    List<ProductStatusItemLevelIssue> issues = new ArrayList<>();
+    if (product.getImageLink() == null) {
+      issues.add(
+          new ProductStatusItemLevelIssue()
+              .setCode("image_link_missing")
+              .setAttributeName("image link")
+              .setDestination(DESTINATION)
+              .setServability("disapproved")
+              .setResolution("merchant_action")
+              .setDescription("Missing value [image link]"));
+    }
+    if (product.getGtin() == null) {
+      issues.add(
+          new ProductStatusItemLevelIssue()
+              .setCode("missing_gtin")
+              .setAttributeName("gtin")
+              .setDestination(DESTINATION)
+              .setServability("unaffected")
+              .setResolution("merchant_action")
+              .setDescription("Missing value [gtin]"));
+    }
+    return issues;
+  }
+
+  private static String timestampOf(Long millis) {
+    return new DateTime(millis != null ? millis : 0L).toStringRfc3339();
+  }
+
+  // Datafeeds
+
+  synchronized Datafeed insertDatafeed(Datafeed datafeed) {
+    Datafeed stored = datafeed.clone().setKind("content#datafeed").setId(nextDatafeedId++);
+    datafeeds.put(stored.getId(), stored);
+    return stored.clone();
+  }
+
+  synchronized Datafeed getDatafeed(long datafeedId) {
+    Datafeed datafeed = datafeeds.get(datafeedId);
+    if (datafeed == null) {
+      throw ApiException.notFound("datafeed", datafeedId);
+    }
+    return datafeed.clone();
+  }
+
+  synchronized Datafeed updateDatafeed(long datafeedId, Datafeed update) {
+    if (!datafeeds.containsKey(datafeedId)) {
+      throw ApiException.notFound("datafeed", datafeedId);
+    }
+    Datafeed stored = update.clone().setKind("content#datafeed").setId(datafeedId);
+    datafeeds.put(datafeedId, stored);
+    return stored.clone();
+  }
+
+  synchronized void deleteDatafeed(long datafeedId) {
+    if (datafeeds.remove(datafeedId) == null) {
+      throw ApiException.notFound("datafeed", datafeedId);
+    }
+  }
+
+  synchronized Collection<Datafeed> listDatafeeds() {
+    List<Datafeed> result = new ArrayList<>();
+    for (Datafeed datafeed : datafeeds.values()) {
+      result.add(datafeed.clone());
+    }
+    return result;
+  }
+}
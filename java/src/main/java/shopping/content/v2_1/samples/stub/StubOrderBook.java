@@ -0,0 +1,376 @@
+package shopping.content.v2_1.samples.stub;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.content.model.Order;
+import com.google.api.services.content.model.OrderLineItem;
+import com.google.api.services.content.model.OrderLineItemProduct;
+import com.google.api.services.content.model.OrderLineItemReturnInfo;
+import com.google.api.services.content.model.OrderLineItemShippingDetails;
+import com.google.api.services.content.model.OrderLineItemShippingDetailsMethod;
+import com.google.api.services.content.model.OrderReturn;
+import com.google.api.services.content.model.OrderShipment;
+import com.google.api.services.content.model.OrderShipmentLineItemShipment;
+import com.google.api.services.content.model.OrdersCancelLineItemRequest;
+import com.google.api.services.content.model.OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo;
+import com.google.api.services.content.model.OrdersReturnRefundLineItemRequest;
+import com.google.api.services.content.model.OrdersShipLineItemsRequest;
+import com.google.api.services.content.model.OrdersUpdateShipmentRequest;
+import com.google.api.services.content.model.Price;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory test orders of a single stub merchant.
+ *
+ * <p>Order operations follow the rules of the real sandbox closely enough for the order samples:
+ * quantities move between pending, shipped, delivered, canceled and returned, the order status
+ * follows the line items, and an operation ID that was already used for an order is reported as a
+ * duplicate without being applied again.
+ */
+class StubOrderBook {
+  private final BigInteger merchantId;
+  private final Map<String, Order> orders = new TreeMap<>();
+  private final Map<String, Set<String>> operationIds = new HashMap<>();
+  private long nextOrderNumber = 1;
+
+  StubOrderBook(BigInteger merchantId) {
+    this.merchantId = merchantId;
+  }
+
+  // Every template creates the same order, modeled after the sandbox's template1.
+  synchronized String createTestOrder() {
+    long n = nextOrderNumber++;
+    String orderId =
+        String.format("TEST-%04d-%04d-%04d", n / 100000000 % 10000, n / 10000 % 10000, n % 10000);
+    List<OrderLineItem> lineItems = new ArrayList<>();
+    lineItems.add(newLineItem(orderId, 1, "Chromecast", "35.00", 3));
+    lineItems.add(newLineItem(orderId, 2, "Chromecast Audio", "35.00", 1));
+    Order order =
+        new Order()
+            .setKind("content#order")
+            .setId(orderId)
+            .setMerchantId(merchantId)
+            .setPlacedDate(new DateTime(System.currentTimeMillis()).toStringRfc3339())
+            .setPaymentStatus("paymentSecured")
+            .setAcknowledged(false)
+            .setLineItems(lineItems)
+            .setShipments(new ArrayList<OrderShipment>())
+            .setNetPriceAmount(price("140.00"))
+            .setShippingCost(price("5.00"))
+            .setShippingCostTax(price("0.00"));
+    updateStatus(order);
+    orders.put(orderId, order);
+    operationIds.put(orderId, new HashSet<String>());
+    return orderId;
+  }
+
+  private static OrderLineItem newLineItem(
+      String orderId, int index, String title, String unitPrice, long quantity) {
+    return new OrderLineItem()
+        .setId(orderId.replace("TEST", "LI") + "-" + index)
+        .setProduct(
+            new OrderLineItemProduct()
+                .setId("online:en:US:stub-" + index)
+                .setOfferId("stub-" + index)
+                .setTitle(title)
+                .setChannel("online")
+                .setContentLanguage("en")
+                .setTargetCountry("US")
+                .setPrice(price(unitPrice)))
+        .setPrice(price(unitPrice))
+        .setTax(price("0.00"))
+        .setQuantityOrdered(quantity)
+        .setQuantityPending(quantity)
+        .setQuantityShipped(0L)
+        .setQuantityDelivered(0L)
+        .setQuantityCanceled(0L)
+        .setQuantityReturned(0L)
+        .setShippingDetails(
+            new OrderLineItemShippingDetails()
+                .setShipByDate("2030-01-01")
+                .setDeliverByDate("2030-01-05")
+                .setMethod(
+                    new OrderLineItemShippingDetailsMethod()
+                        .setCarrier("FedEx")
+                        .setMethodName("Standard")
+                        .setMinDaysInTransit(2L)
+                        .setMaxDaysInTransit(4L)))
+        .setReturnInfo(
+            new OrderLineItemReturnInfo()
+                .setIsReturnable(true)
+                .setDaysToReturn(30L)
+                .setPolicyUrl("https://www.example.com/returns"));
+  }
+
+  private static Price price(String value) {
+    return new Price().setValue(value).setCurrency("USD");
+  }
+
+  synchronized Order getOrder(String orderId) {
+    return find(orderId).clone();
+  }
+
+  synchronized Order getOrderByMerchantOrderId(String merchantOrderId) {
+    for (Order order : orders.values()) {
+      if (merchantOrderId.equals(order.getMerchantOrderId())) {
+        return order.clone();
+      }
+    }
+    throw ApiException.notFound("order with merchant order", merchantOrderId);
+  }
+
+  synchronized List<Order> listOrders(Boolean acknowledged, List<String> statuses) {
+    List<Order> result = new ArrayList<>();
+    for (Order order : orders.values()) {
+      if (acknowledged != null && !acknowledged.equals(order.getAcknowledged())) {
+        continue;
+      }
+      if (statuses != null && !statuses.contains(order.getStatus())) {
+        continue;
+      }
+      result.add(order.clone());
+    }
+    return result;
+  }
+
+  synchronized GenericJson advanceTestOrder(String orderId) {
+    // Test orders are shippable as soon as they are created, so there is nothing to advance.
+    find(orderId);
+    return response("content#ordersAdvanceTestOrderResponse", "executed");
+  }
+
+  synchronized GenericJson acknowledge(String orderId, String operationId) {
+    Order order = find(orderId);
+    if (!firstUse(orderId, operationId)) {
+      return response("content#ordersAcknowledgeResponse", "duplicate");
+    }
+    order.setAcknowledged(true);
+    return response("content#ordersAcknowledgeResponse", "executed");
+  }
+
+  synchronized GenericJson updateMerchantOrderId(
+      String orderId, String merchantOrderId, String operationId) {
+    Order order = find(orderId);
+    if (!firstUse(orderId, operationId)) {
+      return response("content#ordersUpdateMerchantOrderIdResponse", "duplicate");
+    }
+    for (Order other : orders.values()) {
+      if (other != order && merchantOrderId.equals(other.getMerchantOrderId())) {
+        throw ApiException.invalid("Merchant order ID already used by " + other.getId());
+      }
+    }
+    order.setMerchantOrderId(merchantOrderId);
+    return response("content#ordersUpdateMerchantOrderIdResponse", "executed");
+  }
+
+  synchronized GenericJson cancel(String orderId, String operationId) {
+    Order order = find(orderId);
+    if (!firstUse(orderId, operationId)) {
+      return response("content#ordersCancelResponse", "duplicate");
+    }
+    for (OrderLineItem item : order.getLineItems()) {
+      item.setQuantityCanceled(item.getQuantityCanceled() + item.getQuantityPending());
+      item.setQuantityPending(0L);
+    }
+    updateStatus(order);
+    return response("content#ordersCancelResponse", "executed");
+  }
+
+  synchronized GenericJson cancelLineItem(String orderId, OrdersCancelLineItemRequest request) {
+    Order order = find(orderId);
+    OrderLineItem item = findLineItem(order, request.getLineItemId(), request.getProductId());
+    long quantity = quantityOf(request.getQuantity());
+    checkQuantity(quantity, item.getQuantityPending(), "pending");
+    if (!firstUse(orderId, request.getOperationId())) {
+      return response("content#ordersCancelLineItemResponse", "duplicate");
+    }
+    item.setQuantityPending(item.getQuantityPending() - quantity);
+    item.setQuantityCanceled(item.getQuantityCanceled() + quantity);
+    updateStatus(order);
+    return response("content#ordersCancelLineItemResponse", "executed");
+  }
+
+  synchronized GenericJson shipLineItems(String orderId, OrdersShipLineItemsRequest request) {
+    Order order = find(orderId);
+    if (request.getLineItems() == null || request.getLineItems().isEmpty()) {
+      throw ApiException.invalid("No line items to ship");
+    }
+    for (OrderShipmentLineItemShipment shipped : request.getLineItems()) {
+      OrderLineItem item = findLineItem(order, shipped.getLineItemId(), shipped.getProductId());
+      checkQuantity(quantityOf(shipped.getQuantity()), item.getQuantityPending(), "pending");
+    }
+    if (!firstUse(orderId, request.getOperationId())) {
+      return response("content#ordersShipLineItemsResponse", "duplicate");
+    }
+    for (OrderShipmentLineItemShipment shipped : request.getLineItems()) {
+      OrderLineItem item = findLineItem(order, shipped.getLineItemId(), shipped.getProductId());
+      long quantity = quantityOf(shipped.getQuantity());
+      item.setQuantityPending(item.getQuantityPending() - quantity);
+      item.setQuantityShipped(item.getQuantityShipped() + quantity);
+    }
+    if (request.getShipmentInfos() != null) {
+      for (OrdersCustomBatchRequestEntryShipLineItemsShipmentInfo info :
+          request.getShipmentInfos()) {
+        order
+            .getShipments()
+            .add(
+                new OrderShipment()
+                    .setId(info.getShipmentId())
+                    .setCarrier(info.getCarrier())
+                    .setTrackingId(info.getTrackingId())
+                    .setStatus("shipped")
+                    .setCreationDate(new DateTime(System.currentTimeMillis()).toStringRfc3339())
+                    .setLineItems(request.getLineItems()));
+      }
+    }
+    updateStatus(order);
+    return response("content#ordersShipLineItemsResponse", "executed");
+  }
+
+  synchronized GenericJson updateShipment(String orderId, OrdersUpdateShipmentRequest request) {
+    Order order = find(orderId);
+    OrderShipment shipment = null;
+    for (OrderShipment candidate : order.getShipments()) {
+      if (candidate.getId() != null && candidate.getId().equals(request.getShipmentId())) {
+        shipment = candidate;
+      }
+    }
+    if (shipment == null) {
+      throw ApiException.notFound("shipment", request.getShipmentId());
+    }
+    if (!firstUse(orderId, request.getOperationId())) {
+      return response("content#ordersUpdateShipmentResponse", "duplicate");
+    }
+    if (request.getCarrier() != null) {
+      shipment.setCarrier(request.getCarrier());
+    }
+    if (request.getTrackingId() != null) {
+      shipment.setTrackingId(request.getTrackingId());
+    }
+    if ("delivered".equals(request.getStatus()) && !"delivered".equals(shipment.getStatus())) {
+      for (OrderShipmentLineItemShipment shipped : shipment.getLineItems()) {
+        OrderLineItem item = findLineItem(order, shipped.getLineItemId(), shipped.getProductId());
+        long quantity = quantityOf(shipped.getQuantity());
+        item.setQuantityShipped(item.getQuantityShipped() - quantity);
+        item.setQuantityDelivered(item.getQuantityDelivered() + quantity);
+      }
+      shipment.setDeliveryDate(new DateTime(System.currentTimeMillis()).toStringRfc3339());
+    }
+    if (request.getStatus() != null) {
+      shipment.setStatus(request.getStatus());
+    }
+    updateStatus(order);
+    return response("content#ordersUpdateShipmentResponse", "executed");
+  }
+
+  synchronized GenericJson returnRefundLineItem(
+      String orderId, OrdersReturnRefundLineItemRequest request) {
+    Order order = find(orderId);
+    OrderLineItem item = findLineItem(order, request.getLineItemId(), request.getProductId());
+    long quantity = quantityOf(request.getQuantity());
+    checkQuantity(quantity, item.getQuantityDelivered(), "delivered");
+    if (!firstUse(orderId, request.getOperationId())) {
+      return response("content#ordersReturnRefundLineItemResponse", "duplicate");
+    }
+    item.setQuantityDelivered(item.getQuantityDelivered() - quantity);
+    item.setQuantityReturned(item.getQuantityReturned() + quantity);
+    List<OrderReturn> returns =
+        item.getReturns() != null ? item.getReturns() : new ArrayList<OrderReturn>();
+    returns.add(
+        new OrderReturn()
+            .setActor("merchant")
+            .setCreationDate(new DateTime(System.currentTimeMillis()).toStringRfc3339())
+            .setQuantity(quantity)
+            .setReason(request.getReason())
+            .setReasonText(request.getReasonText()));
+    item.setReturns(returns);
+    updateStatus(order);
+    return response("content#ordersReturnRefundLineItemResponse", "executed");
+  }
+
+  private Order find(String orderId) {
+    Order order = orders.get(orderId);
+    if (order == null) {
+      throw ApiException.notFound("order", orderId);
+    }
+    return order;
+  }
+
+  private static OrderLineItem findLineItem(Order order, String lineItemId, String productId) {
+    for (OrderLineItem item : order.getLineItems()) {
+      if ((lineItemId != null && lineItemId.equals(item.getId()))
+          || (lineItemId == null
+              && productId != null
+              && productId.equals(item.getProduct().getId()))) {
+        return item;
+      }
+    }
+    throw ApiException.notFound("line item", lineItemId != null ? lineItemId : productId);
+  }
+
+  private static long quantityOf(Long quantity) {
+    if (quantity == null || quantity <= 0) {
+      throw ApiException.invalid("Quantity must be positive");
+    }
+    return quantity;
+  }
+
+  private static void checkQuantity(long quantity, long available, String state) {
+    if (quantity > available) {
+      throw ApiException.invalid(
+          String.format("Quantity %d exceeds the %d item(s) %s", quantity, available, state));
+    }
+  }
+
+  // Records the operation ID for the order, returning false if it was used before.
+  private boolean firstUse(String orderId, String operationId) {
+    if (operationId == null) {
+      throw ApiException.invalid("Missing operation ID");
+    }
+    return operationIds.get(orderId).add(operationId);
+  }
+
+  private static void updateStatus(Order order) {
+    long ordered = 0;
+    long pending = 0;
+    long shipped = 0;
+    long delivered = 0;
+    long canceled = 0;
+    long returned = 0;
+    for (OrderLineItem item : order.getLineItems()) {
+      ordered += item.getQuantityOrdered();
+      pending += item.getQuantityPending();
+      shipped += item.getQuantityShipped();
+      delivered += item.getQuantityDelivered();
+      canceled += item.getQuantityCanceled();
+      returned += item.getQuantityReturned();
+    }
+    String status;
+    if (canceled == ordered) {
+      status = "canceled";
+    } else if (returned > 0) {
+      status = returned + canceled == ordered ? "returned" : "partiallyReturned";
+    } else if (pending > 0) {
+      status = shipped + delivered > 0 ? "partiallyShipped" : "pendingShipment";
+    } else if (shipped > 0) {
+      status = "shipped";
+    } else {
+      status = delivered + canceled == ordered ? "delivered" : "partiallyDelivered";
+    }
+    order.setStatus(status);
+  }
+
+  private static GenericJson response(String kind, String executionStatus) {
+    GenericJson response = new GenericJson();
+    response.set("kind", kind);
+    response.set("executionStatus", executionStatus);
+    return response;
+  }
+}
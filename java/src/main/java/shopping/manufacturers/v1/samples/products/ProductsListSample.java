@@ -4,11 +4,12 @@ import com.google.api.services.manufacturers.v1.ManufacturerCenter;
 import com.google.api.services.manufacturers.v1.model.ListProductsResponse;
 import com.google.api.services.manufacturers.v1.model.Product;
 import java.io.IOException;
+import shopping.common.PagedStream;
 import shopping.manufacturers.v1.samples.ManufacturersSample;
 
 /**
  * Sample that gets a list of all of the products for the manufacturer. If there is more than one
- * page of results, we fetch each page in turn.
+ * page of results, the next page is fetched while the current one is being printed.
  */
 public class ProductsListSample extends ManufacturersSample {
   public ProductsListSample(String[] args) throws IOException {
@@ -19,18 +20,15 @@ public class ProductsListSample extends ManufacturersSample {
   public void execute() throws IOException {
     ManufacturerCenter.Accounts.Products.List productsList =
         manufacturers.accounts().products().list(getManufacturerId());
-    do {
-      ListProductsResponse page = productsList.execute();
-
-      if (page.getProducts() == null) {
+    try (PagedStream<Product> products =
+        PagedStream.of(
+            productsList,
+            ListProductsResponse::getProducts,
+            ListProductsResponse::getNextPageToken)) {
+      if (products.forEachItem(this::printProduct) == 0) {
         System.out.printf("No products found.%n");
-        return;
-      }
-      for (Product product : page.getProducts()) {
-        printProduct(product);
       }
-      productsList.setPageToken(page.getNextPageToken());
-    } while (productsList.getPageToken() != null);
+    }
   }
 
   public static void main(String[] args) throws IOException {
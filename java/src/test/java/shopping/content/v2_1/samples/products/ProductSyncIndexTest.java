@@ -0,0 +1,94 @@
+package shopping.content.v2_1.samples.products;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests the crash recovery and compaction of {@link ProductSyncIndex}. */
+public class ProductSyncIndexTest {
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void reopenRestoresCommittedRecords() throws IOException {
+    File file = new File(tmp.getRoot(), "index");
+    try (ProductSyncIndex index = new ProductSyncIndex(file)) {
+      index.put("online:en:GB:a", 11);
+      index.put("online:en:GB:b", 12);
+      index.put("online:en:GB:a", 13);
+      index.remove("online:en:GB:b");
+      index.commit();
+    }
+    try (ProductSyncIndex index = new ProductSyncIndex(file)) {
+      assertEquals(1, index.size());
+      assertEquals(13, index.get(ProductSyncIndex.idHash("online:en:GB:a")));
+      assertEquals(0, index.get(ProductSyncIndex.idHash("online:en:GB:b")));
+    }
+  }
+
+  @Test
+  public void loadDropsPartialRecordAndAppendsAfterIt() throws IOException {
+    File file = new File(tmp.getRoot(), "index");
+    try (ProductSyncIndex index = new ProductSyncIndex(file)) {
+      index.put("online:en:GB:a", 11);
+      index.commit();
+    }
+    long committedLength = file.length();
+    // A crash in the middle of a record leaves its ID but not its hash.
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(new byte[] {0, 14, 'o', 'n', 'l', 'i', 'n', 'e', ':', 'e', 'n', 0, 0, 0});
+    }
+
+    try (ProductSyncIndex index = new ProductSyncIndex(file)) {
+      assertEquals(committedLength, file.length());
+      assertEquals(1, index.size());
+      index.put("online:en:GB:b", 12);
+      index.commit();
+    }
+    try (ProductSyncIndex index = new ProductSyncIndex(file)) {
+      assertEquals(2, index.size());
+      assertEquals(11, index.get(ProductSyncIndex.idHash("online:en:GB:a")));
+      assertEquals(12, index.get(ProductSyncIndex.idHash("online:en:GB:b")));
+    }
+  }
+
+  @Test
+  public void commitCompactsSupersededRecords() throws IOException {
+    File file = new File(tmp.getRoot(), "index");
+    try (ProductSyncIndex index = new ProductSyncIndex(file)) {
+      // 10000 records for 98 live products, which is well past the compaction threshold.
+      for (int round = 1; round <= 100; round++) {
+        for (int i = 0; i < 99; i++) {
+          index.put("online:en:GB:" + i, round);
+        }
+        index.remove("online:en:GB:0");
+      }
+      index.commit();
+      // Each record takes at most 25 bytes, after the 4-byte header.
+      assertTrue(file.length() <= 4 + 98 * 25);
+      assertFalse(new File(tmp.getRoot(), "index.tmp").exists());
+
+      // The log stays usable for appends after being rewritten.
+      index.put("online:en:GB:0", 7);
+      index.commit();
+    }
+    try (ProductSyncIndex index = new ProductSyncIndex(file)) {
+      assertEquals(99, index.size());
+      assertEquals(7, index.get(ProductSyncIndex.idHash("online:en:GB:0")));
+      for (int i = 1; i < 99; i++) {
+        assertEquals(100, index.get(ProductSyncIndex.idHash("online:en:GB:" + i)));
+      }
+      List<String> live = new ArrayList<>();
+      index.forEachLive((productId, idHash, contentHash) -> live.add(productId));
+      assertEquals(99, live.size());
+    }
+  }
+}